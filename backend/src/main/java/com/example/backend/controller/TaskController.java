@@ -1,28 +1,92 @@
 package com.example.backend.controller;
 
+import com.example.backend.dto.RenderRequestDto;
+import com.example.backend.dto.RenderSubmissionDto;
 import com.example.backend.dto.TaskDto;
+import com.example.backend.dto.TaskPageDto;
+import com.example.backend.dto.TaskStatus;
+import com.example.backend.service.RenderQueueFullException;
+import com.example.backend.service.RenderService;
 import com.example.backend.service.TaskService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
+import java.net.URI;
 
 @RestController
 @RequestMapping("/api/tasks")
 public class TaskController {
 
     private final TaskService taskService;
+    private final RenderService renderService;
 
-    public TaskController(TaskService taskService) {
+    public TaskController(TaskService taskService, RenderService renderService) {
         this.taskService = taskService;
+        this.renderService = renderService;
     }
 
     @GetMapping
-    public List<TaskDto> getAllTasks() {
-        return taskService.findAll();
+    public TaskPageDto getTasks(
+            @RequestParam(required = false) TaskStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + TaskService.DEFAULT_PAGE_SIZE) int limit
+    ) {
+        try {
+            return taskService.findPage(status, after, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    @PostMapping
+    public ResponseEntity<RenderSubmissionDto> submitRender(@RequestBody RenderRequestDto request) {
+        TaskDto task;
+        try {
+            task = renderService.submit(request);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/tasks/" + task.id()))
+                .body(new RenderSubmissionDto(task.id(), task.status()));
+    }
+
+    @ExceptionHandler(RenderQueueFullException.class)
+    public ResponseEntity<String> handleQueueFull(RenderQueueFullException e) {
+        long seconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                .body(e.getMessage());
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<Void> cancelTask(@PathVariable Long id) {
+        if (taskService.findById(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!renderService.cancel(id)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Task " + id + " has no render in progress");
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTaskEvents(@PathVariable Long id) {
+        return taskService.subscribe(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,13 @@
+package com.example.backend.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public record RenderRequestDto(
+        String name,
+        List<RenderSegmentDto> segments,
+        Map<String, String> overrides,
+        String strategy,
+        boolean interactive
+) {
+}
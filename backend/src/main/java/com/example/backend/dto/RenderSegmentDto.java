@@ -0,0 +1,4 @@
+package com.example.backend.dto;
+
+public record RenderSegmentDto(String source, Double startSeconds, Double endSeconds) {
+}
@@ -0,0 +1,4 @@
+package com.example.backend.dto;
+
+public record RenderSubmissionDto(Long taskId, TaskStatus status) {
+}
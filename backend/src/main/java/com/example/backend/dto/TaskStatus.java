@@ -4,5 +4,11 @@ public enum TaskStatus {
     QUEUED,
     RUNNING,
     COMPLETED,
-    FAILED
+    FAILED,
+    CANCELLED,
+    TIMED_OUT;
+
+    public boolean isTerminal() {
+        return this != QUEUED && this != RUNNING;
+    }
 }
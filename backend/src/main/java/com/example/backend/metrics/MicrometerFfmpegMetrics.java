@@ -0,0 +1,103 @@
+package com.example.backend.metrics;
+
+import com.aitrimmer.ffmpeg.FfmpegCommandBuilder;
+import com.aitrimmer.ffmpeg.FfmpegMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+
+/**
+ * Records FFmpeg process timings and outcomes in the application's {@link MeterRegistry}, tagged by the
+ * strategy and preset of the plan. Timers publish histogram buckets so latency percentiles can be computed
+ * across instances from the Prometheus scrape.
+ */
+@Component
+public class MicrometerFfmpegMetrics implements FfmpegMetrics {
+
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry registry;
+
+    public MicrometerFfmpegMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void concatScriptWritten(Map<String, String> tags, Duration elapsed) {
+        timer("ffmpeg.concat.script.write", "Time to write a concat script to disk", tags).record(elapsed);
+    }
+
+    @Override
+    public void processSpawned(Map<String, String> tags, Duration latency) {
+        timer("ffmpeg.process.spawn", "Time to start an FFmpeg process", tags).record(latency);
+    }
+
+    @Override
+    public void firstOutput(Map<String, String> tags, Duration sinceStart) {
+        timer("ffmpeg.process.first.output", "Time from process start to its first output line", tags)
+                .record(sinceStart);
+    }
+
+    @Override
+    public void processExited(
+            Map<String, String> tags,
+            int exitCode,
+            Duration wallTime,
+            OptionalDouble speedFactor,
+            OptionalLong outputBytes
+    ) {
+        Tags planTags = planTags(tags);
+        Timer.builder("ffmpeg.encode")
+                .description("Wall time of an FFmpeg process from start to exit")
+                .tags(planTags.and("outcome", exitCode == 0 ? "success" : "failure"))
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(wallTime);
+        Counter.builder("ffmpeg.process.exits")
+                .description("FFmpeg processes by exit code")
+                .tags(planTags.and("exit_code", Integer.toString(exitCode)))
+                .register(registry)
+                .increment();
+        if (speedFactor.isPresent()) {
+            DistributionSummary.builder("ffmpeg.encode.speed")
+                    .description("Realtime speed factor: seconds of output encoded per wall-clock second")
+                    .tags(planTags)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(speedFactor.getAsDouble());
+        }
+        if (outputBytes.isPresent()) {
+            DistributionSummary.builder("ffmpeg.output.size")
+                    .description("Size of the files an FFmpeg process wrote")
+                    .baseUnit("bytes")
+                    .tags(planTags)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(outputBytes.getAsLong());
+        }
+    }
+
+    private Timer timer(String name, String description, Map<String, String> tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(planTags(tags))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // Every meter of a name must carry the same tag keys, so plans without tags report "unknown".
+    private static Tags planTags(Map<String, String> tags) {
+        return Tags.of(
+                FfmpegCommandBuilder.STRATEGY_TAG, tags.getOrDefault(FfmpegCommandBuilder.STRATEGY_TAG, UNKNOWN),
+                FfmpegCommandBuilder.PRESET_TAG, tags.getOrDefault(FfmpegCommandBuilder.PRESET_TAG, UNKNOWN)
+        );
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.backend.metrics;
+
+import com.aitrimmer.ffmpeg.FfmpegJobScheduler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the render scheduler's occupancy and queue waits, the inputs for sizing the render fleet.
+ */
+@Component
+public class RenderSchedulerMetrics implements MeterBinder {
+
+    private final FfmpegJobScheduler scheduler;
+
+    public RenderSchedulerMetrics(FfmpegJobScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("renders.running", scheduler, FfmpegJobScheduler::getRunningCount)
+                .description("Render jobs currently running")
+                .register(registry);
+        Gauge.builder("renders.capacity", scheduler, FfmpegJobScheduler::getMaxConcurrentTasks)
+                .description("Render jobs that may run at the same time")
+                .register(registry);
+        for (FfmpegJobScheduler.Priority priority : FfmpegJobScheduler.Priority.values()) {
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("renders.queued", scheduler, s -> s.getQueueDepth(priority))
+                    .description("Render jobs waiting for a slot")
+                    .tag("priority", tag)
+                    .register(registry);
+            FunctionCounter.builder("renders.started", scheduler, s -> s.getStartedCount(priority))
+                    .description("Render jobs that left the queue")
+                    .tag("priority", tag)
+                    .register(registry);
+            FunctionCounter.builder("renders.queue.wait", scheduler,
+                            s -> s.getTotalWait(priority).toNanos() / (double) TimeUnit.SECONDS.toNanos(1))
+                    .description("Total time started render jobs spent queued")
+                    .baseUnit("seconds")
+                    .tag("priority", tag)
+                    .register(registry);
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.example.backend.service;
 
 import com.example.backend.dto.ConfigDto;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 public class ConfigService {
 
+    private final int maxConcurrentTasks;
+
+    public ConfigService(@Value("${renders.max-concurrent-tasks:3}") int maxConcurrentTasks) {
+        this.maxConcurrentTasks = maxConcurrentTasks;
+    }
+
     public ConfigDto loadConfig() {
-        return new ConfigDto("en-US", 3, true);
+        return new ConfigDto("en-US", maxConcurrentTasks, true);
     }
 }
@@ -0,0 +1,54 @@
+package com.example.backend.service;
+
+import com.aitrimmer.ffmpeg.CompressionPresetConfig;
+import com.aitrimmer.ffmpeg.EncoderThreadBudget;
+import com.aitrimmer.ffmpeg.ExecutionLimits;
+import com.aitrimmer.ffmpeg.FfmpegCommandBuilder;
+import com.aitrimmer.ffmpeg.FfmpegExecutor;
+import com.aitrimmer.ffmpeg.FfmpegJobScheduler;
+import com.aitrimmer.ffmpeg.FfmpegMetrics;
+import com.aitrimmer.ffmpeg.FfprobeMediaProbe;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class RenderConfiguration {
+
+    @Bean
+    public CompressionPresetConfig compressionPresetConfig() {
+        return new CompressionPresetConfig();
+    }
+
+    @Bean
+    public FfmpegCommandBuilder ffmpegCommandBuilder(
+            CompressionPresetConfig compressionPresetConfig,
+            @Value("${renders.ffprobe-command:ffprobe}") String ffprobeCommand
+    ) {
+        return new FfmpegCommandBuilder(compressionPresetConfig, new FfprobeMediaProbe(ffprobeCommand));
+    }
+
+    @Bean
+    public FfmpegExecutor ffmpegExecutor(
+            FfmpegMetrics ffmpegMetrics,
+            @Value("${renders.timeout:}") Duration timeout,
+            @Value("${renders.stall-timeout:}") Duration stallTimeout
+    ) {
+        ExecutionLimits limits = ExecutionLimits.builder()
+                .timeout(timeout)
+                .stallTimeout(stallTimeout)
+                .build();
+        return new FfmpegExecutor(ffmpegMetrics, limits);
+    }
+
+    @Bean(destroyMethod = "close")
+    public FfmpegJobScheduler ffmpegJobScheduler(
+            FfmpegExecutor ffmpegExecutor,
+            @Value("${renders.max-concurrent-tasks:3}") int maxConcurrentTasks,
+            @Value("${renders.max-queued-jobs:20}") int maxQueuedJobs
+    ) {
+        return new FfmpegJobScheduler(ffmpegExecutor, maxConcurrentTasks, maxQueuedJobs, new EncoderThreadBudget());
+    }
+}
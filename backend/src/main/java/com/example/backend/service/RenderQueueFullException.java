@@ -0,0 +1,17 @@
+package com.example.backend.service;
+
+import java.time.Duration;
+
+public class RenderQueueFullException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RenderQueueFullException(Duration retryAfter) {
+        super("Render queue is full");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
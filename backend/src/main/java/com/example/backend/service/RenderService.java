@@ -0,0 +1,308 @@
+package com.example.backend.service;
+
+import com.aitrimmer.ffmpeg.CompressionOverrides;
+import com.aitrimmer.ffmpeg.FfmpegCommandBuilder;
+import com.aitrimmer.ffmpeg.FfmpegCommandPlan;
+import com.aitrimmer.ffmpeg.FfmpegJobScheduler;
+import com.aitrimmer.ffmpeg.PendingRenderJob;
+import com.aitrimmer.ffmpeg.ProcessingTask;
+import com.aitrimmer.ffmpeg.RenderJournal;
+import com.aitrimmer.ffmpeg.VideoSegment;
+import com.example.backend.dto.RenderRequestDto;
+import com.example.backend.dto.RenderSegmentDto;
+import com.example.backend.dto.TaskDto;
+import com.example.backend.dto.TaskStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns render requests into FFmpeg plans and queues them on the {@link FfmpegJobScheduler}. Submission
+ * returns as soon as the job is queued; the task store and event hub follow the job's status from there.
+ * When a journal path is configured every job is recorded in a {@link RenderJournal} before it is accepted,
+ * and jobs left unfinished by a previous run are requeued once the application is ready.
+ */
+@Service
+public class RenderService {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderService.class);
+
+    private final FfmpegCommandBuilder commandBuilder;
+    private final FfmpegJobScheduler scheduler;
+    private final TaskService taskService;
+    private final TaskEventHub eventHub;
+    private final ObjectMapper objectMapper;
+    private final Path sourceDirectory;
+    private final Path outputDirectory;
+    private final RenderJournal journal;
+    private final long journalProgressIntervalNanos;
+    private final ConcurrentHashMap<Long, ProcessingTask> active = new ConcurrentHashMap<>();
+
+    public RenderService(
+            FfmpegCommandBuilder commandBuilder,
+            FfmpegJobScheduler scheduler,
+            TaskService taskService,
+            TaskEventHub eventHub,
+            ObjectMapper objectMapper,
+            @Value("${renders.source-dir:data/media}") String sourceDirectory,
+            @Value("${renders.output-dir:data/renders}") String outputDirectory,
+            @Value("${renders.journal.path:}") String journalPath,
+            @Value("${renders.journal.progress-interval:10s}") Duration journalProgressInterval
+    ) {
+        this.commandBuilder = commandBuilder;
+        this.scheduler = scheduler;
+        this.taskService = taskService;
+        this.eventHub = eventHub;
+        this.objectMapper = objectMapper;
+        this.sourceDirectory = Path.of(sourceDirectory).toAbsolutePath().normalize();
+        this.outputDirectory = Path.of(outputDirectory).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.outputDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create render output directory " + this.outputDirectory, e);
+        }
+        this.journal = journalPath.isBlank() ? null : new RenderJournal(Path.of(journalPath));
+        this.journalProgressIntervalNanos = journalProgressInterval.toNanos();
+    }
+
+    public TaskDto submit(RenderRequestDto request) {
+        RenderJob job = parse(request);
+        if (scheduler.isQueueFull()) {
+            throw new RenderQueueFullException(retryAfter(job.priority()));
+        }
+        // Build the plan first so a request the builder rejects leaves no task behind.
+        ProcessingTask processingTask = new ProcessingTask(UUID.randomUUID(), job.name());
+        FfmpegCommandPlan plan = plan(job, processingTask);
+        TaskDto task = taskService.create(job.name());
+        if (journal != null) {
+            try {
+                journal.submitted(task.id().toString(), objectMapper.writeValueAsString(request)).join();
+            } catch (JsonProcessingException | RuntimeException e) {
+                taskService.updateStatus(task.id(), TaskStatus.FAILED);
+                throw new IllegalStateException("Failed to journal render " + task.id(), e);
+            }
+        }
+        try {
+            enqueue(task.id(), job, processingTask, plan);
+            return task;
+        } catch (RejectedExecutionException e) {
+            fail(task.id());
+            throw new RenderQueueFullException(retryAfter(job.priority()));
+        } catch (RuntimeException e) {
+            fail(task.id());
+            throw e;
+        }
+    }
+
+    /**
+     * Requeues the renders the journal recorded as unfinished. Renders whose task already reached a final
+     * status are only marked finished in the journal, so completed outputs are not rebuilt.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverJournaledRenders() {
+        if (journal == null) {
+            return;
+        }
+        for (PendingRenderJob pending : journal.recoveredJobs()) {
+            Long id = Long.valueOf(pending.getKey());
+            Optional<TaskDto> task = taskService.findById(id);
+            if (task.isPresent() && task.get().status().isTerminal()) {
+                journal.finished(pending.getKey(), toLibraryStatus(task.get().status()));
+                continue;
+            }
+            try {
+                RenderJob job = parse(objectMapper.readValue(pending.getPayload(), RenderRequestDto.class));
+                ProcessingTask processingTask = new ProcessingTask(UUID.randomUUID(), job.name());
+                FfmpegCommandPlan plan = plan(job, processingTask);
+                Long taskId = id;
+                if (task.isEmpty()) {
+                    // The task store did not survive the restart; give the render a task again. Ids restart
+                    // too, so the new task may reuse the journaled key, which then simply stays pending.
+                    taskId = taskService.create(job.name()).id();
+                    if (!taskId.toString().equals(pending.getKey())) {
+                        journal.finished(pending.getKey(), com.aitrimmer.ffmpeg.TaskStatus.CANCELLED);
+                        journal.submitted(taskId.toString(), pending.getPayload());
+                    }
+                } else {
+                    taskService.updateStatus(taskId, TaskStatus.QUEUED);
+                }
+                enqueue(taskId, job, processingTask, plan);
+                log.info("Requeued render {} from the journal", taskId);
+            } catch (JsonProcessingException | RuntimeException e) {
+                log.warn("Could not requeue journaled render {}", pending.getKey(), e);
+                if (task.isPresent()) {
+                    taskService.updateStatus(id, TaskStatus.FAILED);
+                }
+                journal.finished(pending.getKey(), com.aitrimmer.ffmpeg.TaskStatus.FAILED);
+            }
+        }
+    }
+
+    /**
+     * Cancels the render of task {@code id}, whether it is still queued or already running. Returns
+     * {@code false} when no render of that task is in progress.
+     */
+    public boolean cancel(long id) {
+        ProcessingTask processingTask = active.get(id);
+        return processingTask != null && scheduler.cancel(processingTask);
+    }
+
+    @PreDestroy
+    public void close() {
+        // Renders stopped by the shutdown stay unfinished in the journal and are requeued on the next start.
+        scheduler.close();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private RenderJob parse(RenderRequestDto request) {
+        if (request.segments() == null || request.segments().isEmpty()) {
+            throw new IllegalArgumentException("At least one segment is required");
+        }
+        List<VideoSegment> segments = new ArrayList<>(request.segments().size());
+        for (RenderSegmentDto segment : request.segments()) {
+            segments.add(toSegment(segment));
+        }
+        CompressionOverrides overrides = request.overrides() == null ? null : CompressionOverrides.fromMap(request.overrides());
+        FfmpegCommandBuilder.Strategy strategy = request.strategy() == null
+                ? FfmpegCommandBuilder.Strategy.FILTER_COMPLEX
+                : FfmpegCommandBuilder.Strategy.valueOf(request.strategy().toUpperCase(Locale.ROOT));
+        FfmpegJobScheduler.Priority priority = request.interactive()
+                ? FfmpegJobScheduler.Priority.INTERACTIVE
+                : FfmpegJobScheduler.Priority.BATCH;
+        String name = request.name() == null || request.name().isBlank() ? "Render highlight" : request.name();
+        return new RenderJob(name, segments, overrides, strategy, priority);
+    }
+
+    private FfmpegCommandPlan plan(RenderJob job, ProcessingTask processingTask) {
+        Path output = outputDirectory.resolve("render-" + processingTask.getId() + ".mp4");
+        return commandBuilder.build(job.segments(), output, job.overrides(), job.strategy());
+    }
+
+    private void enqueue(Long taskId, RenderJob job, ProcessingTask processingTask, FfmpegCommandPlan plan) {
+        String key = taskId.toString();
+        processingTask.addStatusListener(status -> {
+            if (status.isTerminal() && status != com.aitrimmer.ffmpeg.TaskStatus.SUCCEEDED && scheduler.isClosed()) {
+                // Stopped by shutdown: keep the task and journal entry unfinished so the render resumes.
+                active.remove(taskId, processingTask);
+                return;
+            }
+            taskService.updateStatus(taskId, toTaskStatus(status));
+            if (journal != null && status == com.aitrimmer.ffmpeg.TaskStatus.RUNNING) {
+                journal.started(key);
+            }
+            if (status.isTerminal()) {
+                active.remove(taskId, processingTask);
+                if (journal != null) {
+                    journal.finished(key, status);
+                }
+            }
+        });
+        if (journal != null) {
+            AtomicLong lastJournaled = new AtomicLong(System.nanoTime());
+            processingTask.addProgressListener(progress -> {
+                long now = System.nanoTime();
+                long last = lastJournaled.get();
+                if (now - last >= journalProgressIntervalNanos && lastJournaled.compareAndSet(last, now)) {
+                    journal.progress(key, progress.getOutTime());
+                }
+            });
+        }
+        active.put(taskId, processingTask);
+        try {
+            scheduler.submit(plan, processingTask, job.priority(), null, eventHub.logConsumer(taskId))
+                    .whenComplete((exitCode, error) -> {
+                        active.remove(taskId, processingTask);
+                        if (error != null && !processingTask.getStatus().isTerminal() && !scheduler.isClosed()) {
+                            fail(taskId);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            active.remove(taskId, processingTask);
+            throw e;
+        }
+    }
+
+    private void fail(Long taskId) {
+        taskService.updateStatus(taskId, TaskStatus.FAILED);
+        if (journal != null) {
+            journal.finished(taskId.toString(), com.aitrimmer.ffmpeg.TaskStatus.FAILED);
+        }
+    }
+
+    private VideoSegment toSegment(RenderSegmentDto segment) {
+        if (segment.source() == null || segment.source().isBlank()) {
+            throw new IllegalArgumentException("Segment source is required");
+        }
+        Path source = sourceDirectory.resolve(segment.source()).normalize();
+        if (!source.startsWith(sourceDirectory)) {
+            throw new IllegalArgumentException("Segment source must be inside the media directory: " + segment.source());
+        }
+        return VideoSegment.builder()
+                .source(source)
+                .start(toDuration(segment.startSeconds()))
+                .end(toDuration(segment.endSeconds()))
+                .build();
+    }
+
+    private static Duration toDuration(Double seconds) {
+        return seconds == null ? null : Duration.ofNanos(Math.round(seconds * 1_000_000_000d));
+    }
+
+    private Duration retryAfter(FfmpegJobScheduler.Priority priority) {
+        Duration averageWait = scheduler.getAverageWait(priority);
+        return averageWait.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : averageWait;
+    }
+
+    private static TaskStatus toTaskStatus(com.aitrimmer.ffmpeg.TaskStatus status) {
+        return switch (status) {
+            case PENDING -> TaskStatus.QUEUED;
+            case RUNNING -> TaskStatus.RUNNING;
+            case SUCCEEDED -> TaskStatus.COMPLETED;
+            case FAILED -> TaskStatus.FAILED;
+            case CANCELLED -> TaskStatus.CANCELLED;
+            case TIMED_OUT -> TaskStatus.TIMED_OUT;
+        };
+    }
+
+    private static com.aitrimmer.ffmpeg.TaskStatus toLibraryStatus(TaskStatus status) {
+        return switch (status) {
+            case QUEUED -> com.aitrimmer.ffmpeg.TaskStatus.PENDING;
+            case RUNNING -> com.aitrimmer.ffmpeg.TaskStatus.RUNNING;
+            case COMPLETED -> com.aitrimmer.ffmpeg.TaskStatus.SUCCEEDED;
+            case FAILED -> com.aitrimmer.ffmpeg.TaskStatus.FAILED;
+            case CANCELLED -> com.aitrimmer.ffmpeg.TaskStatus.CANCELLED;
+            case TIMED_OUT -> com.aitrimmer.ffmpeg.TaskStatus.TIMED_OUT;
+        };
+    }
+
+    private record RenderJob(
+            String name,
+            List<VideoSegment> segments,
+            CompressionOverrides overrides,
+            FfmpegCommandBuilder.Strategy strategy,
+            FfmpegJobScheduler.Priority priority
+    ) {
+    }
+}
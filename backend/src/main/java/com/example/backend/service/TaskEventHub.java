@@ -0,0 +1,253 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.TaskDto;
+import com.example.backend.dto.TaskLogBatchDto;
+import com.example.backend.dto.TaskStatus;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Fans task status changes and FFmpeg log lines out to Server-Sent Events subscribers. Publishing never
+ * blocks: every subscriber has a bounded line buffer that drops new lines when full (the count is reported
+ * with the next batch) and a single coalesced status slot. Batched events are flushed on a fixed interval, or
+ * early once a buffer holds a full batch. Each subscriber is sent to by at most one sender thread at a time,
+ * so a client that stops reading only stalls its own stream while its buffer drops lines; its emitter times
+ * out after {@code tasks.events.emitter-timeout-ms}.
+ */
+@Component
+public class TaskEventHub {
+
+    public static final long DEFAULT_EMITTER_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final int maxBatchLines;
+    private final int bufferLines;
+    private final long emitterTimeoutMillis;
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final ExecutorService senders;
+
+    public TaskEventHub(long flushIntervalMillis, int maxBatchLines, int bufferLines) {
+        this(flushIntervalMillis, maxBatchLines, bufferLines, DEFAULT_EMITTER_TIMEOUT_MILLIS);
+    }
+
+    @Autowired
+    public TaskEventHub(
+            @Value("${tasks.events.flush-interval-ms:250}") long flushIntervalMillis,
+            @Value("${tasks.events.max-batch-lines:200}") int maxBatchLines,
+            @Value("${tasks.events.buffer-lines:2000}") int bufferLines,
+            @Value("${tasks.events.emitter-timeout-ms:1800000}") long emitterTimeoutMillis
+    ) {
+        if (flushIntervalMillis < 1 || maxBatchLines < 1 || bufferLines < maxBatchLines || emitterTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Invalid task event settings");
+        }
+        this.maxBatchLines = maxBatchLines;
+        this.bufferLines = bufferLines;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(daemon("task-events-flusher"));
+        this.senders = Executors.newCachedThreadPool(daemon("task-events-sender"));
+        flusher.scheduleWithFixedDelay(this::requestFlushAll, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public SseEmitter subscribe(TaskDto task) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = register(task.id(), (name, data) -> emitter.send(
+                SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON)));
+        Runnable remove = () -> unregister(task.id(), subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(() -> {
+            remove.run();
+            emitter.complete();
+        });
+        emitter.onError(error -> remove.run());
+        subscriber.complete = emitter::complete;
+        subscriber.status.set(task);
+        requestFlush(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Returns a log consumer for an FFmpeg run of {@code taskId}, suitable as the executor's log consumer.
+     */
+    public Consumer<String> logConsumer(long taskId) {
+        return line -> publishLog(taskId, line);
+    }
+
+    public void publishLog(long taskId, String line) {
+        Set<Subscriber> current = subscribers.get(taskId);
+        if (current == null) {
+            return;
+        }
+        for (Subscriber subscriber : current) {
+            if (!subscriber.lines.offer(line)) {
+                subscriber.dropped.incrementAndGet();
+            } else if (subscriber.lines.size() >= maxBatchLines) {
+                requestFlush(subscriber);
+            }
+        }
+    }
+
+    public void publishStatus(TaskDto task) {
+        Set<Subscriber> current = subscribers.get(task.id());
+        if (current == null) {
+            return;
+        }
+        for (Subscriber subscriber : current) {
+            subscriber.status.set(task);
+            requestFlush(subscriber);
+        }
+    }
+
+    public int getSubscriberCount(long taskId) {
+        Set<Subscriber> current = subscribers.get(taskId);
+        return current == null ? 0 : current.size();
+    }
+
+    Subscriber register(long taskId, Sink sink) {
+        Subscriber subscriber = new Subscriber(taskId, sink, bufferLines);
+        subscribers.computeIfAbsent(taskId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Flushes every subscriber on the calling thread.
+     */
+    void flushAll() {
+        for (Set<Subscriber> current : subscribers.values()) {
+            for (Subscriber subscriber : current) {
+                flush(subscriber);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flusher.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private void requestFlushAll() {
+        for (Set<Subscriber> current : subscribers.values()) {
+            for (Subscriber subscriber : current) {
+                requestFlush(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Hands the subscriber to a sender unless one is already queued or sending to it; a subscriber blocked in a
+     * send is skipped until that send returns, and whatever arrived meanwhile goes out right after.
+     */
+    private void requestFlush(Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> send(subscriber));
+            } catch (RuntimeException e) {
+                subscriber.sending.set(false);
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            flush(subscriber);
+        } finally {
+            subscriber.sending.set(false);
+        }
+        if (subscriber.hasPending() && getSubscribers(subscriber.taskId).contains(subscriber)) {
+            requestFlush(subscriber);
+        }
+    }
+
+    private Set<Subscriber> getSubscribers(long taskId) {
+        return subscribers.getOrDefault(taskId, Set.of());
+    }
+
+    private void flush(Subscriber subscriber) {
+        synchronized (subscriber) {
+            try {
+                List<String> batch = new ArrayList<>(Math.min(maxBatchLines, subscriber.lines.size()));
+                while (subscriber.lines.drainTo(batch, maxBatchLines) > 0) {
+                    subscriber.sink.send("log", new TaskLogBatchDto(batch, subscriber.dropped.getAndSet(0)));
+                    batch = new ArrayList<>(Math.min(maxBatchLines, subscriber.lines.size()));
+                }
+                long dropped = subscriber.dropped.getAndSet(0);
+                if (dropped > 0) {
+                    subscriber.sink.send("log", new TaskLogBatchDto(List.of(), dropped));
+                }
+                TaskDto status = subscriber.status.getAndSet(null);
+                if (status != null) {
+                    subscriber.sink.send("status", status);
+                    if (status.status().isTerminal()) {
+                        unregister(subscriber.taskId, subscriber);
+                        subscriber.complete.run();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                unregister(subscriber.taskId, subscriber);
+            }
+        }
+    }
+
+    private void unregister(long taskId, Subscriber subscriber) {
+        subscribers.computeIfPresent(taskId, (id, current) -> {
+            current.remove(subscriber);
+            return current.isEmpty() ? null : current;
+        });
+    }
+
+    @FunctionalInterface
+    interface Sink {
+        void send(String name, Object data) throws IOException;
+    }
+
+    static final class Subscriber {
+        private final long taskId;
+        private final Sink sink;
+        private final ArrayBlockingQueue<String> lines;
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicReference<TaskDto> status = new AtomicReference<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile Runnable complete = () -> {
+        };
+
+        private Subscriber(long taskId, Sink sink, int bufferLines) {
+            this.taskId = taskId;
+            this.sink = sink;
+            this.lines = new ArrayBlockingQueue<>(bufferLines);
+        }
+
+        private boolean hasPending() {
+            return !lines.isEmpty() || dropped.get() > 0 || status.get() != null;
+        }
+    }
+}
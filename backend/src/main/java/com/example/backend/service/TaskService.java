@@ -1,29 +1,64 @@
 package com.example.backend.service;
 
 import com.example.backend.dto.TaskDto;
+import com.example.backend.dto.TaskPageDto;
 import com.example.backend.dto.TaskStatus;
+import com.example.backend.store.TaskCursor;
+import com.example.backend.store.TaskStore;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Instant;
-import java.util.List;
 import java.util.Optional;
 
 @Service
 public class TaskService {
 
-    private final List<TaskDto> demoTasks = List.of(
-            new TaskDto(1L, "Transcode highlight", TaskStatus.RUNNING, Instant.now().minusSeconds(300)),
-            new TaskDto(2L, "Upload to Twitch", TaskStatus.QUEUED, Instant.now().minusSeconds(120)),
-            new TaskDto(3L, "Generate thumbnail", TaskStatus.COMPLETED, Instant.now().minusSeconds(900))
-    );
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
 
-    public List<TaskDto> findAll() {
-        return demoTasks;
+    private final TaskStore taskStore;
+    private final TaskEventHub eventHub;
+
+    public TaskService(TaskStore taskStore, TaskEventHub eventHub) {
+        this.taskStore = taskStore;
+        this.eventHub = eventHub;
+        // Demo tasks only make sense for throwaway stores; a durable store would keep them forever.
+        if (!taskStore.isDurable() && taskStore.size() == 0) {
+            seedDemoTasks();
+        }
+    }
+
+    public TaskPageDto findPage(TaskStatus status, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        TaskCursor cursor = after == null || after.isBlank() ? null : TaskCursor.decode(after);
+        return taskStore.findPage(status, cursor, limit);
     }
 
     public Optional<TaskDto> findById(Long id) {
-        return demoTasks.stream()
-                .filter(task -> task.id().equals(id))
-                .findFirst();
+        return taskStore.findById(id);
+    }
+
+    public TaskDto create(String name) {
+        return taskStore.create(name, TaskStatus.QUEUED, Instant.now());
+    }
+
+    public Optional<TaskDto> updateStatus(Long id, TaskStatus status) {
+        Optional<TaskDto> updated = taskStore.updateStatus(id, status);
+        updated.ifPresent(eventHub::publishStatus);
+        return updated;
+    }
+
+    public Optional<SseEmitter> subscribe(Long id) {
+        return taskStore.findById(id).map(eventHub::subscribe);
+    }
+
+    private void seedDemoTasks() {
+        Instant now = Instant.now();
+        taskStore.create("Generate thumbnail", TaskStatus.COMPLETED, now.minusSeconds(900));
+        taskStore.create("Transcode highlight", TaskStatus.RUNNING, now.minusSeconds(300));
+        taskStore.create("Upload to Twitch", TaskStatus.QUEUED, now.minusSeconds(120));
     }
 }
@@ -0,0 +1,25 @@
+package com.example.backend.store;
+
+import com.example.backend.dto.TaskDto;
+
+import java.util.List;
+
+/**
+ * Keeps tasks only for the lifetime of the process.
+ */
+public class InMemoryTaskRepository implements TaskRepository {
+
+    @Override
+    public List<TaskDto> loadAll() {
+        return List.of();
+    }
+
+    @Override
+    public void save(TaskDto task) {
+    }
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+}
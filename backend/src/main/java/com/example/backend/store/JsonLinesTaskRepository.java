@@ -0,0 +1,143 @@
+package com.example.backend.store;
+
+import com.example.backend.dto.TaskDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends every task version to a JSON-lines file and fsyncs it before {@link #save} returns. On load the
+ * newest version of each task wins and the file is compacted when most of it is superseded versions.
+ */
+public class JsonLinesTaskRepository implements TaskRepository {
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+    private FileChannel channel;
+
+    public JsonLinesTaskRepository(Path file, ObjectMapper objectMapper) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized List<TaskDto> loadAll() {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        Map<Long, TaskDto> latest = new LinkedHashMap<>();
+        int lines = 0;
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                lines++;
+                try {
+                    TaskDto task = objectMapper.readValue(line, TaskDto.class);
+                    latest.put(task.id(), task);
+                } catch (JsonProcessingException e) {
+                    // A torn final line from a crash mid-write; the previous version of that task still counts.
+                }
+            }
+            List<TaskDto> tasks = new ArrayList<>(latest.values());
+            if (lines > 2 * tasks.size()) {
+                compact(tasks);
+            }
+            return tasks;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load tasks from " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void save(TaskDto task) {
+        try {
+            if (channel == null) {
+                channel = openForAppend();
+            }
+            ByteBuffer line = ByteBuffer.wrap((objectMapper.writeValueAsString(task) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist task " + task.id(), e);
+        }
+    }
+
+    /**
+     * Opens the file for appending. A crash mid-write can leave a final line without its newline; it is
+     * terminated first so the next record starts on a line of its own instead of being glued to it.
+     */
+    private FileChannel openForAppend() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel opened = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = opened.size();
+            opened.position(size);
+            if (size > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                opened.read(last, size - 1);
+                if (last.get(0) != '\n') {
+                    opened.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                }
+            }
+            return opened;
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+    }
+
+    private void compact(List<TaskDto> tasks) throws IOException {
+        if (channel != null) {
+            // The appending channel would keep writing to the replaced file.
+            channel.close();
+            channel = null;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedWriter out = new BufferedWriter(
+                    new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            for (TaskDto task : tasks) {
+                out.write(objectMapper.writeValueAsString(task));
+                out.newLine();
+            }
+            out.flush();
+            // The rename must not become visible before the compacted contents are on disk.
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.backend.store;
+
+import com.example.backend.dto.TaskDto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Position in the newest-first task order; encoded as an opaque token for the {@code after} query parameter.
+ */
+public record TaskCursor(Instant createdAt, long id) {
+
+    static final Comparator<TaskCursor> NEWEST_FIRST = Comparator.comparing(TaskCursor::createdAt)
+            .thenComparingLong(TaskCursor::id)
+            .reversed();
+
+    public static TaskCursor of(TaskDto task) {
+        return new TaskCursor(task.createdAt(), task.id());
+    }
+
+    public String encode() {
+        String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static TaskCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            String[] parts = raw.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Malformed cursor: " + token);
+            }
+            Instant createdAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new TaskCursor(createdAt, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + token, e);
+        }
+    }
+}
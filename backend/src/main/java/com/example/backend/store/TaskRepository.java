@@ -0,0 +1,23 @@
+package com.example.backend.store;
+
+import com.example.backend.dto.TaskDto;
+
+import java.util.List;
+
+/**
+ * Durable backend of the {@link TaskStore}. Implementations only need to persist the latest version of each
+ * task; all querying is served from the store's in-memory indexes.
+ */
+public interface TaskRepository {
+
+    List<TaskDto> loadAll();
+
+    void save(TaskDto task);
+
+    /**
+     * Whether saved tasks outlive the process.
+     */
+    default boolean isDurable() {
+        return true;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.backend.store;
+
+import com.example.backend.dto.TaskDto;
+import com.example.backend.dto.TaskPageDto;
+import com.example.backend.dto.TaskStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indexed task storage: a primary index by id and newest-first indexes over all tasks and per status, backed
+ * by a pluggable {@link TaskRepository}. Writes are serialized and persisted before they become visible;
+ * reads never lock.
+ */
+@Component
+public class TaskStore {
+
+    private final TaskRepository repository;
+    private final Map<Long, TaskDto> byId = new ConcurrentHashMap<>();
+    private final NavigableMap<TaskCursor, TaskDto> all = new ConcurrentSkipListMap<>(TaskCursor.NEWEST_FIRST);
+    private final Map<TaskStatus, NavigableMap<TaskCursor, TaskDto>> byStatus = new EnumMap<>(TaskStatus.class);
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    public TaskStore(TaskRepository repository) {
+        this.repository = repository;
+        for (TaskStatus status : TaskStatus.values()) {
+            byStatus.put(status, new ConcurrentSkipListMap<>(TaskCursor.NEWEST_FIRST));
+        }
+        for (TaskDto task : repository.loadAll()) {
+            index(null, task);
+            nextId.accumulateAndGet(task.id() + 1, Math::max);
+        }
+    }
+
+    public synchronized TaskDto create(String name, TaskStatus status, Instant createdAt) {
+        TaskDto task = new TaskDto(nextId.getAndIncrement(), name, status, createdAt);
+        repository.save(task);
+        index(null, task);
+        return task;
+    }
+
+    public synchronized Optional<TaskDto> updateStatus(long id, TaskStatus status) {
+        TaskDto current = byId.get(id);
+        if (current == null) {
+            return Optional.empty();
+        }
+        if (current.status() == status) {
+            return Optional.of(current);
+        }
+        TaskDto updated = new TaskDto(current.id(), current.name(), status, current.createdAt());
+        repository.save(updated);
+        index(current, updated);
+        return Optional.of(updated);
+    }
+
+    public Optional<TaskDto> findById(long id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    /**
+     * Returns up to {@code limit} tasks, newest first, optionally restricted to one status and starting after
+     * {@code after}.
+     */
+    public TaskPageDto findPage(TaskStatus status, TaskCursor after, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        NavigableMap<TaskCursor, TaskDto> index = status == null ? all : byStatus.get(status);
+        NavigableMap<TaskCursor, TaskDto> view = after == null ? index : index.tailMap(after, false);
+        List<TaskDto> items = new ArrayList<>(Math.min(limit, 64));
+        Iterator<TaskDto> tasks = view.values().iterator();
+        while (tasks.hasNext() && items.size() < limit) {
+            items.add(tasks.next());
+        }
+        String nextCursor = tasks.hasNext() ? TaskCursor.of(items.get(items.size() - 1)).encode() : null;
+        return new TaskPageDto(items, nextCursor);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean isDurable() {
+        return repository.isDurable();
+    }
+
+    private void index(TaskDto previous, TaskDto task) {
+        Objects.requireNonNull(task.id(), "id");
+        TaskCursor key = TaskCursor.of(task);
+        byId.put(task.id(), task);
+        all.put(key, task);
+        byStatus.get(task.status()).put(key, task);
+        if (previous != null && previous.status() != task.status()) {
+            byStatus.get(previous.status()).remove(TaskCursor.of(previous));
+        }
+    }
+}
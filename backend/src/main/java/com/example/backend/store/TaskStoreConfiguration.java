@@ -0,0 +1,23 @@
+package com.example.backend.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class TaskStoreConfiguration {
+
+    @Bean
+    public TaskRepository taskRepository(
+            @Value("${tasks.store.path:}") String path,
+            ObjectMapper objectMapper
+    ) {
+        if (path.isBlank()) {
+            return new InMemoryTaskRepository();
+        }
+        return new JsonLinesTaskRepository(Path.of(path), objectMapper);
+    }
+}
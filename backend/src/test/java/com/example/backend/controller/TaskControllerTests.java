@@ -0,0 +1,91 @@
+package com.example.backend.controller;
+
+import com.aitrimmer.ffmpeg.FfmpegJobScheduler;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class TaskControllerTests {
+
+    private static final String RENDER_REQUEST = """
+            {"name": "Clutch round", "segments": [{"source": "vod.mkv", "startSeconds": 12.5, "endSeconds": 40}]}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private FfmpegJobScheduler scheduler;
+
+    @Test
+    void acceptsRenderAndReturnsTaskImmediately() throws Exception {
+        when(scheduler.submit(any(), any(), eq(FfmpegJobScheduler.Priority.BATCH), isNull(), any()))
+                .thenReturn(new CompletableFuture<>());
+
+        String location = mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON).content(RENDER_REQUEST))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("QUEUED"))
+                .andReturn()
+                .getResponse()
+                .getHeader("Location");
+
+        mockMvc.perform(get(location))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Clutch round"));
+    }
+
+    @Test
+    void rejectsWithRetryAfterWhenQueueIsFull() throws Exception {
+        when(scheduler.isQueueFull()).thenReturn(true);
+        when(scheduler.getAverageWait(FfmpegJobScheduler.Priority.BATCH)).thenReturn(Duration.ofMillis(6_200));
+
+        mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON).content(RENDER_REQUEST))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "7"));
+        verify(scheduler, never()).submit(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void cancelsRenderInProgress() throws Exception {
+        when(scheduler.submit(any(), any(), eq(FfmpegJobScheduler.Priority.BATCH), isNull(), any()))
+                .thenReturn(new CompletableFuture<>());
+        when(scheduler.cancel(any())).thenReturn(true);
+        String location = mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON).content(RENDER_REQUEST))
+                .andReturn()
+                .getResponse()
+                .getHeader("Location");
+
+        mockMvc.perform(post(location + "/cancel")).andExpect(status().isAccepted());
+        verify(scheduler).cancel(any());
+        mockMvc.perform(post("/api/tasks/1/cancel")).andExpect(status().isConflict());
+        mockMvc.perform(post("/api/tasks/999999/cancel")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void rejectsSourcesOutsideMediaDirectory() throws Exception {
+        mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"segments\": [{\"source\": \"../../etc/passwd\"}]}"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.backend.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicrometerFfmpegMetricsTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MicrometerFfmpegMetrics metrics = new MicrometerFfmpegMetrics(registry);
+
+    @Test
+    void tagsEveryMeterWithStrategyAndPreset() {
+        Map<String, String> tags = Map.of("strategy", "filter_complex", "preset", "veryfast");
+
+        metrics.processSpawned(tags, Duration.ofMillis(4));
+        metrics.processExited(tags, 0, Duration.ofSeconds(10), OptionalDouble.of(3.0), OptionalLong.of(2048));
+        metrics.processExited(Map.of(), 1, Duration.ofSeconds(1), OptionalDouble.empty(), OptionalLong.empty());
+
+        assertThat(registry.get("ffmpeg.process.spawn").tag("strategy", "filter_complex").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isEqualTo(4.0);
+        assertThat(registry.get("ffmpeg.encode").tags("preset", "veryfast", "outcome", "success").timer()
+                .count()).isEqualTo(1);
+        assertThat(registry.get("ffmpeg.encode.speed").tag("strategy", "filter_complex").summary()
+                .totalAmount()).isEqualTo(3.0);
+        assertThat(registry.get("ffmpeg.output.size").summary().totalAmount()).isEqualTo(2048.0);
+        assertThat(registry.get("ffmpeg.process.exits").tags("strategy", "unknown", "exit_code", "1").counter()
+                .count()).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.backend.service;
+
+import com.aitrimmer.ffmpeg.CompressionPresetConfig;
+import com.aitrimmer.ffmpeg.FfmpegCommandBuilder;
+import com.aitrimmer.ffmpeg.FfmpegJobScheduler;
+import com.aitrimmer.ffmpeg.PendingRenderJob;
+import com.aitrimmer.ffmpeg.ProcessingTask;
+import com.aitrimmer.ffmpeg.RenderJournal;
+import com.example.backend.dto.RenderRequestDto;
+import com.example.backend.dto.TaskDto;
+import com.example.backend.dto.TaskStatus;
+import com.example.backend.store.InMemoryTaskRepository;
+import com.example.backend.store.TaskStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RenderServiceTests {
+
+    private static final String RENDER_REQUEST = """
+            {"name": "Clutch round", "segments": [{"source": "vod.mkv", "startSeconds": 12.5, "endSeconds": 40}]}
+            """;
+
+    private final TaskEventHub hub = new TaskEventHub(60_000, 4, 8);
+    private final TaskService tasks = new TaskService(new TaskStore(new InMemoryTaskRepository()), hub);
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        hub.close();
+    }
+
+    @Test
+    void requeuesInterruptedRendersFromJournalAndSkipsFinishedOnes() {
+        TaskDto interrupted = tasks.create("Interrupted");
+        tasks.updateStatus(interrupted.id(), TaskStatus.RUNNING);
+        TaskDto finished = tasks.create("Finished");
+        tasks.updateStatus(finished.id(), TaskStatus.COMPLETED);
+        Path journalFile = directory.resolve("renders.journal");
+        try (RenderJournal journal = new RenderJournal(journalFile)) {
+            journal.submitted(interrupted.id().toString(), RENDER_REQUEST).join();
+            journal.started(interrupted.id().toString()).join();
+            journal.submitted(finished.id().toString(), RENDER_REQUEST).join();
+        }
+        FfmpegJobScheduler scheduler = mock(FfmpegJobScheduler.class);
+        when(scheduler.submit(any(), any(), any(), any(), any())).thenReturn(new CompletableFuture<>());
+        RenderService service = service(scheduler, journalFile);
+
+        service.recoverJournaledRenders();
+        service.close();
+
+        verify(scheduler, times(1)).submit(any(), any(), any(), any(), any());
+        assertThat(tasks.findById(interrupted.id())).map(TaskDto::status).contains(TaskStatus.QUEUED);
+        assertThat(tasks.findById(finished.id())).map(TaskDto::status).contains(TaskStatus.COMPLETED);
+        try (RenderJournal reopened = new RenderJournal(journalFile)) {
+            assertThat(reopened.recoveredJobs())
+                    .extracting(PendingRenderJob::getKey)
+                    .containsExactly(interrupted.id().toString());
+        }
+    }
+
+    @Test
+    void requeuesJournaledRenderWhoseTaskWasLostAndKeepsItPending() {
+        long lastId = tasks.create("Earlier render").id();
+        // Task ids restart with the store, so the task recreated for this entry reuses its key.
+        String reusedKey = Long.toString(lastId + 1);
+        Path journalFile = directory.resolve("renders.journal");
+        try (RenderJournal journal = new RenderJournal(journalFile)) {
+            journal.submitted(reusedKey, RENDER_REQUEST).join();
+            journal.submitted("999", RENDER_REQUEST).join();
+        }
+        FfmpegJobScheduler scheduler = mock(FfmpegJobScheduler.class);
+        when(scheduler.submit(any(), any(), any(), any(), any())).thenReturn(new CompletableFuture<>());
+        RenderService service = service(scheduler, journalFile);
+
+        service.recoverJournaledRenders();
+        service.close();
+
+        verify(scheduler, times(2)).submit(any(), any(), any(), any(), any());
+        assertThat(tasks.findById(lastId + 1)).map(TaskDto::name).contains("Clutch round");
+        assertThat(tasks.findById(lastId + 2)).map(TaskDto::name).contains("Clutch round");
+        try (RenderJournal reopened = new RenderJournal(journalFile)) {
+            assertThat(reopened.recoveredJobs())
+                    .extracting(PendingRenderJob::getKey)
+                    .containsExactlyInAnyOrder(reusedKey, Long.toString(lastId + 2));
+        }
+    }
+
+    @Test
+    void leavesRendersStoppedByShutdownUnfinished() {
+        TaskDto interrupted = tasks.create("Interrupted");
+        Path journalFile = directory.resolve("renders.journal");
+        try (RenderJournal journal = new RenderJournal(journalFile)) {
+            journal.submitted(interrupted.id().toString(), RENDER_REQUEST).join();
+        }
+        FfmpegJobScheduler scheduler = mock(FfmpegJobScheduler.class);
+        ArgumentCaptor<ProcessingTask> submitted = ArgumentCaptor.forClass(ProcessingTask.class);
+        when(scheduler.submit(any(), submitted.capture(), any(), any(), any())).thenReturn(new CompletableFuture<>());
+        RenderService service = service(scheduler, journalFile);
+        service.recoverJournaledRenders();
+
+        when(scheduler.isClosed()).thenReturn(true);
+        submitted.getValue().setStatus(com.aitrimmer.ffmpeg.TaskStatus.RUNNING);
+        submitted.getValue().setStatus(com.aitrimmer.ffmpeg.TaskStatus.FAILED);
+        service.close();
+
+        assertThat(tasks.findById(interrupted.id())).map(TaskDto::status).contains(TaskStatus.RUNNING);
+        try (RenderJournal reopened = new RenderJournal(journalFile)) {
+            assertThat(reopened.recoveredJobs())
+                    .extracting(PendingRenderJob::getKey)
+                    .containsExactly(interrupted.id().toString());
+        }
+    }
+
+    @Test
+    void createsOutputDirectoryAndLeavesNoTaskWhenThePlanCannotBeBuilt() throws Exception {
+        FfmpegCommandBuilder builder = mock(FfmpegCommandBuilder.class);
+        when(builder.build(any(), any(), any(), any())).thenThrow(new IllegalArgumentException("bad segment"));
+        FfmpegJobScheduler scheduler = mock(FfmpegJobScheduler.class);
+        RenderService service = new RenderService(
+                builder,
+                scheduler,
+                tasks,
+                hub,
+                new ObjectMapper(),
+                directory.toString(),
+                directory.resolve("renders").toString(),
+                "",
+                Duration.ofSeconds(10)
+        );
+        int before = tasks.findPage(null, null, TaskService.MAX_PAGE_SIZE).items().size();
+
+        assertThat(directory.resolve("renders")).isDirectory();
+        assertThatThrownBy(() -> service.submit(new ObjectMapper().readValue(RENDER_REQUEST, RenderRequestDto.class)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(tasks.findPage(null, null, TaskService.MAX_PAGE_SIZE).items()).hasSize(before);
+        verify(scheduler, never()).submit(any(), any(), any(), any(), any());
+    }
+
+    private RenderService service(FfmpegJobScheduler scheduler, Path journalFile) {
+        return new RenderService(
+                new FfmpegCommandBuilder(new CompressionPresetConfig()),
+                scheduler,
+                tasks,
+                hub,
+                new ObjectMapper(),
+                directory.toString(),
+                directory.resolve("renders").toString(),
+                journalFile.toString(),
+                Duration.ofSeconds(10)
+        );
+    }
+}
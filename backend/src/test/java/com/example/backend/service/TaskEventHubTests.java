@@ -0,0 +1,97 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.TaskDto;
+import com.example.backend.dto.TaskLogBatchDto;
+import com.example.backend.dto.TaskStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskEventHubTests {
+
+    private final TaskEventHub hub = new TaskEventHub(60_000, 4, 8);
+
+    @AfterEach
+    void tearDown() {
+        hub.close();
+    }
+
+    @Test
+    void batchesLinesAndReportsDropsWithoutBlockingPublisher() {
+        List<Object> events = Collections.synchronizedList(new ArrayList<>());
+        hub.register(7L, (name, data) -> {
+            events.add(data);
+            LockSupport.parkNanos(5_000_000L);
+        });
+
+        for (int i = 0; i < 50; i++) {
+            hub.publishLog(7L, "frame=" + i);
+        }
+        hub.flushAll();
+
+        long delivered = 0;
+        long dropped = 0;
+        synchronized (events) {
+            for (Object event : events) {
+                TaskLogBatchDto batch = (TaskLogBatchDto) event;
+                assertThat(batch.lines()).hasSizeLessThanOrEqualTo(4);
+                delivered += batch.lines().size();
+                dropped += batch.droppedLines();
+            }
+        }
+        assertThat(delivered + dropped).isEqualTo(50);
+        assertThat(dropped).isPositive();
+    }
+
+    @Test
+    void coalescesStatusAndClosesOnTerminalState() {
+        List<String> names = Collections.synchronizedList(new ArrayList<>());
+        List<Object> payloads = Collections.synchronizedList(new ArrayList<>());
+        hub.register(3L, (name, data) -> {
+            names.add(name);
+            payloads.add(data);
+        });
+        Instant createdAt = Instant.now();
+
+        hub.publishStatus(new TaskDto(3L, "render", TaskStatus.RUNNING, createdAt));
+        hub.publishStatus(new TaskDto(3L, "render", TaskStatus.COMPLETED, createdAt));
+        hub.flushAll();
+
+        assertThat(names).isNotEmpty().allMatch("status"::equals);
+        assertThat(payloads.get(payloads.size() - 1)).extracting("status").isEqualTo(TaskStatus.COMPLETED);
+        assertThat(hub.getSubscriberCount(3L)).isZero();
+    }
+
+    @Test
+    void slowSubscriberDoesNotStallOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastReceived = new CountDownLatch(1);
+        hub.register(1L, (name, data) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        hub.register(2L, (name, data) -> fastReceived.countDown());
+        Instant createdAt = Instant.now();
+
+        try {
+            hub.publishStatus(new TaskDto(1L, "slow", TaskStatus.RUNNING, createdAt));
+            hub.publishStatus(new TaskDto(2L, "fast", TaskStatus.RUNNING, createdAt));
+
+            assertThat(fastReceived.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.backend.store;
+
+import com.example.backend.dto.TaskDto;
+import com.example.backend.dto.TaskPageDto;
+import com.example.backend.dto.TaskStatus;
+import com.example.backend.service.TaskEventHub;
+import com.example.backend.service.TaskService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskStoreTests {
+
+    private static final Instant BASE = Instant.parse("2024-05-01T12:00:00Z");
+
+    @Test
+    void pagesNewestFirstWithCursor() {
+        TaskStore store = new TaskStore(new InMemoryTaskRepository());
+        for (int i = 0; i < 5; i++) {
+            store.create("task " + i, TaskStatus.QUEUED, BASE.plusSeconds(i));
+        }
+
+        TaskPageDto first = store.findPage(null, null, 2);
+        assertThat(first.items()).extracting(TaskDto::name).containsExactly("task 4", "task 3");
+        assertThat(first.nextCursor()).isNotNull();
+
+        TaskPageDto second = store.findPage(null, TaskCursor.decode(first.nextCursor()), 2);
+        assertThat(second.items()).extracting(TaskDto::name).containsExactly("task 2", "task 1");
+
+        TaskPageDto last = store.findPage(null, TaskCursor.decode(second.nextCursor()), 2);
+        assertThat(last.items()).extracting(TaskDto::name).containsExactly("task 0");
+        assertThat(last.nextCursor()).isNull();
+    }
+
+    @Test
+    void keepsStatusIndexInSyncWithUpdates() {
+        TaskStore store = new TaskStore(new InMemoryTaskRepository());
+        TaskDto first = store.create("first", TaskStatus.QUEUED, BASE);
+        store.create("second", TaskStatus.QUEUED, BASE.plusSeconds(1));
+
+        store.updateStatus(first.id(), TaskStatus.RUNNING);
+
+        assertThat(store.findPage(TaskStatus.QUEUED, null, 10).items()).extracting(TaskDto::name).containsExactly("second");
+        assertThat(store.findPage(TaskStatus.RUNNING, null, 10).items()).extracting(TaskDto::name).containsExactly("first");
+        assertThat(store.findById(first.id())).map(TaskDto::status).contains(TaskStatus.RUNNING);
+    }
+
+    @Test
+    void reloadsLatestVersionsFromJsonLinesFile(@TempDir Path directory) {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Path file = directory.resolve("tasks.jsonl");
+        TaskStore store = new TaskStore(new JsonLinesTaskRepository(file, objectMapper));
+        TaskDto task = store.create("render", TaskStatus.QUEUED, BASE);
+        store.updateStatus(task.id(), TaskStatus.COMPLETED);
+
+        TaskStore reloaded = new TaskStore(new JsonLinesTaskRepository(file, objectMapper));
+
+        assertThat(reloaded.size()).isEqualTo(1);
+        assertThat(reloaded.findPage(TaskStatus.COMPLETED, null, 10).items())
+                .containsExactly(new TaskDto(task.id(), "render", TaskStatus.COMPLETED, BASE));
+        assertThat(reloaded.create("next", TaskStatus.QUEUED, BASE).id()).isEqualTo(task.id() + 1);
+        assertThat(List.of(TaskCursor.decode(TaskCursor.of(task).encode()))).containsExactly(TaskCursor.of(task));
+    }
+
+    @Test
+    void compactsSupersededVersionsOnLoad(@TempDir Path directory) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Path file = directory.resolve("tasks.jsonl");
+        TaskStore store = new TaskStore(new JsonLinesTaskRepository(file, objectMapper));
+        TaskDto task = store.create("render", TaskStatus.QUEUED, BASE);
+        store.updateStatus(task.id(), TaskStatus.RUNNING);
+        store.updateStatus(task.id(), TaskStatus.COMPLETED);
+
+        TaskStore reloaded = new TaskStore(new JsonLinesTaskRepository(file, objectMapper));
+
+        assertThat(reloaded.findById(task.id())).map(TaskDto::status).contains(TaskStatus.COMPLETED);
+        assertThat(Files.readAllLines(file)).hasSize(1);
+        assertThat(directory.resolve("tasks.jsonl.tmp")).doesNotExist();
+    }
+
+    @Test
+    void appendsAfterATornFinalLineWithoutLosingTheNewRecord(@TempDir Path directory) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Path file = directory.resolve("tasks.jsonl");
+        TaskStore store = new TaskStore(new JsonLinesTaskRepository(file, objectMapper));
+        TaskDto first = store.create("first", TaskStatus.QUEUED, BASE);
+        Files.writeString(file, "{\"id\":2,\"na", StandardOpenOption.APPEND);
+
+        TaskStore reopened = new TaskStore(new JsonLinesTaskRepository(file, objectMapper));
+        TaskDto second = reopened.create("second", TaskStatus.QUEUED, BASE.plusSeconds(1));
+
+        TaskStore reloaded = new TaskStore(new JsonLinesTaskRepository(file, objectMapper));
+        assertThat(reloaded.findById(first.id())).isPresent();
+        assertThat(reloaded.findById(second.id())).map(TaskDto::name).contains("second");
+    }
+
+    @Test
+    void seedsDemoTasksOnlyIntoInMemoryStores(@TempDir Path directory) {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Path file = directory.resolve("tasks.jsonl");
+        TaskEventHub hub = new TaskEventHub(60_000, 4, 8);
+
+        TaskStore durable = new TaskStore(new JsonLinesTaskRepository(file, objectMapper));
+        new TaskService(durable, hub);
+        TaskStore inMemory = new TaskStore(new InMemoryTaskRepository());
+        new TaskService(inMemory, hub);
+
+        assertThat(durable.size()).isZero();
+        assertThat(file).doesNotExist();
+        assertThat(inMemory.size()).isEqualTo(3);
+    }
+}
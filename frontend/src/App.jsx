@@ -1,15 +1,20 @@
 import { useEffect, useState } from 'react';
 
+const MAX_LIVE_LOG_LINES = 500;
+const TERMINAL_STATUSES = ['COMPLETED', 'FAILED', 'CANCELLED', 'TIMED_OUT'];
+
 function App() {
   const [tasks, setTasks] = useState([]);
   const [config, setConfig] = useState(null);
   const [error, setError] = useState(null);
+  const [selectedTaskId, setSelectedTaskId] = useState(null);
+  const [liveLog, setLiveLog] = useState([]);
 
   useEffect(() => {
     async function loadData() {
       try {
         const [taskResponse, configResponse] = await Promise.all([
-          fetch('/api/tasks'),
+          fetch('/api/tasks?limit=20'),
           fetch('/api/config')
         ]);
 
@@ -22,7 +27,7 @@ function App() {
           configResponse.json()
         ]);
 
-        setTasks(taskData);
+        setTasks(taskData.items);
         setConfig(configData);
       } catch (err) {
         setError(err.message);
@@ -32,6 +37,29 @@ function App() {
     loadData();
   }, []);
 
+  useEffect(() => {
+    if (selectedTaskId === null) {
+      return undefined;
+    }
+    setLiveLog([]);
+    const source = new EventSource(`/api/tasks/${selectedTaskId}/events`);
+    source.addEventListener('status', (event) => {
+      const update = JSON.parse(event.data);
+      setTasks((current) => current.map((task) => (task.id === update.id ? update : task)));
+      if (TERMINAL_STATUSES.includes(update.status)) {
+        source.close();
+      }
+    });
+    source.addEventListener('log', (event) => {
+      const batch = JSON.parse(event.data);
+      const lines = batch.droppedLines
+        ? [...batch.lines, `... ${batch.droppedLines} lines skipped`]
+        : batch.lines;
+      setLiveLog((current) => [...current, ...lines].slice(-MAX_LIVE_LOG_LINES));
+    });
+    return () => source.close();
+  }, [selectedTaskId]);
+
   return (
     <div className="app">
       <header>
@@ -65,7 +93,7 @@ function App() {
             </thead>
             <tbody>
               {tasks.map((task) => (
-                <tr key={task.id}>
+                <tr key={task.id} onClick={() => setSelectedTaskId(task.id)}>
                   <td>{task.id}</td>
                   <td>{task.name}</td>
                   <td>{task.status}</td>
@@ -78,6 +106,12 @@ function App() {
           <p>No tasks available.</p>
         )}
       </section>
+      {selectedTaskId !== null && (
+        <section>
+          <h2>Live Log for Task {selectedTaskId}</h2>
+          <pre className="live-log">{liveLog.join('\n')}</pre>
+        </section>
+      )}
     </div>
   );
 }
@@ -0,0 +1,75 @@
+package com.aitrimmer.ffmpeg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures plan generation for highlight reels of increasing length. Run with {@code -prof gc} (the default
+ * {@code jmh.args}) to report allocation rates next to the timings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlanGenerationBenchmark {
+
+    private static final Path OUTPUT = Path.of("/renders/highlights.mp4");
+    private static final Path SCRIPT = Path.of("/tmp/concat.txt");
+
+    @Param({"1", "100", "10000", "100000"})
+    public int segmentCount;
+
+    private FfmpegCommandBuilder builder;
+    private List<VideoSegment> segments;
+    private FfmpegCommandPlan concatPlan;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        builder = new FfmpegCommandBuilder(new CompressionPresetConfig());
+        segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            // Interleave a handful of VODs so neighbouring segments never merge.
+            long startMillis = 60_000L + i * 7_321L;
+            segments.add(VideoSegment.builder()
+                    .source(Path.of("/vods/stream-" + (i % 8) + ".mkv"))
+                    .start(Duration.ofMillis(startMillis))
+                    .end(Duration.ofMillis(startMillis + 4_250L))
+                    .build());
+        }
+        concatPlan = builder.build(segments, OUTPUT, null, FfmpegCommandBuilder.Strategy.CONCAT_SCRIPT);
+    }
+
+    @Benchmark
+    public FfmpegCommandPlan build(StrategyParam param) {
+        return builder.build(segments, OUTPUT, null, param.strategy);
+    }
+
+    @Benchmark
+    public List<String> concatCommand() {
+        return concatPlan.command(SCRIPT);
+    }
+
+    @State(Scope.Benchmark)
+    public static class StrategyParam {
+        @Param({"CONCAT_SCRIPT", "FILTER_COMPLEX"})
+        public FfmpegCommandBuilder.Strategy strategy;
+    }
+}
@@ -0,0 +1,43 @@
+package com.aitrimmer.ffmpeg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolving a compression preset and rendering its arguments, with and without overrides.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PresetResolutionBenchmark {
+
+    private final CompressionPresetConfig config = new CompressionPresetConfig();
+    private final CompressionOverrides overrides = CompressionOverrides.builder()
+            .crf(20)
+            .preset("veryfast")
+            .audioBitrate("160k")
+            .build();
+
+    @Benchmark
+    public List<String> resolveDefault() {
+        return config.resolve(null).toArgs();
+    }
+
+    @Benchmark
+    public List<String> resolveWithOverrides() {
+        return config.resolve(overrides).toArgs();
+    }
+}
@@ -0,0 +1,369 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Finds highlight candidates from audio energy. FFmpeg decodes the source to mono 16-bit PCM at a low sample
+ * rate, which is read as a stream through one fixed buffer: each window's RMS loudness is scored against an
+ * exponentially weighted baseline of the preceding audio, runs of loud windows become events, nearby events
+ * are merged, and only the events rising furthest above the baseline are kept. Memory stays constant whatever
+ * the length of the VOD.
+ */
+public final class AudioHighlightDetector {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final double SILENCE_DB = -100d;
+    // Keeps scores finite over perfectly steady audio such as silence.
+    private static final double MIN_DEVIATION_DB = 1d;
+    private static final int WARM_UP_WINDOWS = 10;
+
+    private final String ffmpegCommand;
+    private final int sampleRate;
+    private final Duration window;
+    private final Duration baseline;
+    private final double threshold;
+    private final double minLoudnessDb;
+    private final Duration padBefore;
+    private final Duration padAfter;
+    private final Duration mergeGap;
+    private final int maxSegments;
+
+    private AudioHighlightDetector(Builder builder) {
+        this.ffmpegCommand = Objects.requireNonNull(builder.ffmpegCommand, "ffmpegCommand");
+        this.sampleRate = builder.sampleRate;
+        this.window = requirePositive(builder.window, "window");
+        this.baseline = requirePositive(builder.baseline, "baseline");
+        this.threshold = builder.threshold;
+        this.minLoudnessDb = builder.minLoudnessDb;
+        this.padBefore = requireNotNegative(builder.padBefore, "padBefore");
+        this.padAfter = requireNotNegative(builder.padAfter, "padAfter");
+        this.mergeGap = requireNotNegative(builder.mergeGap, "mergeGap");
+        this.maxSegments = builder.maxSegments;
+        if (sampleRate < 100) {
+            throw new IllegalArgumentException("sampleRate must be at least 100");
+        }
+        if (samplesPerWindow() < 1) {
+            throw new IllegalArgumentException("window is shorter than one sample");
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("maxSegments must be at least 1");
+        }
+    }
+
+    private static Duration requirePositive(Duration duration, String name) {
+        Objects.requireNonNull(duration, name);
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return duration;
+    }
+
+    private static Duration requireNotNegative(Duration duration, String name) {
+        Objects.requireNonNull(duration, name);
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException(name + " must not be negative");
+        }
+        return duration;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Decodes the first audio stream of {@code source} and returns its highlights, best first.
+     */
+    public List<VideoSegment> detect(Path source) {
+        Objects.requireNonNull(source, "source");
+        ProcessBuilder builder = new ProcessBuilder(
+                ffmpegCommand, "-hide_banner", "-nostdin", "-v", "error",
+                "-i", source.toString(),
+                "-map", "0:a:0", "-vn", "-ac", "1", "-ar", Integer.toString(sampleRate),
+                "-f", "s16le", "-acodec", "pcm_s16le", "pipe:1"
+        );
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = null;
+        try {
+            process = builder.start();
+            List<VideoSegment> highlights;
+            try (InputStream input = process.getInputStream()) {
+                highlights = detect(source, input);
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new FfmpegExecutionException("ffmpeg exited with code " + exitCode);
+            }
+            return highlights;
+        } catch (IOException e) {
+            throw new FfmpegExecutionException("Failed to decode audio of " + source, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FfmpegExecutionException("Audio decoding was interrupted", e);
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Scores mono signed 16-bit little-endian PCM at the configured sample rate and returns highlights of
+     * {@code source}, best first. Segments are padded, clamped to the audio, and never overlap.
+     */
+    public List<VideoSegment> detect(Path source, InputStream pcm) throws IOException {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(pcm, "pcm");
+        Scan scan = new Scan();
+        byte[] buffer = new byte[BUFFER_BYTES];
+        int carry = 0;
+        int read;
+        while ((read = pcm.read(buffer, carry, buffer.length - carry)) >= 0) {
+            int available = carry + read;
+            int even = available & ~1;
+            for (int i = 0; i < even; i += 2) {
+                scan.sample((short) ((buffer[i] & 0xff) | (buffer[i + 1] << 8)));
+            }
+            carry = available - even;
+            if (carry > 0) {
+                buffer[0] = buffer[even];
+            }
+        }
+        scan.finish();
+        return scan.toSegments(source);
+    }
+
+    private int samplesPerWindow() {
+        return (int) (window.toNanos() * sampleRate / 1_000_000_000L);
+    }
+
+    /**
+     * State of one pass over a track. Window energy is accumulated in primitives; only the current and pending
+     * events and the bounded ranking are kept.
+     */
+    private final class Scan {
+        private final int windowSamples = samplesPerWindow();
+        private final double alpha = Math.min(1d, (double) window.toNanos() / baseline.toNanos());
+        private final long joinSamples = toSamples(padBefore.plus(padAfter).plus(mergeGap));
+        private final PriorityQueue<Event> ranked =
+                new PriorityQueue<>(maxSegments + 1, Comparator.comparingDouble((Event event) -> event.score));
+        private long samples;
+        private int windowFill;
+        private double sumOfSquares;
+        private long windows;
+        private double mean;
+        private double variance;
+        private long runStart = -1;
+        private long runEnd;
+        private double runScore;
+        private Event pending;
+
+        private void sample(short value) {
+            sumOfSquares += (double) value * value;
+            samples++;
+            if (++windowFill == windowSamples) {
+                closeWindow();
+            }
+        }
+
+        private void closeWindow() {
+            double rms = Math.sqrt(sumOfSquares / windowFill);
+            double loudness = rms <= 0 ? SILENCE_DB : Math.max(SILENCE_DB, 20 * Math.log10(rms / 32768d));
+            long windowStart = samples - windowFill;
+            sumOfSquares = 0;
+            windowFill = 0;
+            double rise = loudness - mean;
+            double score = rise / Math.max(MIN_DEVIATION_DB, Math.sqrt(variance));
+            if (windows >= WARM_UP_WINDOWS && score >= threshold && loudness >= minLoudnessDb) {
+                // The z-score decides what is a spike; events are ranked by how far they rise above the
+                // baseline, which does not depend on how noisy the preceding audio happened to be.
+                if (runStart < 0) {
+                    runStart = windowStart;
+                    runScore = rise;
+                } else {
+                    runScore = Math.max(runScore, rise);
+                }
+                runEnd = samples;
+            } else {
+                endRun();
+            }
+            if (windows == 0) {
+                mean = loudness;
+            } else {
+                // Exponentially weighted mean and variance of the loudness preceding this window.
+                double delta = loudness - mean;
+                mean += alpha * delta;
+                variance = (1 - alpha) * (variance + alpha * delta * delta);
+            }
+            windows++;
+        }
+
+        private void endRun() {
+            if (runStart < 0) {
+                return;
+            }
+            if (pending != null && runStart - pending.end <= joinSamples) {
+                pending.end = runEnd;
+                pending.score = Math.max(pending.score, runScore);
+            } else {
+                rank(pending);
+                pending = new Event(runStart, runEnd, runScore);
+            }
+            runStart = -1;
+        }
+
+        private void finish() {
+            if (windowFill > 0) {
+                closeWindow();
+            }
+            endRun();
+            rank(pending);
+            pending = null;
+        }
+
+        private void rank(Event event) {
+            if (event == null) {
+                return;
+            }
+            ranked.add(event);
+            if (ranked.size() > maxSegments) {
+                ranked.poll();
+            }
+        }
+
+        private List<VideoSegment> toSegments(Path source) {
+            List<Event> events = new ArrayList<>(ranked);
+            events.sort(Comparator.comparingDouble((Event event) -> event.score).reversed()
+                    .thenComparingLong(event -> event.start));
+            long before = toSamples(padBefore);
+            long after = toSamples(padAfter);
+            List<VideoSegment> segments = new ArrayList<>(events.size());
+            for (Event event : events) {
+                segments.add(VideoSegment.builder()
+                        .source(source)
+                        .start(toDuration(Math.max(0, event.start - before)))
+                        .end(toDuration(Math.min(samples, event.end + after)))
+                        .build());
+            }
+            return segments;
+        }
+
+        private long toSamples(Duration duration) {
+            return duration.toNanos() / 1_000L * sampleRate / 1_000_000L;
+        }
+
+        private Duration toDuration(long sampleIndex) {
+            return Duration.ofNanos(sampleIndex * 1_000_000_000L / sampleRate);
+        }
+    }
+
+    private static final class Event {
+        private final long start;
+        private long end;
+        private double score;
+
+        private Event(long start, long end, double score) {
+            this.start = start;
+            this.end = end;
+            this.score = score;
+        }
+    }
+
+    public static final class Builder {
+        private String ffmpegCommand = "ffmpeg";
+        private int sampleRate = 8_000;
+        private Duration window = Duration.ofMillis(500);
+        private Duration baseline = Duration.ofSeconds(60);
+        private double threshold = 3d;
+        private double minLoudnessDb = -40d;
+        private Duration padBefore = Duration.ofSeconds(8);
+        private Duration padAfter = Duration.ofSeconds(4);
+        private Duration mergeGap = Duration.ofSeconds(2);
+        private int maxSegments = 20;
+
+        private Builder() {
+        }
+
+        public Builder ffmpegCommand(String ffmpegCommand) {
+            this.ffmpegCommand = ffmpegCommand;
+            return this;
+        }
+
+        /**
+         * Rate the audio is resampled to before scoring; loudness needs far less than speech or music does.
+         */
+        public Builder sampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Length of the windows loudness is measured over.
+         */
+        public Builder window(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Time constant of the running loudness baseline windows are compared to.
+         */
+        public Builder baseline(Duration baseline) {
+            this.baseline = baseline;
+            return this;
+        }
+
+        /**
+         * Standard deviations above the baseline a window must reach to count as a spike.
+         */
+        public Builder threshold(double threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Loudness in dBFS below which windows are ignored however much they stand out.
+         */
+        public Builder minLoudnessDb(double minLoudnessDb) {
+            this.minLoudnessDb = minLoudnessDb;
+            return this;
+        }
+
+        /**
+         * Lead-in kept before a spike, usually longer than the tail because the build-up matters.
+         */
+        public Builder padBefore(Duration padBefore) {
+            this.padBefore = padBefore;
+            return this;
+        }
+
+        public Builder padAfter(Duration padAfter) {
+            this.padAfter = padAfter;
+            return this;
+        }
+
+        /**
+         * Events whose padded ranges are closer than this are merged into one segment.
+         */
+        public Builder mergeGap(Duration mergeGap) {
+            this.mergeGap = mergeGap;
+            return this;
+        }
+
+        public Builder maxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        public AudioHighlightDetector build() {
+            return new AudioHighlightDetector(this);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.aitrimmer.ffmpeg;
+
+/**
+ * Point-in-time counters of a cache.
+ */
+public final class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long entries;
+
+    public CacheStats(long hits, long misses, long evictions, long entries) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0d : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + " misses=" + misses + " evictions=" + evictions + " entries=" + entries;
+    }
+}
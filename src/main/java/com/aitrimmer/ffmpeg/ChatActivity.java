@@ -0,0 +1,47 @@
+package com.aitrimmer.ffmpeg;
+
+/**
+ * Chat messages and emotes per second of a VOD, as counted by {@link ChatReplayIndexer}.
+ */
+public final class ChatActivity {
+    private final int[] messages;
+    private final int[] emotes;
+    private final long malformedLines;
+
+    ChatActivity(int[] messages, int[] emotes, long malformedLines) {
+        this.messages = messages;
+        this.emotes = emotes;
+        this.malformedLines = malformedLines;
+    }
+
+    /**
+     * Length of the indexed timeline: one past the last second that has a message.
+     */
+    public int getSeconds() {
+        return messages.length;
+    }
+
+    public int getMessages(int second) {
+        return second < messages.length ? messages[second] : 0;
+    }
+
+    public int getEmotes(int second) {
+        return second < emotes.length ? emotes[second] : 0;
+    }
+
+    public long getMessageCount() {
+        long total = 0;
+        for (int count : messages) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Lines that had no readable offset, had an offset beyond the maximum VOD length, or exceeded the parser's
+     * line limit.
+     */
+    public long getMalformedLines() {
+        return malformedLines;
+    }
+}
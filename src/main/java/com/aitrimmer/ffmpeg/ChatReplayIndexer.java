@@ -0,0 +1,574 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns chat-replay exports into highlight candidates. The export is JSON lines with an offset into the VOD
+ * ({@code content_offset_seconds} as written by Twitch chat downloaders, or {@code offset}) and a message
+ * ({@code body}, or a string {@code message}). The file is split into byte regions parsed in parallel straight
+ * from bytes, each into per-second message and emote counters, so multi-gigabyte logs are never held in memory.
+ * Sliding windows over those counters are scored against the rate of the preceding minutes, and the biggest
+ * spikes are returned as padded {@link VideoSegment}s.
+ */
+public final class ChatReplayIndexer {
+
+    /**
+     * Common global and BTTV/7TV emotes that mark a reaction.
+     */
+    public static final Set<String> DEFAULT_EMOTES = Set.of(
+            "PogChamp", "Pog", "POGGERS", "PogU", "KEKW", "LUL", "LULW", "OMEGALUL", "monkaS", "monkaW",
+            "PepeLaugh", "Kreygasm", "WutFace", "EZ", "Clap", "GIGACHAD", "catJAM", "xdd", "ICANT");
+
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+    private static final int MIN_REGION_BYTES = 4 << 20;
+    private static final byte[][] OFFSET_KEYS = {
+            "\"content_offset_seconds\"".getBytes(StandardCharsets.US_ASCII),
+            "\"offset\"".getBytes(StandardCharsets.US_ASCII)};
+    private static final byte[][] MESSAGE_KEYS = {
+            "\"body\"".getBytes(StandardCharsets.US_ASCII),
+            "\"message\"".getBytes(StandardCharsets.US_ASCII)};
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    private final byte[][] emotes;
+    private final int parallelism;
+    private final Duration window;
+    private final Duration baseline;
+    private final double threshold;
+    private final double emoteWeight;
+    private final Duration padBefore;
+    private final Duration padAfter;
+    private final Duration mergeGap;
+    private final int maxSegments;
+    private final long maxOffsetSeconds;
+
+    private ChatReplayIndexer(Builder builder) {
+        Objects.requireNonNull(builder.emotes, "emotes");
+        this.emotes = builder.emotes.stream()
+                .map(emote -> emote.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+        this.parallelism = builder.parallelism;
+        this.window = Objects.requireNonNull(builder.window, "window");
+        this.baseline = Objects.requireNonNull(builder.baseline, "baseline");
+        this.threshold = builder.threshold;
+        this.emoteWeight = builder.emoteWeight;
+        this.padBefore = Objects.requireNonNull(builder.padBefore, "padBefore");
+        this.padAfter = Objects.requireNonNull(builder.padAfter, "padAfter");
+        this.mergeGap = Objects.requireNonNull(builder.mergeGap, "mergeGap");
+        this.maxSegments = builder.maxSegments;
+        this.maxOffsetSeconds = Objects.requireNonNull(builder.maxVodLength, "maxVodLength").getSeconds();
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if (window.getSeconds() < 1 || baseline.compareTo(window) < 0) {
+            throw new IllegalArgumentException("window must be at least one second and no longer than baseline");
+        }
+        if (padBefore.isNegative() || padAfter.isNegative() || mergeGap.isNegative()) {
+            throw new IllegalArgumentException("padding and mergeGap must not be negative");
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("maxSegments must be at least 1");
+        }
+        if (maxOffsetSeconds < 1 || maxOffsetSeconds > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("maxVodLength must be between one second and "
+                    + Integer.MAX_VALUE / 2 + " seconds");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Indexes {@code chatLog} and returns the chat spikes of {@code vod}, best first.
+     */
+    public List<VideoSegment> highlights(Path chatLog, Path vod) {
+        return rank(index(chatLog), vod);
+    }
+
+    /**
+     * Counts messages and emotes per second of {@code chatLog}, parsing regions of the file in parallel.
+     */
+    public ChatActivity index(Path chatLog) {
+        Objects.requireNonNull(chatLog, "chatLog");
+        long size;
+        try {
+            size = Files.size(chatLog);
+        } catch (IOException e) {
+            throw new FfmpegExecutionException("Failed to read chat log " + chatLog, e);
+        }
+        return index(chatLog, (int) Math.max(1, Math.min(parallelism, size / MIN_REGION_BYTES)));
+    }
+
+    ChatActivity index(Path chatLog, int regions) {
+        try (FileChannel channel = FileChannel.open(chatLog, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (regions == 1) {
+                return scanRegion(channel, 0, size).toActivity();
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(regions, runnable -> {
+                Thread thread = new Thread(runnable, "chat-index-" + THREAD_IDS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<Counts>> parts = new ArrayList<>(regions);
+                for (int i = 0; i < regions; i++) {
+                    long start = size * i / regions;
+                    long end = size * (i + 1) / regions;
+                    parts.add(pool.submit(() -> scanRegion(channel, start, end)));
+                }
+                Counts total = new Counts();
+                for (Future<Counts> part : parts) {
+                    total.add(part.get());
+                }
+                return total.toActivity();
+            } finally {
+                pool.shutdownNow();
+            }
+        } catch (IOException e) {
+            throw new FfmpegExecutionException("Failed to read chat log " + chatLog, e);
+        } catch (ExecutionException e) {
+            throw new FfmpegExecutionException("Failed to index chat log " + chatLog, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FfmpegExecutionException("Chat indexing was interrupted", e);
+        }
+    }
+
+    /**
+     * Scores every window of {@code activity} and returns the strongest spikes as segments of {@code vod}, best
+     * first. A window's score is how many standard deviations its message count lies above what the preceding
+     * baseline rate predicts, treating counts as Poisson, plus {@code emoteWeight} times the same for its emotes.
+     */
+    public List<VideoSegment> rank(ChatActivity activity, Path vod) {
+        Objects.requireNonNull(activity, "activity");
+        Objects.requireNonNull(vod, "vod");
+        int seconds = activity.getSeconds();
+        long[] messageSums = new long[seconds + 1];
+        long[] emoteSums = new long[seconds + 1];
+        for (int s = 0; s < seconds; s++) {
+            messageSums[s + 1] = messageSums[s] + activity.getMessages(s);
+            emoteSums[s + 1] = emoteSums[s] + activity.getEmotes(s);
+        }
+        int windowSeconds = (int) window.getSeconds();
+        int baselineSeconds = (int) baseline.getSeconds();
+        double globalMessageRate = seconds == 0 ? 0 : (double) messageSums[seconds] / seconds;
+        double globalEmoteRate = seconds == 0 ? 0 : (double) emoteSums[seconds] / seconds;
+
+        PriorityQueue<Spike> ranked = new PriorityQueue<>(maxSegments + 1, Comparator.comparingDouble((Spike spike) -> spike.score));
+        int joinSeconds = (int) padBefore.plus(padAfter).plus(mergeGap).getSeconds();
+        Spike pending = null;
+        int runStart = -1;
+        int runEnd = 0;
+        double runScore = 0;
+        for (int s = 0; s <= seconds; s++) {
+            double score = Double.NEGATIVE_INFINITY;
+            if (s + windowSeconds <= seconds) {
+                int history = Math.min(baselineSeconds, s);
+                double messageRate = history < windowSeconds
+                        ? globalMessageRate
+                        : (double) (messageSums[s] - messageSums[s - history]) / history;
+                double emoteRate = history < windowSeconds
+                        ? globalEmoteRate
+                        : (double) (emoteSums[s] - emoteSums[s - history]) / history;
+                score = poissonScore(messageSums[s + windowSeconds] - messageSums[s], messageRate * windowSeconds)
+                        + emoteWeight * poissonScore(emoteSums[s + windowSeconds] - emoteSums[s], emoteRate * windowSeconds);
+            }
+            if (score >= threshold) {
+                if (runStart < 0) {
+                    runStart = s;
+                    runScore = score;
+                } else {
+                    runScore = Math.max(runScore, score);
+                }
+                runEnd = s + windowSeconds;
+            } else if (runStart >= 0) {
+                if (pending != null && runStart - pending.end <= joinSeconds) {
+                    pending.end = runEnd;
+                    pending.score = Math.max(pending.score, runScore);
+                } else {
+                    offer(ranked, pending);
+                    pending = new Spike(runStart, runEnd, runScore);
+                }
+                runStart = -1;
+            }
+        }
+        offer(ranked, pending);
+
+        List<Spike> spikes = new ArrayList<>(ranked);
+        spikes.sort(Comparator.comparingDouble((Spike spike) -> spike.score).reversed()
+                .thenComparingInt(spike -> spike.start));
+        List<VideoSegment> segments = new ArrayList<>(spikes.size());
+        for (Spike spike : spikes) {
+            Duration start = Duration.ofSeconds(spike.start).minus(padBefore);
+            segments.add(VideoSegment.builder()
+                    .source(vod)
+                    .start(start.isNegative() ? Duration.ZERO : start)
+                    .end(Duration.ofSeconds(spike.end).plus(padAfter))
+                    .build());
+        }
+        return segments;
+    }
+
+    private static double poissonScore(long observed, double expected) {
+        return (observed - expected) / Math.sqrt(expected + 1);
+    }
+
+    private void offer(PriorityQueue<Spike> ranked, Spike spike) {
+        if (spike == null) {
+            return;
+        }
+        ranked.add(spike);
+        if (ranked.size() > maxSegments) {
+            ranked.poll();
+        }
+    }
+
+    /**
+     * Parses the lines that start in {@code [start, end)}. A line straddling {@code start} belongs to the previous
+     * region; the last line is read past {@code end} until its newline.
+     */
+    private Counts scanRegion(FileChannel channel, long start, long end) throws IOException {
+        Counts counts = new Counts();
+        byte[] data = new byte[READ_BUFFER_BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        boolean skipping = start > 0 && !startsLine(channel, start);
+        long position = start;
+        int length = 0;
+        int lineStart = 0;
+        while (true) {
+            if (lineStart > 0) {
+                System.arraycopy(data, lineStart, data, 0, length - lineStart);
+                length -= lineStart;
+                lineStart = 0;
+            }
+            if (length == data.length) {
+                // No newline within the buffer: drop the rest of this line.
+                if (!skipping && position - length < end) {
+                    counts.malformed++;
+                }
+                skipping = true;
+                length = 0;
+            }
+            buffer.limit(data.length).position(length);
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                if (length > 0 && !skipping && position - length < end) {
+                    parseLine(data, 0, length, counts);
+                }
+                return counts;
+            }
+            position += read;
+            int scanFrom = length;
+            length += read;
+            for (int i = scanFrom; i < length; i++) {
+                if (data[i] != '\n') {
+                    continue;
+                }
+                if (skipping) {
+                    skipping = false;
+                } else {
+                    parseLine(data, lineStart, i, counts);
+                }
+                lineStart = i + 1;
+                if (position - length + lineStart >= end) {
+                    return counts;
+                }
+            }
+        }
+    }
+
+    private static boolean startsLine(FileChannel channel, long position) throws IOException {
+        ByteBuffer previous = ByteBuffer.allocate(1);
+        return channel.read(previous, position - 1) == 1 && previous.get(0) == '\n';
+    }
+
+    private void parseLine(byte[] line, int from, int to, Counts counts) {
+        while (to > from && (line[to - 1] == '\r' || line[to - 1] == ' ')) {
+            to--;
+        }
+        if (to == from) {
+            return;
+        }
+        int value = -1;
+        for (byte[] key : OFFSET_KEYS) {
+            value = valueAfter(line, from, to, key);
+            if (value >= 0) {
+                break;
+            }
+        }
+        int second = value < 0 ? -1 : parseSeconds(line, value, to);
+        if (second < 0) {
+            counts.malformed++;
+            return;
+        }
+        int emoteCount = 0;
+        for (byte[] key : MESSAGE_KEYS) {
+            value = valueAfter(line, from, to, key);
+            if (value >= 0 && line[value] == '"') {
+                emoteCount = countEmotes(line, value + 1, to);
+                break;
+            }
+        }
+        counts.record(second, emoteCount);
+    }
+
+    /**
+     * Returns the index of the value following {@code "key":} in the line, or -1. Escaped quotes inside strings
+     * are not mistaken for keys.
+     */
+    private static int valueAfter(byte[] line, int from, int to, byte[] key) {
+        int last = to - key.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int k = 0; k < key.length; k++) {
+                if (line[i + k] != key[k]) {
+                    continue outer;
+                }
+            }
+            if (i > from && line[i - 1] == '\\') {
+                continue;
+            }
+            int index = skipSpaces(line, i + key.length, to);
+            if (index < to && line[index] == ':') {
+                index = skipSpaces(line, index + 1, to);
+                return index < to ? index : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(byte[] line, int index, int to) {
+        while (index < to && (line[index] == ' ' || line[index] == '\t')) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the whole seconds of the offset at {@code index}, or -1 when it is missing or beyond the maximum
+     * VOD length; the counters are sized by the largest offset, so one bogus value must not grow them.
+     */
+    private int parseSeconds(byte[] line, int index, int to) {
+        if (index < to && line[index] == '"') {
+            index++;
+        }
+        long seconds = 0;
+        boolean digits = false;
+        while (index < to && line[index] >= '0' && line[index] <= '9') {
+            seconds = seconds * 10 + (line[index++] - '0');
+            digits = true;
+            if (seconds > maxOffsetSeconds) {
+                return -1;
+            }
+        }
+        return digits ? (int) seconds : -1;
+    }
+
+    private int countEmotes(byte[] line, int index, int to) {
+        int count = 0;
+        int tokenStart = index;
+        while (index < to) {
+            byte b = line[index];
+            if (b == '\\') {
+                index += 2;
+                continue;
+            }
+            if (b == '"' || b == ' ') {
+                if (isEmote(line, tokenStart, index)) {
+                    count++;
+                }
+                if (b == '"') {
+                    break;
+                }
+                tokenStart = index + 1;
+            }
+            index++;
+        }
+        return count;
+    }
+
+    private boolean isEmote(byte[] line, int from, int to) {
+        int length = to - from;
+        outer:
+        for (byte[] emote : emotes) {
+            if (emote.length != length) {
+                continue;
+            }
+            for (int k = 0; k < length; k++) {
+                if (line[from + k] != emote[k]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static final class Spike {
+        private final int start;
+        private int end;
+        private double score;
+
+        private Spike(int start, int end, double score) {
+            this.start = start;
+            this.end = end;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Per-second counters of one region, grown with the timeline rather than the log.
+     */
+    private static final class Counts {
+        private int[] messages = new int[1024];
+        private int[] emotes = new int[1024];
+        private int seconds;
+        private long malformed;
+
+        private void record(int second, int emoteCount) {
+            if (second >= messages.length) {
+                int capacity = Math.max(second + 1, messages.length * 2);
+                messages = Arrays.copyOf(messages, capacity);
+                emotes = Arrays.copyOf(emotes, capacity);
+            }
+            messages[second]++;
+            emotes[second] += emoteCount;
+            seconds = Math.max(seconds, second + 1);
+        }
+
+        private void add(Counts other) {
+            if (other.seconds > messages.length) {
+                messages = Arrays.copyOf(messages, other.seconds);
+                emotes = Arrays.copyOf(emotes, other.seconds);
+            }
+            for (int s = 0; s < other.seconds; s++) {
+                messages[s] += other.messages[s];
+                emotes[s] += other.emotes[s];
+            }
+            seconds = Math.max(seconds, other.seconds);
+            malformed += other.malformed;
+        }
+
+        private ChatActivity toActivity() {
+            return new ChatActivity(Arrays.copyOf(messages, seconds), Arrays.copyOf(emotes, seconds), malformed);
+        }
+    }
+
+    public static final class Builder {
+        private Set<String> emotes = DEFAULT_EMOTES;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private Duration window = Duration.ofSeconds(10);
+        private Duration baseline = Duration.ofMinutes(5);
+        private double threshold = 5d;
+        private double emoteWeight = 1d;
+        private Duration padBefore = Duration.ofSeconds(25);
+        private Duration padAfter = Duration.ofSeconds(5);
+        private Duration mergeGap = Duration.ofSeconds(5);
+        private int maxSegments = 20;
+        private Duration maxVodLength = Duration.ofHours(48);
+
+        private Builder() {
+        }
+
+        /**
+         * Words counted as emotes when they appear as whole tokens of a message.
+         */
+        public Builder emotes(Set<String> emotes) {
+            this.emotes = emotes;
+            return this;
+        }
+
+        /**
+         * Maximum number of file regions parsed at once; small files are parsed by one thread.
+         */
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Length of the sliding window spikes are measured over, in whole seconds.
+         */
+        public Builder window(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * How much preceding chat a window's expected rate is taken from.
+         */
+        public Builder baseline(Duration baseline) {
+            this.baseline = baseline;
+            return this;
+        }
+
+        public Builder threshold(double threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Weight of the emote score relative to the message-rate score.
+         */
+        public Builder emoteWeight(double emoteWeight) {
+            this.emoteWeight = emoteWeight;
+            return this;
+        }
+
+        /**
+         * Lead-in kept before a spike; chat reacts some seconds after the moment itself.
+         */
+        public Builder padBefore(Duration padBefore) {
+            this.padBefore = padBefore;
+            return this;
+        }
+
+        public Builder padAfter(Duration padAfter) {
+            this.padAfter = padAfter;
+            return this;
+        }
+
+        public Builder mergeGap(Duration mergeGap) {
+            this.mergeGap = mergeGap;
+            return this;
+        }
+
+        public Builder maxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        /**
+         * Longest VOD the log can belong to. Lines with a later offset, such as millisecond values or corrupt
+         * numbers, are counted as malformed instead of growing the per-second counters.
+         */
+        public Builder maxVodLength(Duration maxVodLength) {
+            this.maxVodLength = maxVodLength;
+            return this;
+        }
+
+        public ChatReplayIndexer build() {
+            return new ChatReplayIndexer(this);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * A chunked encode that survives failures: every finished chunk is recorded in a manifest next to the output
+ * together with the hash of its inputs (command line and source fingerprints) and its size. Executing the plan
+ * again encodes only the chunks that are missing, changed or damaged before joining them. The chunk files and
+ * the manifest are removed once the join succeeds.
+ */
+final class CheckpointedChunkPlan implements MultiStagePlan {
+    private static final String HASH_SUFFIX = ".hash";
+    private static final String SIZE_SUFFIX = ".size";
+
+    private final List<FfmpegCommandPlan> chunks;
+    private final FfmpegCommandPlan join;
+    private final List<Path> chunkFiles;
+    private final int parallelism;
+    private final Duration outputDuration;
+    private final Path manifestFile;
+    private final Properties manifest = new Properties();
+    private List<String> chunkHashes = List.of();
+
+    CheckpointedChunkPlan(
+            List<FfmpegCommandPlan> chunks,
+            FfmpegCommandPlan join,
+            List<Path> chunkFiles,
+            int parallelism,
+            Duration outputDuration,
+            Path manifestFile
+    ) {
+        this.chunks = List.copyOf(chunks);
+        this.join = Objects.requireNonNull(join, "join");
+        this.chunkFiles = List.copyOf(chunkFiles);
+        this.parallelism = parallelism;
+        this.outputDuration = outputDuration;
+        this.manifestFile = Objects.requireNonNull(manifestFile, "manifestFile");
+        if (this.chunks.size() != this.chunkFiles.size()) {
+            throw new IllegalArgumentException("Every chunk needs exactly one chunk file");
+        }
+    }
+
+    /**
+     * Reloads the manifest and returns the chunks that still need encoding, followed by the join.
+     */
+    @Override
+    public synchronized List<List<FfmpegCommandPlan>> stages() {
+        loadManifest();
+        List<String> hashes = new ArrayList<>(chunks.size());
+        List<FfmpegCommandPlan> pending = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            String hash = inputHash(chunks.get(i));
+            hashes.add(hash);
+            if (!isComplete(i, hash)) {
+                pending.add(chunks.get(i));
+            }
+        }
+        chunkHashes = hashes;
+        return pending.isEmpty() ? List.of(List.of(join)) : List.of(pending, List.of(join));
+    }
+
+    @Override
+    public synchronized void planFinished(FfmpegCommandPlan plan, int exitCode) {
+        if (exitCode != 0) {
+            return;
+        }
+        if (plan == join) {
+            chunkFiles.forEach(CheckpointedChunkPlan::deleteQuietly);
+            deleteQuietly(manifestFile);
+            manifest.clear();
+            return;
+        }
+        int index = chunks.indexOf(plan);
+        if (index < 0 || index >= chunkHashes.size()) {
+            return;
+        }
+        try {
+            manifest.setProperty(key(index) + HASH_SUFFIX, chunkHashes.get(index));
+            manifest.setProperty(key(index) + SIZE_SUFFIX, Long.toString(Files.size(chunkFiles.get(index))));
+            storeManifest();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to record checkpoint in " + manifestFile, e);
+        }
+    }
+
+    /**
+     * Chunk files are kept after a failure so the next execution can resume from them.
+     */
+    @Override
+    public List<Path> intermediateFiles() {
+        return List.of();
+    }
+
+    @Override
+    public Optional<Duration> outputDuration() {
+        return Optional.ofNullable(outputDuration);
+    }
+
+    @Override
+    public int parallelism() {
+        return parallelism;
+    }
+
+    Path manifestFile() {
+        return manifestFile;
+    }
+
+    List<FfmpegCommandPlan> chunks() {
+        return chunks;
+    }
+
+    private boolean isComplete(int index, String hash) {
+        if (!hash.equals(manifest.getProperty(key(index) + HASH_SUFFIX))) {
+            return false;
+        }
+        try {
+            String size = manifest.getProperty(key(index) + SIZE_SUFFIX);
+            return size != null && Files.size(chunkFiles.get(index)) == Long.parseLong(size);
+        } catch (IOException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void loadManifest() {
+        manifest.clear();
+        if (!Files.isRegularFile(manifestFile)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            manifest.load(reader);
+        } catch (IOException | IllegalArgumentException e) {
+            // A damaged manifest only costs a full re-encode.
+            manifest.clear();
+        }
+    }
+
+    private void storeManifest() throws IOException {
+        Path temporary = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            manifest.store(writer, "Completed chunks of " + join.outputs());
+        }
+        try {
+            Files.move(temporary, manifestFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String key(int index) {
+        return "chunk." + index;
+    }
+
+    private static String inputHash(FfmpegCommandPlan chunk) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        List<String> command = chunk.command(null);
+        for (int i = 0; i < command.size(); i++) {
+            update(digest, command.get(i));
+            if (command.get(i).equals("-i") && i + 1 < command.size()) {
+                Path source = Path.of(command.get(i + 1));
+                if (Files.isRegularFile(source)) {
+                    SourceFingerprint fingerprint = SourceFingerprint.of(source);
+                    update(digest, Long.toString(fingerprint.getSize()));
+                    update(digest, Long.toString(fingerprint.getLastModifiedMillis()));
+                }
+            }
+        }
+        chunk.concatScript().ifPresent(script -> update(digest, script));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Best effort cleanup.
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.aitrimmer.ffmpeg;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Encodes fixed-length slices of the output timeline in parallel and stream-copies them into the final file.
+ */
+final class ChunkedEncodePlan implements MultiStagePlan {
+    private final List<FfmpegCommandPlan> chunks;
+    private final FfmpegCommandPlan join;
+    private final List<Path> chunkFiles;
+    private final int parallelism;
+    private final Duration outputDuration;
+
+    ChunkedEncodePlan(
+            List<FfmpegCommandPlan> chunks,
+            FfmpegCommandPlan join,
+            List<Path> chunkFiles,
+            int parallelism,
+            Duration outputDuration
+    ) {
+        this.chunks = List.copyOf(chunks);
+        this.join = Objects.requireNonNull(join, "join");
+        this.chunkFiles = List.copyOf(chunkFiles);
+        this.parallelism = parallelism;
+        this.outputDuration = outputDuration;
+    }
+
+    @Override
+    public List<List<FfmpegCommandPlan>> stages() {
+        return List.of(chunks, List.of(join));
+    }
+
+    @Override
+    public List<Path> intermediateFiles() {
+        return chunkFiles;
+    }
+
+    @Override
+    public Optional<Duration> outputDuration() {
+        return Optional.ofNullable(outputDuration);
+    }
+
+    @Override
+    public int parallelism() {
+        return parallelism;
+    }
+
+    List<FfmpegCommandPlan> chunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,61 @@
+package com.aitrimmer.ffmpeg;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Controls how a long output timeline is split into independently encoded chunks.
+ */
+public final class ChunkingOptions {
+    private final Duration chunkDuration;
+    private final int parallelism;
+
+    private ChunkingOptions(Builder builder) {
+        this.chunkDuration = Objects.requireNonNull(builder.chunkDuration, "chunkDuration");
+        this.parallelism = builder.parallelism;
+        if (chunkDuration.isNegative() || chunkDuration.isZero()) {
+            throw new IllegalArgumentException("chunkDuration must be positive");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static ChunkingOptions defaults() {
+        return builder().build();
+    }
+
+    public Duration getChunkDuration() {
+        return chunkDuration;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public static final class Builder {
+        private Duration chunkDuration = Duration.ofSeconds(60);
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        private Builder() {
+        }
+
+        public Builder chunkDuration(Duration chunkDuration) {
+            this.chunkDuration = chunkDuration;
+            return this;
+        }
+
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public ChunkingOptions build() {
+            return new ChunkingOptions(this);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.aitrimmer.ffmpeg;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The preview files of one clip: its thumbnails in timeline order and its scrubbing sprite sheet, whose tiles
+ * run left to right, top to bottom across the clip.
+ */
+public final class ClipPreviews {
+
+    static final String SPRITE_FILE = "sprite.jpg";
+    static final String THUMBNAIL_PATTERN = "thumb-%03d.jpg";
+
+    private final List<Path> thumbnails;
+    private final Path sprite;
+
+    public ClipPreviews(List<Path> thumbnails, Path sprite) {
+        this.thumbnails = List.copyOf(thumbnails);
+        this.sprite = Objects.requireNonNull(sprite, "sprite");
+    }
+
+    /**
+     * The files {@link FfmpegCommandBuilder#buildPreviews(List, List, PreviewOptions)} writes to
+     * {@code directory}.
+     */
+    public static ClipPreviews in(Path directory, PreviewOptions options) {
+        List<Path> thumbnails = new ArrayList<>(options.getThumbnails());
+        for (int i = 1; i <= options.getThumbnails(); i++) {
+            thumbnails.add(directory.resolve(String.format(THUMBNAIL_PATTERN, i)));
+        }
+        return new ClipPreviews(thumbnails, directory.resolve(SPRITE_FILE));
+    }
+
+    public List<Path> getThumbnails() {
+        return thumbnails;
+    }
+
+    public Path getSprite() {
+        return sprite;
+    }
+
+    List<Path> files() {
+        List<Path> files = new ArrayList<>(thumbnails.size() + 1);
+        files.addAll(thumbnails);
+        files.add(sprite);
+        return files;
+    }
+}
@@ -16,6 +16,7 @@ public final class CompressionOverrides {
     private final Integer crf;
     private final String preset;
     private final List<String> extraArgs;
+    private final int hash;
 
     private CompressionOverrides(Builder builder) {
         this.videoCodec = builder.videoCodec;
@@ -25,6 +26,8 @@ public final class CompressionOverrides {
         this.crf = builder.crf;
         this.preset = builder.preset;
         this.extraArgs = builder.extraArgs;
+        // Overrides are used as cache keys on every resolve, so the hash is computed once.
+        this.hash = Objects.hash(videoCodec, audioCodec, videoBitrate, audioBitrate, crf, preset, extraArgs);
     }
 
     public static Builder builder() {
@@ -86,6 +89,36 @@ public final class CompressionOverrides {
         return Optional.ofNullable(extraArgs);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompressionOverrides)) {
+            return false;
+        }
+        CompressionOverrides other = (CompressionOverrides) o;
+        return hash == other.hash
+                && Objects.equals(videoCodec, other.videoCodec)
+                && Objects.equals(audioCodec, other.audioCodec)
+                && Objects.equals(videoBitrate, other.videoBitrate)
+                && Objects.equals(audioBitrate, other.audioBitrate)
+                && Objects.equals(crf, other.crf)
+                && Objects.equals(preset, other.preset)
+                && Objects.equals(extraArgs, other.extraArgs);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "videoCodec=" + videoCodec + " audioCodec=" + audioCodec + " videoBitrate=" + videoBitrate
+                + " audioBitrate=" + audioBitrate + " crf=" + crf + " preset=" + preset + " extraArgs=" + extraArgs;
+    }
+
     public static final class Builder {
         private String videoCodec;
         private String audioCodec;
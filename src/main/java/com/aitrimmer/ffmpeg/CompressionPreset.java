@@ -1,7 +1,6 @@
 package com.aitrimmer.ffmpeg;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -16,6 +15,7 @@ public final class CompressionPreset {
     private final Integer crf;
     private final String preset;
     private final List<String> extraArgs;
+    private final List<String> args;
 
     public CompressionPreset(
             String videoCodec,
@@ -33,6 +33,7 @@ public final class CompressionPreset {
         this.crf = crf;
         this.preset = Objects.requireNonNullElse(preset, "medium");
         this.extraArgs = List.copyOf(extraArgs == null ? List.of() : extraArgs);
+        this.args = buildArgs();
     }
 
     public static CompressionPreset createDefault() {
@@ -54,8 +55,15 @@ public final class CompressionPreset {
         );
     }
 
+    /**
+     * Returns the FFmpeg arguments for this preset. The list is immutable and computed once.
+     */
     public List<String> toArgs() {
-        List<String> args = new ArrayList<>();
+        return args;
+    }
+
+    private List<String> buildArgs() {
+        List<String> args = new ArrayList<>(12 + extraArgs.size());
         args.add("-c:v");
         args.add(videoCodec);
         if (videoBitrate != null && !videoBitrate.isBlank()) {
@@ -77,7 +85,7 @@ public final class CompressionPreset {
             args.add(audioBitrate);
         }
         args.addAll(extraArgs);
-        return Collections.unmodifiableList(args);
+        return List.copyOf(args);
     }
 
     public String getVideoCodec() {
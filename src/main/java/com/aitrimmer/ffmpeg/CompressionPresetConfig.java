@@ -1,15 +1,35 @@
 package com.aitrimmer.ffmpeg;
 
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Handles resolution of the effective compression preset using defaults and overrides.
+ * Handles resolution of the effective compression preset using defaults and overrides. Resolved presets are
+ * cached per distinct set of overrides, so repeated requests share one preset and its precomputed arguments.
  */
 public final class CompressionPresetConfig {
-    private final CompressionPreset defaultPreset;
+
+    public static final int DEFAULT_MAX_CACHED_PRESETS = 256;
+
+    private final int maxCachedPresets;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile Generation generation;
 
     public CompressionPresetConfig(CompressionPreset defaultPreset) {
-        this.defaultPreset = Objects.requireNonNull(defaultPreset, "defaultPreset");
+        this(defaultPreset, DEFAULT_MAX_CACHED_PRESETS);
+    }
+
+    public CompressionPresetConfig(CompressionPreset defaultPreset, int maxCachedPresets) {
+        if (maxCachedPresets < 1) {
+            throw new IllegalArgumentException("maxCachedPresets must be at least 1");
+        }
+        this.maxCachedPresets = maxCachedPresets;
+        this.generation = new Generation(Objects.requireNonNull(defaultPreset, "defaultPreset"));
     }
 
     public CompressionPresetConfig() {
@@ -17,10 +37,60 @@ public final class CompressionPresetConfig {
     }
 
     public CompressionPreset resolve(CompressionOverrides overrides) {
-        return defaultPreset.withOverrides(overrides);
+        Generation current = generation;
+        if (overrides == null) {
+            return current.defaultPreset;
+        }
+        CompressionPreset cached = current.presets.get(overrides);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        CompressionPreset resolved = current.defaultPreset.withOverrides(overrides);
+        CompressionPreset raced = current.presets.putIfAbsent(overrides, resolved);
+        if (raced != null) {
+            return raced;
+        }
+        evictOverflow(current.presets);
+        return resolved;
     }
 
     public CompressionPreset getDefaultPreset() {
-        return defaultPreset;
+        return generation.defaultPreset;
+    }
+
+    /**
+     * Replaces the default preset and drops every preset resolved against the previous one. Resolves that
+     * race with the swap finish against the old default but never populate the new cache.
+     */
+    public void setDefaultPreset(CompressionPreset defaultPreset) {
+        Generation previous = generation;
+        generation = new Generation(Objects.requireNonNull(defaultPreset, "defaultPreset"));
+        evictions.add(previous.presets.size());
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), generation.presets.size());
+    }
+
+    private void evictOverflow(Map<CompressionOverrides, CompressionPreset> presets) {
+        // Only a handful of override sets are expected; dropping arbitrary entries keeps the bound without
+        // the locking an LRU order would need on every hit.
+        Iterator<CompressionOverrides> keys = presets.keySet().iterator();
+        while (presets.size() > maxCachedPresets && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class Generation {
+        private final CompressionPreset defaultPreset;
+        private final ConcurrentHashMap<CompressionOverrides, CompressionPreset> presets = new ConcurrentHashMap<>();
+
+        private Generation(CompressionPreset defaultPreset) {
+            this.defaultPreset = defaultPreset;
+        }
     }
 }
@@ -1,8 +1,10 @@
 package com.aitrimmer.ffmpeg;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -10,11 +12,21 @@ final class ConcatDemuxerPlan implements FfmpegCommandPlan {
     private final String scriptContent;
     private final List<String> prefixArgs;
     private final List<String> suffixArgs;
+    private final Duration outputDuration;
+    private final Map<String, String> tags;
 
-    ConcatDemuxerPlan(String scriptContent, List<String> prefixArgs, List<String> suffixArgs) {
+    ConcatDemuxerPlan(
+            String scriptContent,
+            List<String> prefixArgs,
+            List<String> suffixArgs,
+            Duration outputDuration,
+            Map<String, String> tags
+    ) {
         this.scriptContent = Objects.requireNonNull(scriptContent, "scriptContent");
         this.prefixArgs = List.copyOf(prefixArgs);
         this.suffixArgs = List.copyOf(suffixArgs);
+        this.outputDuration = outputDuration;
+        this.tags = Map.copyOf(tags);
     }
 
     @Override
@@ -31,4 +43,22 @@ final class ConcatDemuxerPlan implements FfmpegCommandPlan {
     public Optional<String> concatScript() {
         return Optional.of(scriptContent);
     }
+
+    @Override
+    public Optional<Duration> outputDuration() {
+        return Optional.ofNullable(outputDuration);
+    }
+
+    @Override
+    public Map<String, String> tags() {
+        return tags;
+    }
+
+    /**
+     * The output file is always the last argument.
+     */
+    @Override
+    public List<Path> outputs() {
+        return suffixArgs.isEmpty() ? List.of() : List.of(Path.of(suffixArgs.get(suffixArgs.size() - 1)));
+    }
 }
@@ -0,0 +1,245 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the CPUs available to the process between concurrently running FFmpeg jobs and pins each job's
+ * encoder and filter thread counts to its share, so parallel jobs do not each size themselves for the
+ * whole machine.
+ */
+public final class EncoderThreadBudget {
+
+    private static final Path CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+    private static final Pattern IMAGE_SEQUENCE = Pattern.compile("%0?\\d*d");
+
+    private final int cpus;
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Creates a budget sized by {@link #effectiveCpuCount()}.
+     */
+    public EncoderThreadBudget() {
+        this(effectiveCpuCount());
+    }
+
+    public EncoderThreadBudget(int cpus) {
+        if (cpus < 1) {
+            throw new IllegalArgumentException("cpus must be at least 1");
+        }
+        this.cpus = cpus;
+    }
+
+    /**
+     * Number of CPUs the process may actually use: the JVM's processor count, further capped by a cgroup
+     * CPU quota when one is configured.
+     */
+    public static int effectiveCpuCount() {
+        int available = Runtime.getRuntime().availableProcessors();
+        OptionalInt quota = cgroupCpuLimit(CGROUP_ROOT);
+        return quota.isPresent() ? Math.max(1, Math.min(available, quota.getAsInt())) : available;
+    }
+
+    /**
+     * Reads the CPU quota below {@code cgroupRoot}, rounded up to whole CPUs. Both the cgroup v2
+     * {@code cpu.max} file and the v1 {@code cpu.cfs_quota_us}/{@code cpu.cfs_period_us} pair are supported;
+     * the result is empty when no quota is set or the files cannot be read.
+     */
+    static OptionalInt cgroupCpuLimit(Path cgroupRoot) {
+        Optional<String> cpuMax = readFirstLine(cgroupRoot.resolve("cpu.max"));
+        if (cpuMax.isPresent()) {
+            String[] fields = cpuMax.get().split("\\s+");
+            return fields.length == 2 ? quotaToCpus(fields[0], fields[1]) : OptionalInt.empty();
+        }
+        for (String controller : List.of("cpu", "cpu,cpuacct")) {
+            Path directory = cgroupRoot.resolve(controller);
+            Optional<String> quota = readFirstLine(directory.resolve("cpu.cfs_quota_us"));
+            Optional<String> period = readFirstLine(directory.resolve("cpu.cfs_period_us"));
+            if (quota.isPresent() && period.isPresent()) {
+                return quotaToCpus(quota.get(), period.get());
+            }
+        }
+        return OptionalInt.empty();
+    }
+
+    private static OptionalInt quotaToCpus(String quotaText, String periodText) {
+        if (quotaText.equals("max")) {
+            return OptionalInt.empty();
+        }
+        try {
+            long quota = Long.parseLong(quotaText);
+            long period = Long.parseLong(periodText);
+            if (quota <= 0 || period <= 0) {
+                return OptionalInt.empty();
+            }
+            return OptionalInt.of((int) Math.max(1, (quota + period - 1) / period));
+        } catch (NumberFormatException e) {
+            return OptionalInt.empty();
+        }
+    }
+
+    private static Optional<String> readFirstLine(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+            return lines.isEmpty() ? Optional.empty() : Optional.of(lines.get(0).trim());
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reserves a share of the CPUs for a job that is about to start. The share assumes at least
+     * {@code expectedConcurrentJobs} jobs will run side by side (for example the running jobs plus those the
+     * scheduler is about to start), so early jobs do not claim every core ahead of a burst. Close the lease
+     * when the job finishes.
+     */
+    public Lease acquire(int expectedConcurrentJobs) {
+        int concurrent = Math.max(active.incrementAndGet(), expectedConcurrentJobs);
+        return new Lease(Math.max(1, cpus / Math.max(1, concurrent)));
+    }
+
+    /**
+     * Wraps {@code plan} so its FFmpeg invocation runs with at most {@code threads} encoder and filter threads.
+     * Commands that already set {@code -threads}, and programs other than FFmpeg, are left unchanged.
+     */
+    public static FfmpegCommandPlan limit(FfmpegCommandPlan plan, int threads) {
+        Objects.requireNonNull(plan, "plan");
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        return new ThreadLimitedPlan(plan, threads);
+    }
+
+    static List<String> withThreadLimit(List<String> command, List<Path> outputs, int threads) {
+        if (command.size() < 2 || !FfmpegExecutor.isFfmpeg(command.get(0)) || command.contains("-threads")) {
+            return command;
+        }
+        String count = Integer.toString(threads);
+        List<String> limited = new ArrayList<>(command.size() + 4 + 2 * Math.max(1, outputs.size()));
+        limited.add(command.get(0));
+        limited.add("-filter_threads");
+        limited.add(count);
+        if (command.contains("-filter_complex")) {
+            limited.add("-filter_complex_threads");
+            limited.add(count);
+        }
+        // -threads is an output option: placed before an output file it caps that output's encoder (libx264
+        // included), so every output of a multi-output command needs its own.
+        boolean capped = false;
+        for (int i = 1; i < command.size(); i++) {
+            String argument = command.get(i);
+            boolean last = i == command.size() - 1;
+            if (isOutput(argument, outputs) || (last && !capped)) {
+                limited.add("-threads");
+                limited.add(count);
+                capped = true;
+            }
+            limited.add(argument);
+        }
+        return limited;
+    }
+
+    private static boolean isOutput(String argument, List<Path> outputs) {
+        Pattern pattern = IMAGE_SEQUENCE.matcher(argument).find() ? Pattern.compile(toSequenceRegex(argument)) : null;
+        for (Path output : outputs) {
+            String path = output.toString();
+            if (path.equals(argument) || (pattern != null && pattern.matcher(path).matches())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turns an image sequence pattern such as {@code thumb-%03d.jpg} into a regex matching the files it names.
+     */
+    private static String toSequenceRegex(String argument) {
+        StringBuilder regex = new StringBuilder();
+        Matcher matcher = IMAGE_SEQUENCE.matcher(argument);
+        int from = 0;
+        while (matcher.find()) {
+            regex.append(Pattern.quote(argument.substring(from, matcher.start()))).append("\\d+");
+            from = matcher.end();
+        }
+        return regex.append(Pattern.quote(argument.substring(from))).toString();
+    }
+
+    public int getCpus() {
+        return cpus;
+    }
+
+    public int getActiveJobs() {
+        return active.get();
+    }
+
+    /**
+     * A job's share of the budget.
+     */
+    public final class Lease implements AutoCloseable {
+        private final int threads;
+        private boolean closed;
+
+        private Lease(int threads) {
+            this.threads = threads;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class ThreadLimitedPlan implements FfmpegCommandPlan {
+        private final FfmpegCommandPlan delegate;
+        private final int threads;
+
+        private ThreadLimitedPlan(FfmpegCommandPlan delegate, int threads) {
+            this.delegate = delegate;
+            this.threads = threads;
+        }
+
+        @Override
+        public List<String> command(Path scriptPath) {
+            return withThreadLimit(delegate.command(scriptPath), delegate.outputs(), threads);
+        }
+
+        @Override
+        public Optional<String> concatScript() {
+            return delegate.concatScript();
+        }
+
+        @Override
+        public Optional<Duration> outputDuration() {
+            return delegate.outputDuration();
+        }
+
+        @Override
+        public Map<String, String> tags() {
+            return delegate.tags();
+        }
+
+        @Override
+        public List<Path> outputs() {
+            return delegate.outputs();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.aitrimmer.ffmpeg;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounds how long {@link FfmpegExecutor} lets a task run. The timeout caps the wall-clock time of the whole task;
+ * the stall timeout stops a task whose processes have printed neither a log line nor a progress update for that
+ * long, such as FFmpeg blocked on a corrupt file or an unresponsive network mount. Either may be left unset.
+ */
+public final class ExecutionLimits {
+    private static final ExecutionLimits NONE = builder().build();
+
+    private final Duration timeout;
+    private final Duration stallTimeout;
+
+    private ExecutionLimits(Builder builder) {
+        this.timeout = requirePositive(builder.timeout, "timeout");
+        this.stallTimeout = requirePositive(builder.stallTimeout, "stallTimeout");
+    }
+
+    private static Duration requirePositive(Duration duration, String name) {
+        if (duration != null && (duration.isNegative() || duration.isZero())) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return duration;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static ExecutionLimits none() {
+        return NONE;
+    }
+
+    public Optional<Duration> getTimeout() {
+        return Optional.ofNullable(timeout);
+    }
+
+    public Optional<Duration> getStallTimeout() {
+        return Optional.ofNullable(stallTimeout);
+    }
+
+    public static final class Builder {
+        private Duration timeout;
+        private Duration stallTimeout;
+
+        private Builder() {
+        }
+
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder stallTimeout(Duration stallTimeout) {
+            this.stallTimeout = stallTimeout;
+            return this;
+        }
+
+        public ExecutionLimits build() {
+            return new ExecutionLimits(this);
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package com.aitrimmer.ffmpeg;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.StringJoiner;
+import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Builds FFmpeg command invocations from a list of segments.
@@ -16,13 +17,95 @@ public final class FfmpegCommandBuilder {
 
     public enum Strategy {
         CONCAT_SCRIPT,
-        FILTER_COMPLEX
+        FILTER_COMPLEX,
+        /**
+         * Copies the source streams without re-encoding. Requires a {@link MediaProbe}; every cut must start
+         * on (or within the keyframe tolerance of) a keyframe and all sources must share codec parameters.
+         */
+        STREAM_COPY
     }
 
+    public static final Duration DEFAULT_KEYFRAME_TOLERANCE = Duration.ofMillis(100);
+
+    /**
+     * {@link FfmpegCommandPlan#tags() Tag} naming how a plan renders: {@code concat_script},
+     * {@code filter_complex}, {@code stream_copy}, {@code smart_cut}, {@code chunked} or {@code multi_output}.
+     */
+    public static final String STRATEGY_TAG = "strategy";
+    /**
+     * {@link FfmpegCommandPlan#tags() Tag} naming the x264 preset of a plan, {@code copy} when it does not
+     * re-encode, or {@code mixed} when its outputs use different presets.
+     */
+    public static final String PRESET_TAG = "preset";
+
+    private static final String COPY_PRESET = "copy";
+    // libx264's profile for 8-bit 4:2:0 input when none is requested.
+    private static final String X264_DEFAULT_PROFILE = "High";
+    private static final List<String> SMART_CUT_CONFLICTING_OPTIONS =
+            List.of("-s", "-vf", "-filter:v", "-r", "-pix_fmt", "-vsync", "-fps_mode");
+
+    // The streams a multi-segment filter plan takes from each input, so every chunk carries the same tracks.
+    private static final List<String> FIRST_AUDIO_VIDEO_STREAMS = List.of("-map", "0:v:0", "-map", "0:a:0");
+
+    private static final List<String> CONCAT_PREFIX =
+            List.of("ffmpeg", "-y", "-hide_banner", "-safe", "0", "-f", "concat", "-i");
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000};
+    // Typical text per segment, used to size builders once for reels with thousands of segments.
+    private static final int ESTIMATED_SCRIPT_CHARS_PER_SEGMENT = 96;
+    private static final int ESTIMATED_FILTER_CHARS_PER_SEGMENT = 128;
+
     private final CompressionPresetConfig presetConfig;
+    private final MediaProbe mediaProbe;
+    private final Duration keyframeTolerance;
+    private final boolean inputSeeking;
 
+    /**
+     * Creates a builder that probes sources with the {@code ffprobe} found on the {@code PATH}. Probing only
+     * happens for strategies that need it, such as {@link Strategy#STREAM_COPY}.
+     */
     public FfmpegCommandBuilder(CompressionPresetConfig presetConfig) {
+        this(presetConfig, new FfprobeMediaProbe(), DEFAULT_KEYFRAME_TOLERANCE);
+    }
+
+    public FfmpegCommandBuilder(CompressionPresetConfig presetConfig, MediaProbe mediaProbe) {
+        this(presetConfig, mediaProbe, DEFAULT_KEYFRAME_TOLERANCE);
+    }
+
+    public FfmpegCommandBuilder(CompressionPresetConfig presetConfig, MediaProbe mediaProbe, Duration keyframeTolerance) {
+        this(presetConfig, mediaProbe, keyframeTolerance, false);
+    }
+
+    private FfmpegCommandBuilder(
+            CompressionPresetConfig presetConfig,
+            MediaProbe mediaProbe,
+            Duration keyframeTolerance,
+            boolean inputSeeking
+    ) {
         this.presetConfig = Objects.requireNonNull(presetConfig, "presetConfig");
+        this.mediaProbe = Objects.requireNonNull(mediaProbe, "mediaProbe");
+        this.keyframeTolerance = Objects.requireNonNull(keyframeTolerance, "keyframeTolerance");
+        this.inputSeeking = inputSeeking;
+    }
+
+    /**
+     * Returns a builder whose {@link Strategy#FILTER_COMPLEX} plans seek every input with {@code -ss}/{@code -t}
+     * before {@code -i} instead of trimming from the start of the source. FFmpeg then jumps to the nearest
+     * keyframe and decodes only up to the cut, so clips deep into long sources start encoding almost at once;
+     * the trim filters are rebased to the seek point and only bound the frame-accurate end.
+     */
+    public FfmpegCommandBuilder withInputSeeking(boolean inputSeeking) {
+        if (inputSeeking == this.inputSeeking) {
+            return this;
+        }
+        return new FfmpegCommandBuilder(presetConfig, mediaProbe, keyframeTolerance, inputSeeking);
+    }
+
+    public boolean isInputSeeking() {
+        return inputSeeking;
+    }
+
+    public CompressionPresetConfig getPresetConfig() {
+        return presetConfig;
     }
 
     public FfmpegCommandPlan build(
@@ -36,62 +119,703 @@ public final class FfmpegCommandBuilder {
         if (segments.isEmpty()) {
             throw new IllegalArgumentException("At least one segment is required");
         }
-        CompressionPreset preset = presetConfig.resolve(overrides);
         return switch (strategy) {
-            case CONCAT_SCRIPT -> buildConcatPlan(segments, output, preset);
-            case FILTER_COMPLEX -> buildFilterPlan(segments, output, preset);
+            case CONCAT_SCRIPT -> {
+                CompressionPreset preset = presetConfig.resolve(overrides);
+                yield buildConcatPlan(segments, output, preset.toArgs(), tags("concat_script", preset.getPreset()));
+            }
+            case FILTER_COMPLEX -> {
+                CompressionPreset preset = presetConfig.resolve(overrides);
+                yield buildFilterPlan(optimized(segments), output, preset, tags("filter_complex", preset.getPreset()),
+                        inputSeeking);
+            }
+            case STREAM_COPY -> buildStreamCopyPlan(segments, output);
+        };
+    }
+
+    /**
+     * Builds one FFmpeg invocation that writes every output in {@code outputs}. Each source is opened and
+     * decoded once and {@code split} into a branch per segment, so exporting several clips or renditions of
+     * the same VOD costs one decode instead of one per output. Every output is encoded with its own resolved
+     * preset and, when set, its video filter. Input seeking is not used here: one full decode is shared by all
+     * branches.
+     */
+    public FfmpegCommandPlan buildMultiOutput(List<OutputSpec> outputs) {
+        Objects.requireNonNull(outputs, "outputs");
+        if (outputs.isEmpty()) {
+            throw new IllegalArgumentException("At least one output is required");
+        }
+        List<VideoSegment> segments = new ArrayList<>();
+        int[] firstSegment = new int[outputs.size() + 1];
+        List<CompressionPreset> presets = new ArrayList<>(outputs.size());
+        List<Path> outputFiles = new ArrayList<>(outputs.size());
+        Duration longest = Duration.ZERO;
+        for (int k = 0; k < outputs.size(); k++) {
+            OutputSpec spec = outputs.get(k);
+            List<VideoSegment> outputSegments = optimized(spec.getSegments());
+            firstSegment[k] = segments.size();
+            segments.addAll(outputSegments);
+            presets.add(presetConfig.resolve(spec.getOverrides().orElse(null)));
+            outputFiles.add(spec.getOutput());
+            Duration duration = totalDuration(outputSegments);
+            if (longest != null) {
+                longest = duration == null ? null : (duration.compareTo(longest) > 0 ? duration : longest);
+            }
+        }
+        firstSegment[outputs.size()] = segments.size();
+
+        Map<Path, Integer> inputs = new LinkedHashMap<>();
+        int[] inputOf = new int[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            inputOf[i] = inputs.computeIfAbsent(segments.get(i).getSource(), key -> inputs.size());
+        }
+        StringBuilder filter = new StringBuilder(segments.size() * ESTIMATED_FILTER_CHARS_PER_SEGMENT);
+        appendSegmentBranches(filter, segments, inputOf, inputs.size(), false);
+        for (int k = 0; k < outputs.size(); k++) {
+            if (k > 0) {
+                filter.append(';');
+            }
+            Optional<String> videoFilter = outputs.get(k).getVideoFilter();
+            if (videoFilter.isPresent()) {
+                appendConcat(filter, firstSegment[k], firstSegment[k + 1], "[c" + k + "v][o" + k + "a]");
+                filter.append(";[c")
+                        .append(k)
+                        .append("v]")
+                        .append(videoFilter.get())
+                        .append("[o")
+                        .append(k)
+                        .append("v]");
+            } else {
+                appendConcat(filter, firstSegment[k], firstSegment[k + 1], "[o" + k + "v][o" + k + "a]");
+            }
+        }
+
+        List<String> args = new ArrayList<>();
+        args.add("ffmpeg");
+        args.add("-y");
+        args.add("-hide_banner");
+        for (Path source : inputs.keySet()) {
+            args.add("-i");
+            args.add(source.toString());
+        }
+        args.add("-filter_complex");
+        args.add(filter.toString());
+        for (int k = 0; k < outputs.size(); k++) {
+            args.add("-map");
+            args.add("[o" + k + "v]");
+            args.add("-map");
+            args.add("[o" + k + "a]");
+            args.addAll(presets.get(k).toArgs());
+            args.add(outputFiles.get(k).toString());
+        }
+        return new MultiOutputPlan(args, outputFiles, longest, tags("multi_output", presetTag(presets)));
+    }
+
+    /**
+     * Builds one FFmpeg invocation that writes the previews of every clip: {@code options.getThumbnails()} evenly
+     * spaced thumbnails picked with {@code select}, and a sprite sheet of frames sampled with {@code fps} and laid
+     * out with {@code tile}. Each clip is its own input seeked at the input side, so only the clip is decoded, and
+     * both outputs are fed from a single {@code split} of that decode. The files of clip {@code k} go to
+     * {@code directories.get(k)} as described by {@link ClipPreviews#in(Path, PreviewOptions)}.
+     */
+    public FfmpegCommandPlan buildPreviews(List<VideoSegment> clips, List<Path> directories, PreviewOptions options) {
+        Objects.requireNonNull(clips, "clips");
+        Objects.requireNonNull(directories, "directories");
+        Objects.requireNonNull(options, "options");
+        if (clips.isEmpty()) {
+            throw new IllegalArgumentException("At least one clip is required");
+        }
+        if (clips.size() != directories.size()) {
+            throw new IllegalArgumentException("Every clip needs an output directory");
+        }
+        List<String> args = new ArrayList<>();
+        args.add("ffmpeg");
+        args.add("-y");
+        args.add("-hide_banner");
+        StringBuilder filter = new StringBuilder(clips.size() * ESTIMATED_FILTER_CHARS_PER_SEGMENT * 2);
+        Duration longest = Duration.ZERO;
+        for (int k = 0; k < clips.size(); k++) {
+            VideoSegment clip = clips.get(k);
+            Duration length = clip.getDuration()
+                    .orElseThrow(() -> new IllegalArgumentException("Preview clips need an end: " + clip.getSource()));
+            if (length.isZero()) {
+                throw new IllegalArgumentException("Preview clips must not be empty: " + clip.getSource());
+            }
+            longest = length.compareTo(longest) > 0 ? length : longest;
+            Duration start = clip.getStart().orElse(Duration.ZERO);
+            if (!start.isZero()) {
+                args.add("-ss");
+                args.add(formatDuration(start));
+            }
+            args.add("-t");
+            args.add(formatDuration(length));
+            args.add("-i");
+            args.add(clip.getSource().toString());
+
+            Duration spacing = length.dividedBy(options.getThumbnails());
+            int tiles = options.getSpriteColumns() * options.getSpriteRows();
+            if (k > 0) {
+                filter.append(';');
+            }
+            filter.append('[').append(k).append(":v]split=2[t").append(k).append("][s").append(k).append("];")
+                    .append("[t").append(k).append("]select='isnan(prev_selected_t)+gte(t-prev_selected_t,");
+            appendDuration(filter, spacing)
+                    .append(")',scale=").append(options.getThumbnailWidth()).append(":-2[pt").append(k).append("];")
+                    .append("[s").append(k).append("]fps=").append(tiles).append('/');
+            appendDuration(filter, length)
+                    .append(",scale=").append(options.getTileWidth()).append(":-2,tile=")
+                    .append(options.getSpriteColumns()).append('x').append(options.getSpriteRows())
+                    .append("[ps").append(k).append(']');
+        }
+        args.add("-filter_complex");
+        args.add(filter.toString());
+
+        List<Path> outputFiles = new ArrayList<>();
+        for (int k = 0; k < clips.size(); k++) {
+            Path directory = directories.get(k);
+            args.add("-map");
+            args.add("[pt" + k + "]");
+            args.add("-vsync");
+            args.add("vfr");
+            args.add("-frames:v");
+            args.add(Integer.toString(options.getThumbnails()));
+            args.add("-q:v");
+            args.add(Integer.toString(options.getQuality()));
+            args.add(directory.resolve(ClipPreviews.THUMBNAIL_PATTERN).toString());
+            args.add("-map");
+            args.add("[ps" + k + "]");
+            args.add("-frames:v");
+            args.add("1");
+            args.add("-update");
+            args.add("1");
+            args.add("-q:v");
+            args.add(Integer.toString(options.getQuality()));
+            args.add(directory.resolve(ClipPreviews.SPRITE_FILE).toString());
+            outputFiles.addAll(ClipPreviews.in(directory, options).files());
+        }
+        return new MultiOutputPlan(args, outputFiles, longest, tags("previews", "mjpeg"));
+    }
+
+    private static String presetTag(List<CompressionPreset> presets) {
+        String preset = presets.get(0).getPreset();
+        for (CompressionPreset candidate : presets) {
+            if (!candidate.getPreset().equals(preset)) {
+                return "mixed";
+            }
+        }
+        return preset;
+    }
+
+    private static List<VideoSegment> optimized(List<VideoSegment> segments) {
+        List<VideoSegment> optimized = SegmentOptimizer.optimize(segments);
+        if (optimized.isEmpty()) {
+            throw new IllegalArgumentException("All segments are shorter than " + SegmentOptimizer.DEFAULT_MIN_DURATION);
+        }
+        return optimized;
+    }
+
+    /**
+     * Lists the reasons why {@code segments} cannot be rendered with {@link Strategy#STREAM_COPY}; the list is
+     * empty when stream copy is safe. Only cut starts are checked: copying stops at the first packet past an
+     * outpoint, so ends do not need to be keyframe aligned.
+     */
+    public List<String> streamCopyIssues(List<VideoSegment> segments) {
+        Objects.requireNonNull(segments, "segments");
+        List<String> issues = new ArrayList<>();
+        compareSources(probeSources(segments), issues);
+        for (VideoSegment segment : segments) {
+            Optional<Duration> start = segment.getStart().filter(duration -> !duration.isZero());
+            if (start.isEmpty()) {
+                continue;
+            }
+            Duration cut = start.get();
+            Optional<Duration> keyframe = mediaProbe.keyframeAtOrBefore(segment.getSource(), cut);
+            if (keyframe.isEmpty()) {
+                issues.add("no keyframe at or before " + formatDuration(cut) + "s in " + segment.getSource());
+            } else if (cut.minus(keyframe.get()).compareTo(keyframeTolerance) > 0) {
+                issues.add("cut at " + formatDuration(cut) + "s in " + segment.getSource()
+                        + " is not on a keyframe (previous keyframe at " + formatDuration(keyframe.get()) + "s)");
+            }
+        }
+        return issues;
+    }
+
+    /**
+     * Lists the reasons why edges re-encoded with the preset resolved from {@code overrides} cannot be joined
+     * to stream-copied pieces of {@code segments}: the sources must share their codec parameters, and the preset
+     * must produce the same codecs and profile without resizing or retiming the video. The list is empty when
+     * a smart cut is safe.
+     */
+    public List<String> smartCutIssues(List<VideoSegment> segments, CompressionOverrides overrides) {
+        Objects.requireNonNull(segments, "segments");
+        return smartCutIssues(probeSources(segments), overrides);
+    }
+
+    private List<String> smartCutIssues(Map<Path, MediaStreamInfo> infos, CompressionOverrides overrides) {
+        List<String> issues = new ArrayList<>();
+        MediaStreamInfo reference = compareSources(infos, issues);
+        if (reference == null) {
+            return issues;
+        }
+        CompressionPreset preset = presetConfig.resolve(overrides);
+        String videoCodec = encodedCodec(preset.getVideoCodec());
+        if (!videoCodec.equals(reference.getVideoCodec())) {
+            issues.add("edges would be encoded as " + videoCodec + " but the sources are " + reference.getVideoCodec());
+        }
+        String audioCodec = encodedCodec(preset.getAudioCodec());
+        if (reference.getAudioCodec() != null && !audioCodec.equals(COPY_PRESET)
+                && !audioCodec.equals(reference.getAudioCodec())) {
+            issues.add("edge audio would be encoded as " + audioCodec + " but the sources use "
+                    + reference.getAudioCodec());
+        }
+        List<String> extraArgs = preset.getExtraArgs();
+        for (String option : SMART_CUT_CONFLICTING_OPTIONS) {
+            if (extraArgs.contains(option)) {
+                issues.add("preset option " + option + " changes the video of the edges");
+            }
+        }
+        String profile = optionValue(extraArgs, "-profile:v");
+        if (profile == null && videoCodec.equals("h264") && "yuv420p".equals(reference.getPixelFormat())) {
+            profile = X264_DEFAULT_PROFILE;
+        }
+        if (profile != null && reference.getProfile() != null && !profile.equalsIgnoreCase(reference.getProfile())) {
+            issues.add("edges would use profile " + profile + " but the sources use " + reference.getProfile());
+        }
+        return issues;
+    }
+
+    /**
+     * Builds a frame-accurate render that re-encodes only the partial GOPs at each cut edge with the resolved
+     * preset and stream-copies the keyframe-aligned middle of every segment. The pieces are written next to
+     * {@code output}, muxed with the source's time scale, and joined with the concat demuxer. When
+     * {@link #smartCutIssues(List, CompressionOverrides)} finds the edges would not join seamlessly, the plan
+     * falls back to re-encoding everything with {@link Strategy#FILTER_COMPLEX}.
+     */
+    public MultiStagePlan buildSmartCut(
+            List<VideoSegment> segments,
+            Path output,
+            CompressionOverrides overrides,
+            Function<Path, KeyframeIndex> keyframes
+    ) {
+        Objects.requireNonNull(segments, "segments");
+        Objects.requireNonNull(output, "output");
+        Objects.requireNonNull(keyframes, "keyframes");
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("At least one segment is required");
+        }
+        Map<Path, MediaStreamInfo> infos = probeSources(segments);
+        if (!smartCutIssues(infos, overrides).isEmpty()) {
+            FfmpegCommandPlan full = build(segments, output, overrides, Strategy.FILTER_COMPLEX);
+            return new SmartCutPlan(List.of(), full, List.of(), totalDuration(segments));
+        }
+        CompressionPreset preset = presetConfig.resolve(overrides);
+        List<String> encodeArgs = preset.toArgs();
+        Map<String, String> encodeTags = tags("smart_cut", preset.getPreset());
+        Map<String, String> copyTags = tags("smart_cut", COPY_PRESET);
+        List<FfmpegCommandPlan> pieces = new ArrayList<>();
+        List<Path> pieceFiles = new ArrayList<>();
+        long tolerance = KeyframeIndex.toMicros(keyframeTolerance);
+        for (VideoSegment segment : segments) {
+            KeyframeIndex index = keyframes.apply(segment.getSource());
+            long start = segment.getStart().map(KeyframeIndex::toMicros).orElse(0L);
+            long end = segment.getEnd().map(KeyframeIndex::toMicros).orElse(-1L);
+
+            long copyStart = index.floorMicros(start);
+            if (copyStart < 0 || start - copyStart > tolerance) {
+                copyStart = index.ceilingMicros(start);
+            } else {
+                start = copyStart;
+            }
+            long copyEnd = -1L;
+            if (end >= 0) {
+                long nearestEnd = index.nearestMicros(end);
+                if (nearestEnd >= 0 && Math.abs(end - nearestEnd) <= tolerance) {
+                    end = nearestEnd;
+                }
+                copyEnd = index.floorMicros(end);
+            }
+            Path source = segment.getSource();
+            // Edges and copied middles must share the time scale, or the stream-copied join drifts.
+            List<String> muxArgs = timeScaleArgs(infos.get(source));
+            if (copyStart < 0 || (end >= 0 && (copyEnd < 0 || copyEnd <= copyStart))) {
+                pieces.add(encodePiece(source, start, end, encodeArgs, muxArgs, nextPieceFile(output, pieceFiles),
+                        encodeTags));
+                continue;
+            }
+            if (start < copyStart) {
+                pieces.add(encodePiece(source, start, copyStart, encodeArgs, muxArgs, nextPieceFile(output, pieceFiles),
+                        encodeTags));
+            }
+            pieces.add(copyPiece(source, copyStart, end >= 0 ? copyEnd : -1L, muxArgs, nextPieceFile(output, pieceFiles),
+                    copyTags));
+            if (end >= 0 && copyEnd < end) {
+                pieces.add(encodePiece(source, copyEnd, end, encodeArgs, muxArgs, nextPieceFile(output, pieceFiles),
+                        encodeTags));
+            }
+        }
+        List<VideoSegment> joined = new ArrayList<>(pieceFiles.size());
+        for (Path pieceFile : pieceFiles) {
+            joined.add(VideoSegment.builder().source(pieceFile).build());
+        }
+        FfmpegCommandPlan join = buildConcatPlan(joined, output, List.of("-c", "copy"), copyTags);
+        return new SmartCutPlan(pieces, join, pieceFiles, totalDuration(segments));
+    }
+
+    private Map<Path, MediaStreamInfo> probeSources(List<VideoSegment> segments) {
+        Map<Path, MediaStreamInfo> infos = new LinkedHashMap<>();
+        for (VideoSegment segment : segments) {
+            infos.computeIfAbsent(segment.getSource(), mediaProbe::streamInfo);
+        }
+        return infos;
+    }
+
+    /**
+     * Adds an issue for every source whose codec parameters differ from the first one, and returns the first.
+     */
+    private static MediaStreamInfo compareSources(Map<Path, MediaStreamInfo> infos, List<String> issues) {
+        Path referenceSource = null;
+        MediaStreamInfo reference = null;
+        for (Map.Entry<Path, MediaStreamInfo> entry : infos.entrySet()) {
+            if (reference == null) {
+                referenceSource = entry.getKey();
+                reference = entry.getValue();
+            } else if (!reference.equals(entry.getValue())) {
+                issues.add(entry.getKey() + " has codec parameters [" + entry.getValue() + "] but "
+                        + referenceSource + " has [" + reference + "]");
+            }
+        }
+        return reference;
+    }
+
+    /**
+     * Maps an FFmpeg encoder name to the codec name ffprobe reports for its output.
+     */
+    private static String encodedCodec(String encoder) {
+        return switch (encoder) {
+            case "libx264" -> "h264";
+            case "libx265" -> "hevc";
+            case "libvpx-vp9" -> "vp9";
+            case "libopus" -> "opus";
+            case "libmp3lame" -> "mp3";
+            default -> encoder;
         };
     }
 
-    private FfmpegCommandPlan buildConcatPlan(List<VideoSegment> segments, Path output, CompressionPreset preset) {
+    private static String optionValue(List<String> args, String option) {
+        int index = args.indexOf(option);
+        return index >= 0 && index + 1 < args.size() ? args.get(index + 1) : null;
+    }
+
+    private static List<String> timeScaleArgs(MediaStreamInfo info) {
+        String timeBase = info == null ? null : info.getTimeBase();
+        int slash = timeBase == null ? -1 : timeBase.indexOf('/');
+        if (slash < 0) {
+            return List.of();
+        }
+        return List.of("-video_track_timescale", timeBase.substring(slash + 1));
+    }
+
+    private static Path nextPieceFile(Path output, List<Path> pieceFiles) {
+        Path pieceFile = partFile(output, "part", pieceFiles.size());
+        pieceFiles.add(pieceFile);
+        return pieceFile;
+    }
+
+    private FfmpegCommandPlan encodePiece(
+            Path source,
+            long startMicros,
+            long endMicros,
+            List<String> encodeArgs,
+            List<String> muxArgs,
+            Path pieceFile,
+            Map<String, String> tags
+    ) {
+        List<String> args = new ArrayList<>();
+        args.add("ffmpeg");
+        args.add("-y");
+        args.add("-hide_banner");
+        addInputSeek(args, source, startMicros, endMicros);
+        args.addAll(encodeArgs);
+        args.addAll(muxArgs);
+        args.add(pieceFile.toString());
+        return new FilterGraphPlan(args, pieceDuration(startMicros, endMicros), tags);
+    }
+
+    private FfmpegCommandPlan copyPiece(
+            Path source,
+            long startMicros,
+            long endMicros,
+            List<String> muxArgs,
+            Path pieceFile,
+            Map<String, String> tags
+    ) {
+        List<String> args = new ArrayList<>();
+        args.add("ffmpeg");
+        args.add("-y");
+        args.add("-hide_banner");
+        addInputSeek(args, source, startMicros, endMicros);
+        args.add("-c");
+        args.add("copy");
+        args.add("-avoid_negative_ts");
+        args.add("make_zero");
+        args.addAll(muxArgs);
+        args.add(pieceFile.toString());
+        return new FilterGraphPlan(args, pieceDuration(startMicros, endMicros), tags);
+    }
+
+    private void addInputSeek(List<String> args, Path source, long startMicros, long endMicros) {
+        if (startMicros > 0) {
+            args.add("-ss");
+            args.add(formatDuration(Duration.ofNanos(startMicros * 1_000L)));
+        }
+        if (endMicros >= 0) {
+            args.add("-t");
+            args.add(formatDuration(Duration.ofNanos((endMicros - startMicros) * 1_000L)));
+        }
+        args.add("-i");
+        args.add(source.toString());
+    }
+
+    private static Duration pieceDuration(long startMicros, long endMicros) {
+        return endMicros < 0 ? null : Duration.ofNanos((endMicros - startMicros) * 1_000L);
+    }
+
+    /**
+     * Sums the segment durations, or returns {@code null} when any segment is open-ended.
+     */
+    private static Duration totalDuration(List<VideoSegment> segments) {
+        Duration total = Duration.ZERO;
+        for (VideoSegment segment : segments) {
+            Optional<Duration> end = segment.getEnd();
+            if (end.isEmpty()) {
+                return null;
+            }
+            total = total.plus(end.get().minus(segment.getStart().orElse(Duration.ZERO)));
+        }
+        return total;
+    }
+
+    static Path partFile(Path output, String label, int index) {
+        String name = output.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        return output.resolveSibling(base + "." + label + String.format("%04d", index) + extension);
+    }
+
+    /**
+     * Splits the output timeline into chunks of at most {@code options.getChunkDuration()}, encodes every chunk
+     * as an independent plan (up to {@code options.getParallelism()} at a time) and stream-copies the chunk files
+     * into {@code output}. Every segment needs an end so the timeline length is known up front.
+     */
+    public MultiStagePlan buildChunked(
+            List<VideoSegment> segments,
+            Path output,
+            CompressionOverrides overrides,
+            ChunkingOptions options
+    ) {
+        Objects.requireNonNull(segments, "segments");
+        Objects.requireNonNull(output, "output");
+        Objects.requireNonNull(options, "options");
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("At least one segment is required");
+        }
+        CompressionPreset preset = presetConfig.resolve(overrides);
+        Map<String, String> chunkTags = tags("chunked", preset.getPreset());
+        List<List<VideoSegment>> timeline = splitTimeline(segments, options.getChunkDuration());
+        List<FfmpegCommandPlan> chunks = new ArrayList<>(timeline.size());
+        List<Path> chunkFiles = new ArrayList<>(timeline.size());
+        for (List<VideoSegment> chunk : timeline) {
+            Path chunkFile = partFile(output, "chunk", chunkFiles.size());
+            chunkFiles.add(chunkFile);
+            chunks.add(encodeChunk(chunk, chunkFile, preset, chunkTags));
+        }
+        List<VideoSegment> joined = new ArrayList<>(chunkFiles.size());
+        for (Path chunkFile : chunkFiles) {
+            joined.add(VideoSegment.builder().source(chunkFile).build());
+        }
+        FfmpegCommandPlan join = buildConcatPlan(joined, output, List.of("-c", "copy"), tags("chunked", COPY_PRESET));
+        return new ChunkedEncodePlan(chunks, join, chunkFiles, options.getParallelism(), totalDuration(segments));
+    }
+
+    /**
+     * Builds a {@link #buildChunked chunked} render that can resume after a failure. Every finished chunk is
+     * recorded in a manifest next to {@code output} (see {@link #checkpointFile(Path)}) with the hash of its
+     * inputs; executing the plan again, for example after a crash or on another attempt of the same task,
+     * re-encodes only the chunks that are missing or no longer match before the final join. Chunk files are kept
+     * until the join succeeds.
+     */
+    public MultiStagePlan buildCheckpointed(
+            List<VideoSegment> segments,
+            Path output,
+            CompressionOverrides overrides,
+            ChunkingOptions options
+    ) {
+        ChunkedEncodePlan chunked = (ChunkedEncodePlan) buildChunked(segments, output, overrides, options);
+        return new CheckpointedChunkPlan(
+                chunked.chunks(),
+                chunked.stages().get(1).get(0),
+                chunked.intermediateFiles(),
+                chunked.parallelism(),
+                chunked.outputDuration().orElse(null),
+                checkpointFile(output)
+        );
+    }
+
+    /**
+     * The manifest of a {@link #buildCheckpointed checkpointed} render of {@code output}.
+     */
+    public static Path checkpointFile(Path output) {
+        return output.resolveSibling(output.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * Encodes one chunk. Every slice is input-seeked whatever the builder's seek mode, so chunks late in a long
+     * VOD do not decode it from the start, and both paths emit the first video and audio track so the chunks can
+     * be joined by stream copy.
+     */
+    private FfmpegCommandPlan encodeChunk(
+            List<VideoSegment> chunk,
+            Path chunkFile,
+            CompressionPreset preset,
+            Map<String, String> tags
+    ) {
+        if (chunk.size() == 1) {
+            VideoSegment segment = chunk.get(0);
+            List<String> encodeArgs = new ArrayList<>(FIRST_AUDIO_VIDEO_STREAMS);
+            encodeArgs.addAll(preset.toArgs());
+            return encodePiece(
+                    segment.getSource(),
+                    segment.getStart().map(KeyframeIndex::toMicros).orElse(0L),
+                    KeyframeIndex.toMicros(segment.getEnd().orElseThrow()),
+                    encodeArgs,
+                    List.of(),
+                    chunkFile,
+                    tags
+            );
+        }
+        return buildFilterPlan(chunk, chunkFile, preset, tags, true);
+    }
+
+    static List<List<VideoSegment>> splitTimeline(List<VideoSegment> segments, Duration chunkDuration) {
+        long chunkMicros = KeyframeIndex.toMicros(chunkDuration);
+        List<List<VideoSegment>> chunks = new ArrayList<>();
+        List<VideoSegment> current = new ArrayList<>();
+        long remaining = chunkMicros;
+        for (VideoSegment segment : segments) {
+            if (segment.getEnd().isEmpty()) {
+                throw new IllegalArgumentException("Chunked encoding requires every segment to have an end: "
+                        + segment.getSource());
+            }
+            long position = segment.getStart().map(KeyframeIndex::toMicros).orElse(0L);
+            long end = KeyframeIndex.toMicros(segment.getEnd().get());
+            if (position >= end) {
+                throw new IllegalArgumentException("Segment of " + segment.getSource() + " from "
+                        + formatDuration(Duration.ofNanos(position * 1_000L)) + "s to "
+                        + formatDuration(Duration.ofNanos(end * 1_000L)) + "s is empty");
+            }
+            while (position < end) {
+                long sliceEnd = Math.min(end, position + remaining);
+                current.add(VideoSegment.builder()
+                        .source(segment.getSource())
+                        .start(Duration.ofNanos(position * 1_000L))
+                        .end(Duration.ofNanos(sliceEnd * 1_000L))
+                        .build());
+                remaining -= sliceEnd - position;
+                position = sliceEnd;
+                if (remaining == 0) {
+                    chunks.add(current);
+                    current = new ArrayList<>();
+                    remaining = chunkMicros;
+                }
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private FfmpegCommandPlan buildStreamCopyPlan(List<VideoSegment> segments, Path output) {
+        List<String> issues = streamCopyIssues(segments);
+        if (!issues.isEmpty()) {
+            throw new IllegalArgumentException("Segments cannot be stream copied: " + String.join("; ", issues));
+        }
+        return buildConcatPlan(
+                segments,
+                output,
+                List.of("-c", "copy", "-avoid_negative_ts", "make_zero"),
+                tags("stream_copy", COPY_PRESET)
+        );
+    }
+
+    private static Map<String, String> tags(String strategy, String preset) {
+        return Map.of(STRATEGY_TAG, strategy, PRESET_TAG, preset);
+    }
+
+    private FfmpegCommandPlan buildConcatPlan(
+            List<VideoSegment> segments,
+            Path output,
+            List<String> codecArgs,
+            Map<String, String> tags
+    ) {
         String script = buildConcatScript(segments);
-        List<String> prefix = new ArrayList<>();
-        prefix.add("ffmpeg");
-        prefix.add("-y");
-        prefix.add("-hide_banner");
-        prefix.add("-safe");
-        prefix.add("0");
-        prefix.add("-f");
-        prefix.add("concat");
-        prefix.add("-i");
-
-        List<String> suffix = new ArrayList<>(preset.toArgs());
+        List<String> suffix = new ArrayList<>(codecArgs.size() + 1);
+        suffix.addAll(codecArgs);
         suffix.add(output.toString());
-        return new ConcatDemuxerPlan(script, prefix, suffix);
+        return new ConcatDemuxerPlan(script, CONCAT_PREFIX, suffix, totalDuration(segments), tags);
     }
 
     private String buildConcatScript(List<VideoSegment> segments) {
         String lineSeparator = System.lineSeparator();
-        StringBuilder builder = new StringBuilder();
+        StringBuilder builder = new StringBuilder(segments.size() * ESTIMATED_SCRIPT_CHARS_PER_SEGMENT);
         for (VideoSegment segment : segments) {
             builder.append("file '")
                     .append(escapePath(segment.getSource()))
-                    .append("'")
+                    .append('\'')
                     .append(lineSeparator);
-            segment.getStart().ifPresent(start ->
-                    builder.append("inpoint ")
-                            .append(formatDuration(start))
-                            .append(lineSeparator)
-            );
-            segment.getEnd().ifPresent(end ->
-                    builder.append("outpoint ")
-                            .append(formatDuration(end))
-                            .append(lineSeparator)
-            );
+            Optional<Duration> start = segment.getStart();
+            if (start.isPresent()) {
+                appendDuration(builder.append("inpoint "), start.get()).append(lineSeparator);
+            }
+            Optional<Duration> end = segment.getEnd();
+            if (end.isPresent()) {
+                appendDuration(builder.append("outpoint "), end.get()).append(lineSeparator);
+            }
         }
         return builder.toString();
     }
 
-    private FfmpegCommandPlan buildFilterPlan(List<VideoSegment> segments, Path output, CompressionPreset preset) {
+    private FfmpegCommandPlan buildFilterPlan(
+            List<VideoSegment> segments,
+            Path output,
+            CompressionPreset preset,
+            Map<String, String> tags,
+            boolean seek
+    ) {
+        // Every distinct input is opened once and fanned out to its segments, instead of decoding it per segment.
+        Map<FilterInput, Integer> inputs = new LinkedHashMap<>();
+        int[] inputOf = new int[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            inputOf[i] = inputs.computeIfAbsent(FilterInput.of(segments.get(i), seek), key -> inputs.size());
+        }
         List<String> args = new ArrayList<>();
         args.add("ffmpeg");
         args.add("-y");
         args.add("-hide_banner");
-        for (VideoSegment segment : segments) {
+        for (FilterInput input : inputs.keySet()) {
+            if (input.seek != null) {
+                args.add("-ss");
+                args.add(formatDuration(input.seek));
+            }
+            if (input.length != null) {
+                args.add("-t");
+                args.add(formatDuration(input.length));
+            }
             args.add("-i");
-            args.add(segment.getSource().toString());
+            args.add(input.source.toString());
         }
-        String filterGraph = buildFilterGraph(segments);
+        String filterGraph = buildFilterGraph(segments, inputOf, inputs.size(), seek);
         args.add("-filter_complex");
         args.add(filterGraph);
         args.add("-map");
@@ -100,42 +824,66 @@ public final class FfmpegCommandBuilder {
         args.add("[aout]");
         args.addAll(preset.toArgs());
         args.add(output.toString());
-        return new FilterGraphPlan(args);
+        return new FilterGraphPlan(args, totalDuration(segments), tags);
     }
 
-    private String buildFilterGraph(List<VideoSegment> segments) {
-        StringBuilder filter = new StringBuilder();
+    private static String buildFilterGraph(List<VideoSegment> segments, int[] inputOf, int inputCount, boolean seek) {
+        StringBuilder filter = new StringBuilder(segments.size() * ESTIMATED_FILTER_CHARS_PER_SEGMENT);
+        appendSegmentBranches(filter, segments, inputOf, inputCount, seek);
+        appendConcat(filter, 0, segments.size(), "[vout][aout]");
+        return filter.toString();
+    }
+
+    /**
+     * Splits every input used more than once and trims one branch per segment into {@code [v<i>]}/{@code [a<i>]}.
+     */
+    private static void appendSegmentBranches(
+            StringBuilder filter,
+            List<VideoSegment> segments,
+            int[] inputOf,
+            int inputCount,
+            boolean seekedInputs
+    ) {
+        int[] uses = new int[inputCount];
+        for (int input : inputOf) {
+            uses[input]++;
+        }
+        for (int input = 0; input < uses.length; input++) {
+            if (uses[input] > 1) {
+                appendSplit(filter, input, uses[input], "v", "split");
+                appendSplit(filter, input, uses[input], "a", "asplit");
+            }
+        }
+        int[] taken = new int[inputCount];
         for (int i = 0; i < segments.size(); i++) {
             VideoSegment segment = segments.get(i);
-            String videoLabel = "v" + i;
-            String audioLabel = "a" + i;
-            filter.append("[")
+            int input = inputOf[i];
+            int branch = taken[input]++;
+            Duration trimStart = segment.getStart().filter(start -> !start.isZero()).orElse(null);
+            Duration trimEnd = segment.getEnd().orElse(null);
+            if (seekedInputs) {
+                // The input is already seeked to the segment start, so only the end remains to be cut.
+                if (trimEnd != null && trimStart != null) {
+                    trimEnd = trimEnd.minus(trimStart);
+                }
+                trimStart = null;
+            }
+            appendStreamLabel(filter, input, branch, uses[input], "v");
+            appendTrim(filter, "trim=", trimStart, trimEnd);
+            filter.append("setpts=PTS-STARTPTS[v")
                     .append(i)
-                    .append(":v]");
-            String videoTrim = buildTrimParameters(segment.getStart(), segment.getEnd());
-            if (!videoTrim.isEmpty()) {
-                filter.append("trim=")
-                        .append(videoTrim)
-                        .append(",");
-            }
-            filter.append("setpts=PTS-STARTPTS[")
-                    .append(videoLabel)
                     .append("];");
 
-            filter.append("[")
+            appendStreamLabel(filter, input, branch, uses[input], "a");
+            appendTrim(filter, "atrim=", trimStart, trimEnd);
+            filter.append("asetpts=PTS-STARTPTS[a")
                     .append(i)
-                    .append(":a]");
-            String audioTrim = buildTrimParameters(segment.getStart(), segment.getEnd());
-            if (!audioTrim.isEmpty()) {
-                filter.append("atrim=")
-                        .append(audioTrim)
-                        .append(",");
-            }
-            filter.append("asetpts=PTS-STARTPTS[")
-                    .append(audioLabel)
                     .append("];");
         }
-        for (int i = 0; i < segments.size(); i++) {
+    }
+
+    private static void appendConcat(StringBuilder filter, int from, int to, String outputLabels) {
+        for (int i = from; i < to; i++) {
             filter.append("[v")
                     .append(i)
                     .append("][a")
@@ -143,21 +891,61 @@ public final class FfmpegCommandBuilder {
                     .append("]");
         }
         filter.append("concat=n=")
-                .append(segments.size())
-                .append(":v=1:a=1[vout][aout]");
-        return filter.toString();
+                .append(to - from)
+                .append(":v=1:a=1")
+                .append(outputLabels);
     }
 
-    private String buildTrimParameters(java.util.Optional<Duration> startOpt, java.util.Optional<Duration> endOpt) {
-        List<String> params = new ArrayList<>();
-        startOpt.filter(duration -> !duration.isZero())
-                .ifPresent(duration -> params.add("start=" + formatDuration(duration)));
-        endOpt.ifPresent(duration -> params.add("end=" + formatDuration(duration)));
-        StringJoiner joiner = new StringJoiner(":");
-        for (String param : params) {
-            joiner.add(param);
+    private static void appendSplit(StringBuilder filter, int input, int count, String stream, String splitFilter) {
+        filter.append("[")
+                .append(input)
+                .append(":")
+                .append(stream)
+                .append("]")
+                .append(splitFilter)
+                .append("=")
+                .append(count);
+        for (int branch = 0; branch < count; branch++) {
+            filter.append("[s")
+                    .append(input)
+                    .append(stream)
+                    .append(branch)
+                    .append("]");
         }
-        return joiner.toString();
+        filter.append(";");
+    }
+
+    private static void appendStreamLabel(StringBuilder filter, int input, int branch, int uses, String stream) {
+        if (uses > 1) {
+            filter.append("[s")
+                    .append(input)
+                    .append(stream)
+                    .append(branch)
+                    .append("]");
+        } else {
+            filter.append("[")
+                    .append(input)
+                    .append(":")
+                    .append(stream)
+                    .append("]");
+        }
+    }
+
+    private static void appendTrim(StringBuilder filter, String trimFilter, Duration start, Duration end) {
+        if (start == null && end == null) {
+            return;
+        }
+        filter.append(trimFilter);
+        if (start != null) {
+            appendDuration(filter.append("start="), start);
+            if (end != null) {
+                filter.append(':');
+            }
+        }
+        if (end != null) {
+            appendDuration(filter.append("end="), end);
+        }
+        filter.append(',');
     }
 
     private String escapePath(Path path) {
@@ -165,14 +953,81 @@ public final class FfmpegCommandBuilder {
         return text.replace("'", "'\\''");
     }
 
-    private String formatDuration(Duration duration) {
-        BigDecimal seconds = BigDecimal.valueOf(duration.toNanos())
-                .divide(BigDecimal.valueOf(1_000_000_000L), 6, RoundingMode.HALF_UP)
-                .stripTrailingZeros();
-        String formatted = seconds.toPlainString();
-        if (formatted.indexOf('.') < 0) {
-            formatted = formatted + ".0";
+    private static String formatDuration(Duration duration) {
+        return appendDuration(new StringBuilder(16), duration).toString();
+    }
+
+    /**
+     * Appends {@code duration} in seconds, rounded half-up to microseconds, without trailing zeros but with at
+     * least one decimal ({@code 5.0}, {@code 0.04}, {@code 22320.123457}). Fixed-point arithmetic keeps this
+     * allocation-free; it runs several times per segment.
+     */
+    static StringBuilder appendDuration(StringBuilder target, Duration duration) {
+        if (duration.isNegative()) {
+            target.append('-');
+            duration = duration.negated();
+        }
+        long seconds = duration.getSeconds();
+        int micros = (duration.getNano() + 500) / 1_000;
+        if (micros == 1_000_000) {
+            seconds++;
+            micros = 0;
+        }
+        target.append(seconds).append('.');
+        if (micros == 0) {
+            return target.append('0');
+        }
+        int digits = 6;
+        while (micros % 10 == 0) {
+            micros /= 10;
+            digits--;
+        }
+        for (int place = digits - 1; place > 0 && micros < POWERS_OF_TEN[place]; place--) {
+            target.append('0');
+        }
+        return target.append(micros);
+    }
+
+    /**
+     * One {@code -i} of a filter plan: the whole source, or in input-seek mode the seeked range of one segment.
+     */
+    private static final class FilterInput {
+        private final Path source;
+        private final Duration seek;
+        private final Duration length;
+
+        private FilterInput(Path source, Duration seek, Duration length) {
+            this.source = source;
+            this.seek = seek;
+            this.length = length;
+        }
+
+        static FilterInput of(VideoSegment segment, boolean inputSeeking) {
+            if (!inputSeeking) {
+                return new FilterInput(segment.getSource(), null, null);
+            }
+            Duration start = segment.getStart().filter(duration -> !duration.isZero()).orElse(null);
+            Duration length = segment.getEnd()
+                    .map(end -> start == null ? end : end.minus(start))
+                    .orElse(null);
+            return new FilterInput(segment.getSource(), start, length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FilterInput)) {
+                return false;
+            }
+            FilterInput other = (FilterInput) o;
+            return source.equals(other.source) && Objects.equals(seek, other.seek) && Objects.equals(length, other.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, seek, length);
         }
-        return formatted;
     }
 }
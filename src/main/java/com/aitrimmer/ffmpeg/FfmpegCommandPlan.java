@@ -1,7 +1,9 @@
 package com.aitrimmer.ffmpeg;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -20,4 +22,26 @@ public interface FfmpegCommandPlan {
     default Optional<String> concatScript() {
         return Optional.empty();
     }
+
+    /**
+     * Length of the output timeline when every segment has a known duration; used to derive progress and ETA.
+     */
+    default Optional<Duration> outputDuration() {
+        return Optional.empty();
+    }
+
+    /**
+     * Dimensions describing how this plan was built, such as {@code strategy} and {@code preset}; used to tag
+     * metrics.
+     */
+    default Map<String, String> tags() {
+        return Map.of();
+    }
+
+    /**
+     * Files this plan writes, when known.
+     */
+    default List<Path> outputs() {
+        return List.of();
+    }
 }
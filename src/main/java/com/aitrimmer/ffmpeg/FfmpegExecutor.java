@@ -6,9 +6,23 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -16,6 +30,62 @@ import java.util.function.Consumer;
  */
 public final class FfmpegExecutor {
 
+    /**
+     * Returned by {@code execute} when the task was cancelled or timed out; the task status tells which.
+     */
+    public static final int STOPPED_EXIT_CODE = -1;
+
+    private static final long MIN_WATCHDOG_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_WATCHDOG_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final FfmpegMetrics metrics;
+    private final ExecutionLimits limits;
+    private final ConcurrentHashMap<ProcessingTask, Execution> executions = new ConcurrentHashMap<>();
+
+    public FfmpegExecutor() {
+        this(FfmpegMetrics.NOOP);
+    }
+
+    /**
+     * Creates an executor that reports the timings and outcome of every process it runs to {@code metrics}.
+     */
+    public FfmpegExecutor(FfmpegMetrics metrics) {
+        this(metrics, ExecutionLimits.none());
+    }
+
+    /**
+     * Creates an executor that stops every task exceeding {@code limits} and marks it
+     * {@link TaskStatus#TIMED_OUT}.
+     */
+    public FfmpegExecutor(FfmpegMetrics metrics, ExecutionLimits limits) {
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.limits = Objects.requireNonNull(limits, "limits");
+    }
+
+    public ExecutionLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Stops {@code task}: kills the process tree of every process it runs, marks it {@link TaskStatus#CANCELLED}
+     * and removes its partial outputs. A task that has not started yet is cancelled as soon as it is executed;
+     * later executions of the same task, such as resuming a checkpointed render, run normally. Returns whether
+     * the task was running.
+     */
+    public boolean cancel(ProcessingTask task) {
+        Objects.requireNonNull(task, "task");
+        Execution execution;
+        synchronized (executions) {
+            execution = executions.get(task);
+            if (execution == null) {
+                task.requestCancel();
+                return false;
+            }
+        }
+        execution.stop(TaskStatus.CANCELLED, "Cancelled");
+        return true;
+    }
+
     public int execute(
             FfmpegCommandPlan plan,
             ProcessingTask task,
@@ -25,24 +95,25 @@ public final class FfmpegExecutor {
         Objects.requireNonNull(plan, "plan");
         Objects.requireNonNull(task, "task");
         Consumer<String> consumer = logConsumer != null ? logConsumer : line -> {};
-        Path scriptFile = null;
+        plan.outputDuration().ifPresent(task::setExpectedDuration);
+        List<Path> outputs = plan.outputs();
+        Execution execution = begin(task);
         try {
-            Optional<String> concatScript = plan.concatScript();
-            if (concatScript.isPresent()) {
-                scriptFile = Files.createTempFile("ffmpeg_concat_", ".txt");
-                Files.writeString(scriptFile, concatScript.get(), StandardCharsets.UTF_8);
+            task.setStatus(TaskStatus.RUNNING);
+            outputs.forEach(output -> task.setOutputStatus(output, TaskStatus.RUNNING));
+            int exitCode = run(plan, task, workingDirectory, consumer, execution, new ProgressParser(task::updateProgress));
+            TaskStatus stopped = execution.stopReason;
+            if (exitCode != 0 && stopped != null) {
+                for (Path output : outputs) {
+                    deleteQuietly(output);
+                    task.setOutputStatus(output, stopped);
+                }
+                task.setStatus(stopped);
+                return STOPPED_EXIT_CODE;
             }
-
-            List<String> command = plan.command(scriptFile);
-            ProcessBuilder builder = new ProcessBuilder(command);
-            if (workingDirectory != null) {
-                builder.directory(workingDirectory.toFile());
+            for (Path output : outputs) {
+                task.setOutputStatus(output, exitCode == 0 && isNonEmptyFile(output) ? TaskStatus.SUCCEEDED : TaskStatus.FAILED);
             }
-            builder.redirectErrorStream(true);
-            task.setStatus(TaskStatus.RUNNING);
-            Process process = builder.start();
-            streamLogs(process, task, consumer);
-            int exitCode = process.waitFor();
             if (exitCode == 0) {
                 task.setStatus(TaskStatus.SUCCEEDED);
             } else {
@@ -50,30 +121,419 @@ public final class FfmpegExecutor {
             }
             return exitCode;
         } catch (IOException e) {
+            outputs.forEach(output -> task.setOutputStatus(output, TaskStatus.FAILED));
             task.setStatus(TaskStatus.FAILED);
             throw new FfmpegExecutionException("Failed to execute FFmpeg", e);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            outputs.forEach(output -> task.setOutputStatus(output, TaskStatus.FAILED));
             task.setStatus(TaskStatus.FAILED);
             throw new FfmpegExecutionException("FFmpeg execution was interrupted", e);
         } finally {
-            if (scriptFile != null) {
+            end(task, execution);
+        }
+    }
+
+    private Execution begin(ProcessingTask task) {
+        Execution execution = new Execution(task);
+        boolean cancelled;
+        // Registering and taking the request together, so a concurrent cancel() either finds the execution or
+        // leaves a request this execution consumes.
+        synchronized (executions) {
+            if (executions.putIfAbsent(task, execution) != null) {
+                throw new IllegalStateException("Task is already running: " + task.getId());
+            }
+            cancelled = task.takeCancelRequest();
+        }
+        if (cancelled) {
+            execution.stop(TaskStatus.CANCELLED, "Cancelled");
+        }
+        execution.watch(limits);
+        return execution;
+    }
+
+    private void end(ProcessingTask task, Execution execution) {
+        execution.unwatch();
+        synchronized (executions) {
+            executions.remove(task, execution);
+        }
+    }
+
+    private static boolean isNonEmptyFile(Path file) {
+        try {
+            return Files.size(file) > 0L;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs every stage of {@code plan} in order. The first non-zero exit code stops the render, kills the
+     * other processes of the current stage and is returned. Intermediate files are always removed, and so are
+     * the outputs of the pieces a cancelled or timed-out render had not finished.
+     */
+    public int execute(
+            MultiStagePlan plan,
+            ProcessingTask task,
+            Path workingDirectory,
+            Consumer<String> logConsumer
+    ) {
+        Objects.requireNonNull(plan, "plan");
+        Objects.requireNonNull(task, "task");
+        Consumer<String> target = logConsumer != null ? logConsumer : line -> {};
+        Object consumerLock = new Object();
+        Consumer<String> consumer = line -> {
+            synchronized (consumerLock) {
+                target.accept(line);
+            }
+        };
+        plan.outputDuration().ifPresent(task::setExpectedDuration);
+        Execution execution = begin(task);
+        try {
+            task.setStatus(TaskStatus.RUNNING);
+            List<List<FfmpegCommandPlan>> stages = plan.stages();
+            for (int index = 0; index < stages.size(); index++) {
+                int exitCode = runStage(plan, stages, index, task, workingDirectory, consumer, execution);
+                TaskStatus stopped = execution.stopReason;
+                if (exitCode != 0 && stopped != null) {
+                    // Finished pieces keep their outputs so a checkpointed plan can resume from them.
+                    for (List<FfmpegCommandPlan> started : stages) {
+                        for (FfmpegCommandPlan piece : started) {
+                            if (!execution.completed.contains(piece)) {
+                                piece.outputs().forEach(FfmpegExecutor::deleteQuietly);
+                            }
+                        }
+                    }
+                    task.setStatus(stopped);
+                    return STOPPED_EXIT_CODE;
+                }
+                if (exitCode != 0) {
+                    task.setStatus(TaskStatus.FAILED);
+                    return exitCode;
+                }
+            }
+            task.setStatus(TaskStatus.SUCCEEDED);
+            return 0;
+        } catch (IOException e) {
+            task.setStatus(TaskStatus.FAILED);
+            throw new FfmpegExecutionException("Failed to execute FFmpeg", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.setStatus(TaskStatus.FAILED);
+            throw new FfmpegExecutionException("FFmpeg execution was interrupted", e);
+        } finally {
+            execution.live.forEach(FfmpegExecutor::destroyTree);
+            for (Path file : plan.intermediateFiles()) {
+                deleteQuietly(file);
+            }
+            end(task, execution);
+        }
+    }
+
+    private int runStage(
+            MultiStagePlan plan,
+            List<List<FfmpegCommandPlan>> stages,
+            int index,
+            ProcessingTask task,
+            Path workingDirectory,
+            Consumer<String> consumer,
+            Execution execution
+    ) throws IOException, InterruptedException {
+        List<FfmpegCommandPlan> stage = stages.get(index);
+        Duration timeline = plan.outputDuration().orElse(null);
+        ProgressSnapshot[] progress = new ProgressSnapshot[stage.size()];
+        List<ProgressParser> parsers = new ArrayList<>(stage.size());
+        for (int i = 0; i < stage.size(); i++) {
+            int slot = i;
+            parsers.add(new ProgressParser(snapshot -> {
+                synchronized (progress) {
+                    progress[slot] = snapshot;
+                    task.updateProgress(ProgressSnapshot.sum(progress).inStage(index, stages.size(), timeline));
+                }
+            }));
+        }
+        int workers = Math.min(Math.max(plan.parallelism(), 1), stage.size());
+        if (workers <= 1) {
+            for (int i = 0; i < stage.size(); i++) {
+                int exitCode = run(stage.get(i), task, workingDirectory, consumer, execution, parsers.get(i));
+                finished(plan, stage.get(i), exitCode, execution);
+                if (exitCode != 0) {
+                    return exitCode;
+                }
+            }
+            return 0;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(stage.size());
+            for (int i = 0; i < stage.size(); i++) {
+                FfmpegCommandPlan piece = stage.get(i);
+                ProgressParser parser = parsers.get(i);
+                futures.add(pool.submit(() -> {
+                    int exitCode = run(piece, task, workingDirectory, consumer, execution, parser);
+                    finished(plan, piece, exitCode, execution);
+                    return exitCode;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                int exitCode;
                 try {
-                    Files.deleteIfExists(scriptFile);
-                } catch (IOException ignored) {
-                    // Best effort cleanup.
+                    exitCode = future.get();
+                } catch (ExecutionException e) {
+                    abort(pool, execution.live);
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new FfmpegExecutionException("FFmpeg stage failed", cause);
                 }
+                if (exitCode != 0) {
+                    abort(pool, execution.live);
+                    return exitCode;
+                }
+            }
+            return 0;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void finished(MultiStagePlan plan, FfmpegCommandPlan piece, int exitCode, Execution execution) {
+        if (exitCode == 0) {
+            execution.completed.add(piece);
+        }
+        plan.planFinished(piece, exitCode);
+    }
+
+    private int run(
+            FfmpegCommandPlan plan,
+            ProcessingTask task,
+            Path workingDirectory,
+            Consumer<String> consumer,
+            Execution execution,
+            ProgressParser parser
+    ) throws IOException, InterruptedException {
+        Map<String, String> tags = plan.tags();
+        Path scriptFile = null;
+        try {
+            Optional<String> concatScript = plan.concatScript();
+            if (concatScript.isPresent()) {
+                long writeStarted = System.nanoTime();
+                scriptFile = Files.createTempFile("ffmpeg_concat_", ".txt");
+                Files.writeString(scriptFile, concatScript.get(), StandardCharsets.UTF_8);
+                metrics.concatScriptWritten(tags, Duration.ofNanos(System.nanoTime() - writeStarted));
+            }
+
+            List<String> command = withProgressOutput(plan.command(scriptFile));
+            ProcessBuilder builder = new ProcessBuilder(command);
+            if (workingDirectory != null) {
+                builder.directory(workingDirectory.toFile());
+            }
+            builder.redirectErrorStream(true);
+            Set<Process> live = execution.live;
+            Process process;
+            long spawnRequested;
+            synchronized (live) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Stage was aborted");
+                }
+                if (execution.stopReason != null) {
+                    return STOPPED_EXIT_CODE;
+                }
+                spawnRequested = System.nanoTime();
+                process = builder.start();
+                live.add(process);
+            }
+            long started = System.nanoTime();
+            execution.touch();
+            metrics.processSpawned(tags, Duration.ofNanos(started - spawnRequested));
+            try {
+                streamLogs(process, task, consumer, parser, execution, tags, started);
+                int exitCode = process.waitFor();
+                Duration wallTime = Duration.ofNanos(System.nanoTime() - started);
+                metrics.processExited(tags, exitCode, wallTime, speedFactor(parser, wallTime), outputBytes(plan));
+                return exitCode;
+            } finally {
+                live.remove(process);
+            }
+        } finally {
+            if (scriptFile != null) {
+                deleteQuietly(scriptFile);
             }
         }
     }
 
-    private void streamLogs(Process process, ProcessingTask task, Consumer<String> consumer) throws IOException {
+    /**
+     * Asks FFmpeg for machine-readable progress blocks on stdout (interleaved with the merged log output)
+     * instead of the carriage-return stats line.
+     */
+    static List<String> withProgressOutput(List<String> command) {
+        if (command.isEmpty() || command.contains("-progress") || !isFfmpeg(command.get(0))) {
+            return command;
+        }
+        List<String> withProgress = new ArrayList<>(command.size() + 3);
+        withProgress.add(command.get(0));
+        withProgress.add("-progress");
+        withProgress.add("pipe:1");
+        withProgress.add("-nostats");
+        withProgress.addAll(command.subList(1, command.size()));
+        return withProgress;
+    }
+
+    static boolean isFfmpeg(String program) {
+        Path fileName = Path.of(program).getFileName();
+        String name = fileName == null ? "" : fileName.toString();
+        return name.equals("ffmpeg") || name.equals("ffmpeg.exe");
+    }
+
+    /**
+     * FFmpeg's last reported speed, or the encoded output time over the wall time when it reported none.
+     */
+    private static OptionalDouble speedFactor(ProgressParser parser, Duration wallTime) {
+        if (parser.getSpeed() > 0d) {
+            return OptionalDouble.of(parser.getSpeed());
+        }
+        if (parser.getOutTimeMicros() > 0L && !wallTime.isZero()) {
+            return OptionalDouble.of(parser.getOutTimeMicros() * 1_000d / wallTime.toNanos());
+        }
+        return OptionalDouble.empty();
+    }
+
+    private static OptionalLong outputBytes(FfmpegCommandPlan plan) {
+        long total = 0L;
+        boolean found = false;
+        for (Path output : plan.outputs()) {
+            try {
+                total += Files.size(output);
+                found = true;
+            } catch (IOException ignored) {
+                // Missing outputs (for example after a failure) do not count.
+            }
+        }
+        return found ? OptionalLong.of(total) : OptionalLong.empty();
+    }
+
+    private static void abort(ExecutorService pool, Set<Process> live) {
+        // Interrupt first so no worker can start a new process once the live ones are killed.
+        pool.shutdownNow();
+        synchronized (live) {
+            live.forEach(FfmpegExecutor::destroyTree);
+        }
+    }
+
+    private static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Best effort cleanup.
+        }
+    }
+
+    private void streamLogs(
+            Process process,
+            ProcessingTask task,
+            Consumer<String> consumer,
+            ProgressParser parser,
+            Execution execution,
+            Map<String, String> tags,
+            long started
+    ) throws IOException {
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
+            String line = reader.readLine();
+            if (line != null) {
+                metrics.firstOutput(tags, Duration.ofNanos(System.nanoTime() - started));
+            }
+            for (; line != null; line = reader.readLine()) {
+                execution.touch();
+                if (parser.accept(line)) {
+                    continue;
+                }
                 consumer.accept(line);
                 task.appendLog(line);
             }
+        } catch (IOException e) {
+            // Killing a process closes its streams; a stopped task then simply has no more output.
+            if (execution.stopReason == null) {
+                throw e;
+            }
         }
     }
+
+    /**
+     * Processes and stop state of one task being executed.
+     */
+    private static final class Execution {
+        private final ProcessingTask task;
+        private final Set<Process> live = ConcurrentHashMap.newKeySet();
+        private final Set<FfmpegCommandPlan> completed = ConcurrentHashMap.newKeySet();
+        private final long startedAt = System.nanoTime();
+        private volatile long lastActivity = startedAt;
+        private volatile TaskStatus stopReason;
+        private ScheduledFuture<?> watchdog;
+
+        private Execution(ProcessingTask task) {
+            this.task = task;
+        }
+
+        void touch() {
+            lastActivity = System.nanoTime();
+        }
+
+        /**
+         * Records why the task stops and kills its processes; holding the lock keeps new ones from starting.
+         */
+        void stop(TaskStatus reason, String message) {
+            synchronized (live) {
+                if (stopReason != null) {
+                    return;
+                }
+                stopReason = reason;
+                // Logged before the kill so the message is in place when the executing thread sees the exit.
+                task.appendLog(message);
+                live.forEach(FfmpegExecutor::destroyTree);
+            }
+        }
+
+        void watch(ExecutionLimits limits) {
+            long timeout = limits.getTimeout().map(Duration::toNanos).orElse(0L);
+            long stall = limits.getStallTimeout().map(Duration::toNanos).orElse(0L);
+            if (timeout == 0L && stall == 0L) {
+                return;
+            }
+            long shortest = timeout == 0L ? stall : stall == 0L ? timeout : Math.min(timeout, stall);
+            long period = Math.max(MIN_WATCHDOG_PERIOD_NANOS, Math.min(MAX_WATCHDOG_PERIOD_NANOS, shortest / 4));
+            watchdog = Watchdog.SCHEDULER.scheduleAtFixedRate(
+                    () -> check(timeout, stall), period, period, TimeUnit.NANOSECONDS);
+        }
+
+        private void check(long timeout, long stall) {
+            long now = System.nanoTime();
+            if (timeout > 0L && now - startedAt >= timeout) {
+                stop(TaskStatus.TIMED_OUT, "Stopped after exceeding the time limit of "
+                        + TimeUnit.NANOSECONDS.toMillis(timeout) + " ms");
+            } else if (stall > 0L && now - lastActivity >= stall) {
+                stop(TaskStatus.TIMED_OUT, "Stopped after " + TimeUnit.NANOSECONDS.toMillis(stall)
+                        + " ms without output or progress");
+            }
+        }
+
+        void unwatch() {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+        }
+    }
+
+    private static final class Watchdog {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ffmpeg-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 }
@@ -0,0 +1,317 @@
+package com.aitrimmer.ffmpeg;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Runs FFmpeg plans on a bounded worker pool, serving interactive jobs ahead of batch jobs.
+ */
+public final class FfmpegJobScheduler implements AutoCloseable {
+
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    private final FfmpegExecutor executor;
+    private final int maxConcurrentTasks;
+    private final int maxQueuedJobs;
+    private final EncoderThreadBudget threadBudget;
+    private final ThreadPoolExecutor workers;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger[] queued = new AtomicInteger[Priority.values().length];
+    private final AtomicLongArray started = new AtomicLongArray(Priority.values().length);
+    private final AtomicLongArray totalWaitNanos = new AtomicLongArray(Priority.values().length);
+    private final AtomicLongArray maxWaitNanos = new AtomicLongArray(Priority.values().length);
+    private final ConcurrentHashMap<ProcessingTask, Job> jobs = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public FfmpegJobScheduler(FfmpegExecutor executor, int maxConcurrentTasks) {
+        this(executor, maxConcurrentTasks, null);
+    }
+
+    /**
+     * Creates a scheduler that gives every job a share of {@code threadBudget} when it starts and caps the
+     * FFmpeg thread counts of its plan accordingly. A {@code null} budget leaves plans unchanged.
+     */
+    public FfmpegJobScheduler(FfmpegExecutor executor, int maxConcurrentTasks, EncoderThreadBudget threadBudget) {
+        this(executor, maxConcurrentTasks, Integer.MAX_VALUE, threadBudget);
+    }
+
+    /**
+     * Creates a scheduler whose queue holds at most {@code maxQueuedJobs} jobs waiting for a worker; further
+     * submissions are rejected with {@link RejectedExecutionException} until the queue drains.
+     */
+    public FfmpegJobScheduler(
+            FfmpegExecutor executor,
+            int maxConcurrentTasks,
+            int maxQueuedJobs,
+            EncoderThreadBudget threadBudget
+    ) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.threadBudget = threadBudget;
+        if (maxConcurrentTasks < 1) {
+            throw new IllegalArgumentException("maxConcurrentTasks must be at least 1");
+        }
+        if (maxQueuedJobs < 0) {
+            throw new IllegalArgumentException("maxQueuedJobs must not be negative");
+        }
+        this.maxConcurrentTasks = maxConcurrentTasks;
+        this.maxQueuedJobs = maxQueuedJobs;
+        for (int i = 0; i < queued.length; i++) {
+            queued[i] = new AtomicInteger();
+        }
+        this.workers = new ThreadPoolExecutor(
+                maxConcurrentTasks,
+                maxConcurrentTasks,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                workerThreadFactory()
+        );
+    }
+
+    public CompletableFuture<Integer> submit(FfmpegCommandPlan plan, ProcessingTask task, Priority priority) {
+        return submit(plan, task, priority, null, null);
+    }
+
+    public CompletableFuture<Integer> submit(
+            FfmpegCommandPlan plan,
+            ProcessingTask task,
+            Priority priority,
+            Path workingDirectory,
+            Consumer<String> logConsumer
+    ) {
+        Objects.requireNonNull(plan, "plan");
+        Objects.requireNonNull(task, "task");
+        Objects.requireNonNull(priority, "priority");
+        Job job = new Job(plan, task, priority, workingDirectory, logConsumer, sequence.getAndIncrement());
+        if (jobs.putIfAbsent(task, job) != null) {
+            throw new IllegalStateException("Task is already scheduled: " + task.getId());
+        }
+        queued[priority.ordinal()].incrementAndGet();
+        if (exceedsQueueCapacity(getQueueDepth())) {
+            queued[priority.ordinal()].decrementAndGet();
+            jobs.remove(task, job);
+            throw new RejectedExecutionException("FFmpeg job queue is full (" + maxQueuedJobs + " waiting)");
+        }
+        try {
+            workers.execute(job);
+        } catch (RuntimeException e) {
+            queued[priority.ordinal()].decrementAndGet();
+            jobs.remove(task, job);
+            throw e;
+        }
+        return job.future;
+    }
+
+    /**
+     * Cancels the job of {@code task}. A queued job is removed at once, its task marked
+     * {@link TaskStatus#CANCELLED} and its future cancelled; a running job is stopped through
+     * {@link FfmpegExecutor#cancel(ProcessingTask)} and its future completes when its processes are gone.
+     * Returns {@code false} when the task is not scheduled here or has already finished.
+     */
+    public boolean cancel(ProcessingTask task) {
+        Objects.requireNonNull(task, "task");
+        Job job = jobs.get(task);
+        if (job == null) {
+            return false;
+        }
+        if (workers.remove(job)) {
+            queued[job.priority.ordinal()].decrementAndGet();
+            jobs.remove(task, job);
+            task.setStatus(TaskStatus.CANCELLED);
+            job.future.cancel(false);
+            return true;
+        }
+        executor.cancel(task);
+        return true;
+    }
+
+    public int getMaxConcurrentTasks() {
+        return maxConcurrentTasks;
+    }
+
+    public EncoderThreadBudget getThreadBudget() {
+        return threadBudget;
+    }
+
+    /**
+     * Whether a submission made now would be rejected because the queue is at capacity.
+     */
+    public boolean isQueueFull() {
+        return exceedsQueueCapacity(getQueueDepth() + 1);
+    }
+
+    private boolean exceedsQueueCapacity(int depth) {
+        // Jobs handed straight to an idle worker still pass through the queue, so allow for free workers.
+        int idleWorkers = Math.max(0, maxConcurrentTasks - running.get());
+        return depth > (long) maxQueuedJobs + idleWorkers;
+    }
+
+    public int getMaxQueuedJobs() {
+        return maxQueuedJobs;
+    }
+
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (AtomicInteger lane : queued) {
+            depth += lane.get();
+        }
+        return depth;
+    }
+
+    public int getQueueDepth(Priority priority) {
+        return queued[priority.ordinal()].get();
+    }
+
+    public long getStartedCount(Priority priority) {
+        return started.get(priority.ordinal());
+    }
+
+    public Duration getTotalWait(Priority priority) {
+        return Duration.ofNanos(totalWaitNanos.get(priority.ordinal()));
+    }
+
+    public Duration getMaxWait(Priority priority) {
+        return Duration.ofNanos(maxWaitNanos.get(priority.ordinal()));
+    }
+
+    public Duration getAverageWait(Priority priority) {
+        long count = started.get(priority.ordinal());
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(totalWaitNanos.get(priority.ordinal()) / count);
+    }
+
+    /**
+     * Whether {@link #close()} has been called. Jobs that end once the scheduler is closed were stopped by the
+     * shutdown rather than finished, so callers that persist job outcomes can leave them to be resumed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops the scheduler. Queued jobs are dropped without starting: their futures fail with a
+     * {@link CancellationException} and their tasks keep their status. Running jobs are stopped through
+     * {@link FfmpegExecutor#cancel(ProcessingTask)}, and the call waits up to 30 seconds for them to exit.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Runnable drained : workers.shutdownNow()) {
+            Job job = (Job) drained;
+            queued[job.priority.ordinal()].decrementAndGet();
+            jobs.remove(job.task, job);
+            job.future.completeExceptionally(new CancellationException("Scheduler closed before the job started"));
+        }
+        // Reading FFmpeg's output does not respond to interrupts, so stop the running processes explicitly.
+        jobs.keySet().forEach(executor::cancel);
+        try {
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recordStart(Priority priority, long waitNanos) {
+        int lane = priority.ordinal();
+        queued[lane].decrementAndGet();
+        started.incrementAndGet(lane);
+        totalWaitNanos.addAndGet(lane, waitNanos);
+        maxWaitNanos.accumulateAndGet(lane, waitNanos, Math::max);
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "ffmpeg-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Job implements Runnable, Comparable<Job> {
+        private final FfmpegCommandPlan plan;
+        private final ProcessingTask task;
+        private final Priority priority;
+        private final Path workingDirectory;
+        private final Consumer<String> logConsumer;
+        private final long sequence;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        private Job(
+                FfmpegCommandPlan plan,
+                ProcessingTask task,
+                Priority priority,
+                Path workingDirectory,
+                Consumer<String> logConsumer,
+                long sequence
+        ) {
+            this.plan = plan;
+            this.task = task;
+            this.priority = priority;
+            this.workingDirectory = workingDirectory;
+            this.logConsumer = logConsumer;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            recordStart(priority, System.nanoTime() - enqueuedAt);
+            if (future.isDone()) {
+                jobs.remove(task, this);
+                return;
+            }
+            int concurrent = running.incrementAndGet();
+            EncoderThreadBudget.Lease lease = null;
+            try {
+                FfmpegCommandPlan runnable = plan;
+                if (threadBudget != null) {
+                    // Size the share for the jobs that will run alongside this one, not just those already running.
+                    lease = threadBudget.acquire(Math.min(maxConcurrentTasks, concurrent + getQueueDepth()));
+                    runnable = EncoderThreadBudget.limit(plan, lease.getThreads());
+                }
+                future.complete(executor.execute(runnable, task, workingDirectory, logConsumer));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                if (lease != null) {
+                    lease.close();
+                }
+                running.decrementAndGet();
+                jobs.remove(task, this);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int byPriority = priority.compareTo(other.priority);
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
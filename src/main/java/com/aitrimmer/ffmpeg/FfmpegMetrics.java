@@ -0,0 +1,48 @@
+package com.aitrimmer.ffmpeg;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+
+/**
+ * Receives timings and outcomes of every FFmpeg process the {@link FfmpegExecutor} runs. Each call carries the
+ * {@link FfmpegCommandPlan#tags() tags} of the plan being run (strategy and preset). Implementations must be
+ * thread-safe and cheap; they are called on the executing thread.
+ */
+public interface FfmpegMetrics {
+
+    FfmpegMetrics NOOP = new FfmpegMetrics() {
+    };
+
+    /**
+     * Time spent writing the concat script of a plan to disk.
+     */
+    default void concatScriptWritten(Map<String, String> tags, Duration elapsed) {
+    }
+
+    /**
+     * Time from asking the OS for the process until it was started.
+     */
+    default void processSpawned(Map<String, String> tags, Duration latency) {
+    }
+
+    /**
+     * Time from process start until it wrote its first line of output.
+     */
+    default void firstOutput(Map<String, String> tags, Duration sinceStart) {
+    }
+
+    /**
+     * Outcome of a finished process: its exit code, wall time from start to exit, the realtime speed factor
+     * (output seconds per wall second) when known, and the size of its output files when they exist.
+     */
+    default void processExited(
+            Map<String, String> tags,
+            int exitCode,
+            Duration wallTime,
+            OptionalDouble speedFactor,
+            OptionalLong outputBytes
+    ) {
+    }
+}
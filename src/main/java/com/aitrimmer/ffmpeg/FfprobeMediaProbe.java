@@ -0,0 +1,276 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * {@link MediaProbe} backed by the {@code ffprobe} command line tool.
+ */
+public final class FfprobeMediaProbe implements MediaProbe {
+    private static final Duration KEYFRAME_LOOKBACK = Duration.ofSeconds(30);
+
+    private final String ffprobeCommand;
+    private final KeyframeIndexStore keyframeStore;
+
+    public FfprobeMediaProbe(String ffprobeCommand) {
+        this.ffprobeCommand = Objects.requireNonNull(ffprobeCommand, "ffprobeCommand");
+        this.keyframeStore = null;
+    }
+
+    /**
+     * Creates a probe that answers keyframe lookups from persistent per-source indexes in {@code indexDirectory}
+     * instead of probing around every cut.
+     */
+    public FfprobeMediaProbe(String ffprobeCommand, Path indexDirectory) {
+        this.ffprobeCommand = Objects.requireNonNull(ffprobeCommand, "ffprobeCommand");
+        this.keyframeStore = new KeyframeIndexStore(indexDirectory, this::scanKeyframes);
+    }
+
+    public FfprobeMediaProbe() {
+        this("ffprobe");
+    }
+
+    @Override
+    public MediaStreamInfo streamInfo(Path source) {
+        Objects.requireNonNull(source, "source");
+        List<String> lines = run(List.of(
+                ffprobeCommand, "-v", "error",
+                "-show_entries", "stream=codec_type,codec_name,profile,time_base,width,height,pix_fmt,r_frame_rate,"
+                        + "sample_rate,channels",
+                "-of", "compact=p=0",
+                source.toString()
+        ));
+        return parseStreamInfo(lines);
+    }
+
+    @Override
+    public Optional<Duration> keyframeAtOrBefore(Path source, Duration timestamp) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(timestamp, "timestamp");
+        if (keyframeStore != null) {
+            return keyframeStore.load(source).atOrBefore(timestamp);
+        }
+        Duration from = timestamp.minus(KEYFRAME_LOOKBACK);
+        if (from.isNegative()) {
+            from = Duration.ZERO;
+        }
+        List<String> lines = run(List.of(
+                ffprobeCommand, "-v", "error",
+                "-select_streams", "v:0",
+                "-read_intervals", toSeconds(from) + "%" + toSeconds(timestamp.plusMillis(1)),
+                "-show_entries", "packet=pts_time,flags",
+                "-of", "csv=p=0",
+                source.toString()
+        ));
+        return lastKeyframeAtOrBefore(lines, timestamp);
+    }
+
+    public Optional<KeyframeIndexStore> getKeyframeStore() {
+        return Optional.ofNullable(keyframeStore);
+    }
+
+    /**
+     * Reads every video packet header of {@code source} (no decoding) and returns the keyframe timestamps in
+     * microseconds.
+     */
+    public long[] scanKeyframes(Path source) {
+        Objects.requireNonNull(source, "source");
+        ProcessBuilder builder = new ProcessBuilder(
+                ffprobeCommand, "-v", "error",
+                "-select_streams", "v:0",
+                "-show_entries", "packet=pts_time,flags",
+                "-of", "csv=p=0",
+                source.toString()
+        );
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        try {
+            Process process = builder.start();
+            long[] keyframes;
+            try (InputStream input = process.getInputStream()) {
+                keyframes = parseKeyframePackets(input);
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new FfmpegExecutionException("ffprobe exited with code " + exitCode);
+            }
+            return keyframes;
+        } catch (IOException e) {
+            throw new FfmpegExecutionException("Failed to execute ffprobe", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FfmpegExecutionException("ffprobe execution was interrupted", e);
+        }
+    }
+
+    /**
+     * Parses {@code pts_time,flags} CSV lines straight from bytes, keeping only keyframe packets. Avoids
+     * per-line string allocation because an 8-hour VOD produces millions of packet lines.
+     */
+    static long[] parseKeyframePackets(InputStream input) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long[] keyframes = new long[1024];
+        int count = 0;
+        long micros = 0L;
+        int fractionDigits = -1;
+        boolean negative = false;
+        boolean valid = true;
+        boolean inFlags = false;
+        boolean keyframe = false;
+        int read;
+        boolean done = false;
+        while (!done) {
+            read = input.read(buffer);
+            if (read <= 0) {
+                // Terminate a final line that lacks a trailing newline.
+                done = true;
+                buffer[0] = '\n';
+                read = 1;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    if (valid && keyframe && !negative) {
+                        for (int d = Math.max(fractionDigits, 0); d < 6; d++) {
+                            micros *= 10L;
+                        }
+                        if (count == keyframes.length) {
+                            keyframes = Arrays.copyOf(keyframes, count * 2);
+                        }
+                        keyframes[count++] = micros;
+                    }
+                    micros = 0L;
+                    fractionDigits = -1;
+                    negative = false;
+                    valid = true;
+                    inFlags = false;
+                    keyframe = false;
+                } else if (inFlags) {
+                    if (b == 'K') {
+                        keyframe = true;
+                    }
+                } else if (b == ',') {
+                    inFlags = true;
+                } else if (b >= '0' && b <= '9') {
+                    if (fractionDigits < 0) {
+                        micros = micros * 10L + (b - '0');
+                    } else if (fractionDigits < 6) {
+                        micros = micros * 10L + (b - '0');
+                        fractionDigits++;
+                    }
+                } else if (b == '.') {
+                    fractionDigits = 0;
+                } else if (b == '-') {
+                    negative = true;
+                } else if (b != '\r') {
+                    valid = false;
+                }
+            }
+        }
+        return Arrays.copyOf(keyframes, count);
+    }
+
+    static MediaStreamInfo parseStreamInfo(List<String> lines) {
+        MediaStreamInfo.Builder builder = MediaStreamInfo.builder();
+        boolean videoSeen = false;
+        boolean audioSeen = false;
+        for (String line : lines) {
+            Map<String, String> fields = new HashMap<>();
+            for (String entry : line.split("\\|")) {
+                int separator = entry.indexOf('=');
+                if (separator > 0) {
+                    fields.put(entry.substring(0, separator), entry.substring(separator + 1));
+                }
+            }
+            String type = fields.get("codec_type");
+            if ("video".equals(type) && !videoSeen) {
+                videoSeen = true;
+                builder.videoCodec(fields.get("codec_name"))
+                        .profile(fields.get("profile"))
+                        .timeBase(fields.get("time_base"))
+                        .width(parseInt(fields.get("width")))
+                        .height(parseInt(fields.get("height")))
+                        .pixelFormat(fields.get("pix_fmt"))
+                        .frameRate(fields.get("r_frame_rate"));
+            } else if ("audio".equals(type) && !audioSeen) {
+                audioSeen = true;
+                builder.audioCodec(fields.get("codec_name"))
+                        .sampleRate(parseInt(fields.get("sample_rate")))
+                        .channels(parseInt(fields.get("channels")));
+            }
+        }
+        if (!videoSeen) {
+            throw new FfmpegExecutionException("ffprobe reported no video stream");
+        }
+        return builder.build();
+    }
+
+    static Optional<Duration> lastKeyframeAtOrBefore(List<String> packetLines, Duration timestamp) {
+        long limitMicros = timestamp.toNanos() / 1_000L;
+        long best = -1L;
+        for (String line : packetLines) {
+            int comma = line.indexOf(',');
+            if (comma <= 0 || line.indexOf('K', comma) < 0) {
+                continue;
+            }
+            String pts = line.substring(0, comma);
+            if ("N/A".equals(pts)) {
+                continue;
+            }
+            long micros = Math.round(Double.parseDouble(pts) * 1_000_000d);
+            if (micros <= limitMicros && micros > best) {
+                best = micros;
+            }
+        }
+        return best < 0 ? Optional.empty() : Optional.of(Duration.ofNanos(best * 1_000L));
+    }
+
+    private List<String> run(List<String> command) {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        try {
+            Process process = builder.start();
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        lines.add(line.trim());
+                    }
+                }
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new FfmpegExecutionException("ffprobe exited with code " + exitCode);
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new FfmpegExecutionException("Failed to execute ffprobe", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FfmpegExecutionException("ffprobe execution was interrupted", e);
+        }
+    }
+
+    private static int parseInt(String value) {
+        if (value == null || value.isEmpty() || "N/A".equals(value)) {
+            return 0;
+        }
+        return Integer.parseInt(value);
+    }
+
+    private static String toSeconds(Duration duration) {
+        return Long.toString(duration.toMillis() / 1000L) + "." + String.format("%03d", duration.toMillis() % 1000L);
+    }
+}
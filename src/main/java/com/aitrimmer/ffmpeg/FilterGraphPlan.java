@@ -1,18 +1,47 @@
 package com.aitrimmer.ffmpeg;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 final class FilterGraphPlan implements FfmpegCommandPlan {
     private final List<String> args;
+    private final Duration outputDuration;
+    private final Map<String, String> tags;
 
-    FilterGraphPlan(List<String> args) {
+    FilterGraphPlan(List<String> args, Duration outputDuration) {
+        this(args, outputDuration, Map.of());
+    }
+
+    FilterGraphPlan(List<String> args, Duration outputDuration, Map<String, String> tags) {
         this.args = List.copyOf(Objects.requireNonNull(args, "args"));
+        this.outputDuration = outputDuration;
+        this.tags = Map.copyOf(tags);
     }
 
     @Override
     public List<String> command(Path scriptPath) {
         return args;
     }
+
+    @Override
+    public Optional<Duration> outputDuration() {
+        return Optional.ofNullable(outputDuration);
+    }
+
+    @Override
+    public Map<String, String> tags() {
+        return tags;
+    }
+
+    /**
+     * The output file is always the last argument.
+     */
+    @Override
+    public List<Path> outputs() {
+        return args.isEmpty() ? List.of() : List.of(Path.of(args.get(args.size() - 1)));
+    }
 }
@@ -0,0 +1,202 @@
+package com.aitrimmer.ffmpeg;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Sorted keyframe timestamps of a source video, stored as microseconds for binary-search lookups.
+ */
+public final class KeyframeIndex {
+
+    public enum Snap {
+        /** Moves each cut to the closest keyframe. */
+        NEAREST,
+        /** Moves the start back and the end forward so the requested range stays covered. */
+        OUTWARD,
+        /** Moves the start forward and the end back so no frames outside the requested range are kept. */
+        INWARD
+    }
+
+    private final long[] micros;
+
+    private KeyframeIndex(long[] micros) {
+        this.micros = micros;
+    }
+
+    /**
+     * Creates an index from keyframe timestamps in microseconds. The array is copied and sorted.
+     */
+    public static KeyframeIndex of(long[] keyframeMicros) {
+        Objects.requireNonNull(keyframeMicros, "keyframeMicros");
+        long[] sorted = keyframeMicros.clone();
+        Arrays.sort(sorted);
+        return new KeyframeIndex(sorted);
+    }
+
+    static KeyframeIndex ofSorted(long[] keyframeMicros) {
+        return new KeyframeIndex(keyframeMicros);
+    }
+
+    public int size() {
+        return micros.length;
+    }
+
+    /**
+     * Returns the keyframe at or before {@code timestampMicros}, or {@code -1} when there is none.
+     */
+    public long floorMicros(long timestampMicros) {
+        int index = Arrays.binarySearch(micros, timestampMicros);
+        if (index >= 0) {
+            return micros[index];
+        }
+        int insertion = -index - 1;
+        return insertion == 0 ? -1L : micros[insertion - 1];
+    }
+
+    /**
+     * Returns the keyframe at or after {@code timestampMicros}, or {@code -1} when there is none.
+     */
+    public long ceilingMicros(long timestampMicros) {
+        int index = Arrays.binarySearch(micros, timestampMicros);
+        if (index >= 0) {
+            return micros[index];
+        }
+        int insertion = -index - 1;
+        return insertion == micros.length ? -1L : micros[insertion];
+    }
+
+    /**
+     * Returns the first keyframe strictly after {@code timestampMicros}, or {@code -1} when there is none.
+     */
+    public long higherMicros(long timestampMicros) {
+        int index = Arrays.binarySearch(micros, timestampMicros);
+        int next = index >= 0 ? index + 1 : -index - 1;
+        return next >= micros.length ? -1L : micros[next];
+    }
+
+    public long nearestMicros(long timestampMicros) {
+        long floor = floorMicros(timestampMicros);
+        long ceiling = ceilingMicros(timestampMicros);
+        if (floor < 0) {
+            return ceiling;
+        }
+        if (ceiling < 0) {
+            return floor;
+        }
+        return timestampMicros - floor <= ceiling - timestampMicros ? floor : ceiling;
+    }
+
+    public Optional<Duration> atOrBefore(Duration timestamp) {
+        return toDuration(floorMicros(toMicros(timestamp)));
+    }
+
+    public Optional<Duration> atOrAfter(Duration timestamp) {
+        return toDuration(ceilingMicros(toMicros(timestamp)));
+    }
+
+    public Optional<Duration> nearest(Duration timestamp) {
+        return toDuration(nearestMicros(toMicros(timestamp)));
+    }
+
+    public boolean isKeyframe(Duration timestamp, Duration tolerance) {
+        long target = toMicros(timestamp);
+        long nearest = nearestMicros(target);
+        return nearest >= 0 && Math.abs(target - nearest) <= toMicros(tolerance);
+    }
+
+    /**
+     * Reports the group of pictures containing {@code timestamp}: the keyframe at or before it and the next
+     * keyframe, if any. Empty when the timestamp precedes the first keyframe.
+     */
+    public Optional<Gop> gopAround(Duration timestamp) {
+        long target = toMicros(timestamp);
+        long start = floorMicros(target);
+        if (start < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new Gop(start, higherMicros(start)));
+    }
+
+    /**
+     * Moves the start and end of {@code segment} onto keyframes according to {@code snap}. Open ends stay
+     * open; if snapping would collapse the segment, the end is pushed to the following keyframe, except with
+     * {@link Snap#INWARD}, which must not leave the requested range and throws {@link IllegalArgumentException}
+     * when no keyframe-aligned range fits inside it.
+     */
+    public VideoSegment snap(VideoSegment segment, Snap snap) {
+        Objects.requireNonNull(segment, "segment");
+        Objects.requireNonNull(snap, "snap");
+        if (micros.length == 0) {
+            return segment;
+        }
+        long start = segment.getStart().map(KeyframeIndex::toMicros).orElse(-1L);
+        long end = segment.getEnd().map(KeyframeIndex::toMicros).orElse(-1L);
+        long snappedStart = start < 0 ? -1L : snapPoint(start, snap, true);
+        long snappedEnd = end < 0 ? -1L : snapPoint(end, snap, false);
+        if (snappedStart < 0 && start >= 0) {
+            snappedStart = start;
+        }
+        if (snappedEnd < 0 && end >= 0) {
+            snappedEnd = end;
+        }
+        if (snappedEnd >= 0 && snappedEnd <= Math.max(snappedStart, 0L)) {
+            if (snap == Snap.INWARD) {
+                throw new IllegalArgumentException("No keyframe-aligned range fits inside " + segment.getSource()
+                        + " from " + start / 1_000_000d + "s to " + end / 1_000_000d + "s");
+            }
+            long next = higherMicros(Math.max(snappedStart, 0L));
+            snappedEnd = next >= 0 ? next : end;
+        }
+        VideoSegment.Builder builder = VideoSegment.builder().source(segment.getSource());
+        if (snappedStart >= 0) {
+            builder.start(Duration.ofNanos(snappedStart * 1_000L));
+        }
+        if (snappedEnd >= 0) {
+            builder.end(Duration.ofNanos(snappedEnd * 1_000L));
+        }
+        return builder.build();
+    }
+
+    private long snapPoint(long timestampMicros, Snap snap, boolean isStart) {
+        return switch (snap) {
+            case NEAREST -> nearestMicros(timestampMicros);
+            case OUTWARD -> isStart ? floorMicros(timestampMicros) : ceilingMicros(timestampMicros);
+            case INWARD -> isStart ? ceilingMicros(timestampMicros) : floorMicros(timestampMicros);
+        };
+    }
+
+    long[] rawMicros() {
+        return micros;
+    }
+
+    static long toMicros(Duration duration) {
+        return duration.getSeconds() * 1_000_000L + duration.getNano() / 1_000L;
+    }
+
+    private static Optional<Duration> toDuration(long micros) {
+        return micros < 0 ? Optional.empty() : Optional.of(Duration.ofNanos(micros * 1_000L));
+    }
+
+    /**
+     * A group of pictures bounded by a keyframe and the next keyframe (absent for the final group).
+     */
+    public static final class Gop {
+        private final long startMicros;
+        private final long endMicros;
+
+        private Gop(long startMicros, long endMicros) {
+            this.startMicros = startMicros;
+            this.endMicros = endMicros;
+        }
+
+        public Duration getStart() {
+            return Duration.ofNanos(startMicros * 1_000L);
+        }
+
+        public Optional<Duration> getEnd() {
+            return toDuration(endMicros);
+        }
+    }
+}
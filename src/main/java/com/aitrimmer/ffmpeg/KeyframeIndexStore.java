@@ -0,0 +1,153 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists one {@link KeyframeIndex} per source file so each VOD is scanned only once. Index files are keyed
+ * by the source path and invalidated when the source size or modification time changes.
+ */
+public final class KeyframeIndexStore {
+
+    /**
+     * Produces the keyframe timestamps, in microseconds, of a source file.
+     */
+    @FunctionalInterface
+    public interface Scanner {
+        long[] scan(Path source);
+    }
+
+    private static final int MAGIC = 0x4B464931;
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final Scanner scanner;
+    private final ConcurrentHashMap<Path, Loaded> loaded = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, Object> locks = new ConcurrentHashMap<>();
+
+    public KeyframeIndexStore(Path directory, Scanner scanner) {
+        this.directory = Objects.requireNonNull(directory, "directory");
+        this.scanner = Objects.requireNonNull(scanner, "scanner");
+    }
+
+    public KeyframeIndex load(Path source) {
+        SourceFingerprint fingerprint = SourceFingerprint.of(source);
+        Path key = fingerprint.getPath();
+        Loaded current = loaded.get(key);
+        if (current != null && current.fingerprint.equals(fingerprint)) {
+            return current.index;
+        }
+        synchronized (locks.computeIfAbsent(key, ignored -> new Object())) {
+            current = loaded.get(key);
+            if (current != null && current.fingerprint.equals(fingerprint)) {
+                return current.index;
+            }
+            Path indexFile = indexFile(key);
+            KeyframeIndex index = read(indexFile, fingerprint);
+            if (index == null) {
+                index = KeyframeIndex.of(scanner.scan(key));
+                write(indexFile, fingerprint, index);
+            }
+            loaded.put(key, new Loaded(fingerprint, index));
+            return index;
+        }
+    }
+
+    public void invalidate(Path source) {
+        Path key = source.toAbsolutePath().normalize();
+        loaded.remove(key);
+        try {
+            Files.deleteIfExists(indexFile(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete keyframe index for " + source, e);
+        }
+    }
+
+    Path indexFile(Path normalizedSource) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(normalizedSource.toString().getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(hash, 0, 16) + ".kfi");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static KeyframeIndex read(Path indexFile, SourceFingerprint fingerprint) {
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (buffer.getInt() != MAGIC
+                    || buffer.getLong() != fingerprint.getSize()
+                    || buffer.getLong() != fingerprint.getLastModifiedMillis()) {
+                return null;
+            }
+            int count = buffer.getInt();
+            if (count < 0 || fileSize != HEADER_BYTES + (long) count * Long.BYTES) {
+                return null;
+            }
+            long[] micros = new long[count];
+            buffer.asLongBuffer().get(micros);
+            return KeyframeIndex.ofSorted(micros);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void write(Path indexFile, SourceFingerprint fingerprint, KeyframeIndex index) {
+        long[] micros = index.rawMicros();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + micros.length * Long.BYTES);
+        buffer.putInt(MAGIC)
+                .putLong(fingerprint.getSize())
+                .putLong(fingerprint.getLastModifiedMillis())
+                .putInt(micros.length);
+        buffer.asLongBuffer().put(micros);
+        buffer.rewind();
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "kfi_", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            try {
+                Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write keyframe index " + indexFile, e);
+        }
+    }
+
+    private static final class Loaded {
+        private final SourceFingerprint fingerprint;
+        private final KeyframeIndex index;
+
+        private Loaded(SourceFingerprint fingerprint, KeyframeIndex index) {
+            this.fingerprint = fingerprint;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.aitrimmer.ffmpeg;
+
+import java.util.List;
+
+/**
+ * A slice of task log lines returned by a cursor-based read.
+ */
+public final class LogPage {
+    private final List<String> lines;
+    private final long firstSequence;
+    private final long nextSequence;
+    private final long missedLines;
+
+    LogPage(List<String> lines, long firstSequence, long nextSequence, long missedLines) {
+        this.lines = List.copyOf(lines);
+        this.firstSequence = firstSequence;
+        this.nextSequence = nextSequence;
+        this.missedLines = missedLines;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * Sequence number of the first returned line.
+     */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Cursor to pass as {@code fromSequence} on the next read.
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Number of requested lines that were already evicted from memory (and spilled to disk, if configured).
+     */
+    public long getMissedLines() {
+        return missedLines;
+    }
+}
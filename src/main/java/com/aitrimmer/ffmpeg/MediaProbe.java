@@ -0,0 +1,20 @@
+package com.aitrimmer.ffmpeg;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Inspects source media for the information needed to copy streams without re-encoding.
+ */
+public interface MediaProbe {
+    /**
+     * Returns the codec parameters of the primary video and audio streams of {@code source}.
+     */
+    MediaStreamInfo streamInfo(Path source);
+
+    /**
+     * Returns the timestamp of the last video keyframe at or before {@code timestamp}, if any.
+     */
+    Optional<Duration> keyframeAtOrBefore(Path source, Duration timestamp);
+}
@@ -0,0 +1,185 @@
+package com.aitrimmer.ffmpeg;
+
+import java.util.Objects;
+
+/**
+ * Describes the codec parameters of the primary video and audio streams of a source.
+ */
+public final class MediaStreamInfo {
+    private final String videoCodec;
+    private final String profile;
+    private final String timeBase;
+    private final int width;
+    private final int height;
+    private final String pixelFormat;
+    private final String frameRate;
+    private final String audioCodec;
+    private final int sampleRate;
+    private final int channels;
+
+    private MediaStreamInfo(Builder builder) {
+        this.videoCodec = builder.videoCodec;
+        this.profile = builder.profile;
+        this.timeBase = builder.timeBase;
+        this.width = builder.width;
+        this.height = builder.height;
+        this.pixelFormat = builder.pixelFormat;
+        this.frameRate = builder.frameRate;
+        this.audioCodec = builder.audioCodec;
+        this.sampleRate = builder.sampleRate;
+        this.channels = builder.channels;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    /**
+     * Profile of the video stream as ffprobe names it, such as {@code High}, or {@code null} when unknown.
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Time base of the video stream, such as {@code 1/90000}, or {@code null} when unknown.
+     */
+    public String getTimeBase() {
+        return timeBase;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getPixelFormat() {
+        return pixelFormat;
+    }
+
+    public String getFrameRate() {
+        return frameRate;
+    }
+
+    public String getAudioCodec() {
+        return audioCodec;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MediaStreamInfo)) {
+            return false;
+        }
+        MediaStreamInfo other = (MediaStreamInfo) o;
+        return width == other.width
+                && height == other.height
+                && sampleRate == other.sampleRate
+                && channels == other.channels
+                && Objects.equals(videoCodec, other.videoCodec)
+                && Objects.equals(profile, other.profile)
+                && Objects.equals(timeBase, other.timeBase)
+                && Objects.equals(pixelFormat, other.pixelFormat)
+                && Objects.equals(frameRate, other.frameRate)
+                && Objects.equals(audioCodec, other.audioCodec);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(videoCodec, profile, timeBase, width, height, pixelFormat, frameRate, audioCodec, sampleRate, channels);
+    }
+
+    @Override
+    public String toString() {
+        return videoCodec + (profile == null ? "" : " (" + profile + ")") + " " + width + "x" + height + " "
+                + pixelFormat + " @" + frameRate + (timeBase == null ? "" : " tb " + timeBase)
+                + ", " + audioCodec + " " + sampleRate + "Hz/" + channels + "ch";
+    }
+
+    public static final class Builder {
+        private String videoCodec;
+        private String profile;
+        private String timeBase;
+        private int width;
+        private int height;
+        private String pixelFormat;
+        private String frameRate;
+        private String audioCodec;
+        private int sampleRate;
+        private int channels;
+
+        private Builder() {
+        }
+
+        public Builder videoCodec(String videoCodec) {
+            this.videoCodec = videoCodec;
+            return this;
+        }
+
+        public Builder profile(String profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        public Builder timeBase(String timeBase) {
+            this.timeBase = timeBase;
+            return this;
+        }
+
+        public Builder width(int width) {
+            this.width = width;
+            return this;
+        }
+
+        public Builder height(int height) {
+            this.height = height;
+            return this;
+        }
+
+        public Builder pixelFormat(String pixelFormat) {
+            this.pixelFormat = pixelFormat;
+            return this;
+        }
+
+        public Builder frameRate(String frameRate) {
+            this.frameRate = frameRate;
+            return this;
+        }
+
+        public Builder audioCodec(String audioCodec) {
+            this.audioCodec = audioCodec;
+            return this;
+        }
+
+        public Builder sampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        public Builder channels(int channels) {
+            this.channels = channels;
+            return this;
+        }
+
+        public MediaStreamInfo build() {
+            return new MediaStreamInfo(this);
+        }
+    }
+}
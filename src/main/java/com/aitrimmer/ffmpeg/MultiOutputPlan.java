@@ -0,0 +1,45 @@
+package com.aitrimmer.ffmpeg;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A single FFmpeg invocation that decodes every source once and writes several outputs from split branches.
+ */
+final class MultiOutputPlan implements FfmpegCommandPlan {
+    private final List<String> args;
+    private final List<Path> outputs;
+    private final Duration outputDuration;
+    private final Map<String, String> tags;
+
+    MultiOutputPlan(List<String> args, List<Path> outputs, Duration outputDuration, Map<String, String> tags) {
+        this.args = List.copyOf(Objects.requireNonNull(args, "args"));
+        this.outputs = List.copyOf(outputs);
+        this.outputDuration = outputDuration;
+        this.tags = Map.copyOf(tags);
+    }
+
+    @Override
+    public List<String> command(Path scriptPath) {
+        return args;
+    }
+
+    @Override
+    public Optional<Duration> outputDuration() {
+        return Optional.ofNullable(outputDuration);
+    }
+
+    @Override
+    public Map<String, String> tags() {
+        return tags;
+    }
+
+    @Override
+    public List<Path> outputs() {
+        return outputs;
+    }
+}
@@ -0,0 +1,42 @@
+package com.aitrimmer.ffmpeg;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Represents a render that needs several FFmpeg invocations, grouped into stages that run in order. Plans
+ * within a stage are independent and may run concurrently.
+ */
+public interface MultiStagePlan {
+    /**
+     * Provides the stages in execution order.
+     */
+    List<List<FfmpegCommandPlan>> stages();
+
+    /**
+     * Lists the temporary files produced by earlier stages; they are removed once the render finishes or fails.
+     */
+    List<Path> intermediateFiles();
+
+    /**
+     * Maximum number of plans from one stage that may run at the same time.
+     */
+    default int parallelism() {
+        return 1;
+    }
+
+    /**
+     * Length of the final output timeline, when known.
+     */
+    default Optional<Duration> outputDuration() {
+        return Optional.empty();
+    }
+
+    /**
+     * Called on the executing thread after each plan of a stage exits, before the next stage starts.
+     */
+    default void planFinished(FfmpegCommandPlan plan, int exitCode) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.aitrimmer.ffmpeg;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * One output of a {@link FfmpegCommandBuilder#buildMultiOutput(List) multi-output} render: the segments it
+ * contains, where it is written, the compression overrides it is encoded with, and an optional video filter
+ * chain (for example {@code scale=-2:720} or {@code crop=ih*9/16:ih}) applied after the segments are joined.
+ */
+public final class OutputSpec {
+    private final List<VideoSegment> segments;
+    private final Path output;
+    private final CompressionOverrides overrides;
+    private final String videoFilter;
+
+    private OutputSpec(Builder builder) {
+        this.segments = List.copyOf(Objects.requireNonNull(builder.segments, "segments"));
+        this.output = Objects.requireNonNull(builder.output, "output");
+        this.overrides = builder.overrides;
+        this.videoFilter = builder.videoFilter == null || builder.videoFilter.isBlank() ? null : builder.videoFilter;
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("At least one segment is required");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<VideoSegment> getSegments() {
+        return segments;
+    }
+
+    public Path getOutput() {
+        return output;
+    }
+
+    public Optional<CompressionOverrides> getOverrides() {
+        return Optional.ofNullable(overrides);
+    }
+
+    public Optional<String> getVideoFilter() {
+        return Optional.ofNullable(videoFilter);
+    }
+
+    public static final class Builder {
+        private List<VideoSegment> segments;
+        private Path output;
+        private CompressionOverrides overrides;
+        private String videoFilter;
+
+        private Builder() {
+        }
+
+        public Builder segments(List<VideoSegment> segments) {
+            this.segments = segments;
+            return this;
+        }
+
+        public Builder output(Path output) {
+            this.output = output;
+            return this;
+        }
+
+        public Builder overrides(CompressionOverrides overrides) {
+            this.overrides = overrides;
+            return this;
+        }
+
+        public Builder videoFilter(String videoFilter) {
+            this.videoFilter = videoFilter;
+            return this;
+        }
+
+        public OutputSpec build() {
+            return new OutputSpec(this);
+        }
+    }
+}
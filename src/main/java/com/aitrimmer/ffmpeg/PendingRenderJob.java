@@ -0,0 +1,54 @@
+package com.aitrimmer.ffmpeg;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A job the {@link RenderJournal} found submitted but not finished when it was opened.
+ */
+public final class PendingRenderJob {
+    private final String key;
+    private final String payload;
+    private final Instant submittedAt;
+    private final boolean started;
+    private final Duration lastProgress;
+
+    PendingRenderJob(String key, String payload, Instant submittedAt, boolean started, Duration lastProgress) {
+        this.key = Objects.requireNonNull(key, "key");
+        this.payload = Objects.requireNonNull(payload, "payload");
+        this.submittedAt = Objects.requireNonNull(submittedAt, "submittedAt");
+        this.started = started;
+        this.lastProgress = lastProgress;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * The data recorded at submission, enough for the caller to rebuild and requeue the job.
+     */
+    public String getPayload() {
+        return payload;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    /**
+     * Whether the job was running when the journal was last written.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * The last output position recorded for the job.
+     */
+    public Optional<Duration> getLastProgress() {
+        return Optional.ofNullable(lastProgress);
+    }
+}
@@ -0,0 +1,50 @@
+package com.aitrimmer.ffmpeg;
+
+import java.util.Objects;
+
+/**
+ * Measurements of one sample encode made by {@link PresetTuner}.
+ */
+public final class PresetTrial {
+    private final String preset;
+    private final int crf;
+    private final double fps;
+    private final double speed;
+    private final long outputBytes;
+
+    public PresetTrial(String preset, int crf, double fps, double speed, long outputBytes) {
+        this.preset = Objects.requireNonNull(preset, "preset");
+        this.crf = crf;
+        this.fps = fps;
+        this.speed = speed;
+        this.outputBytes = outputBytes;
+    }
+
+    public String getPreset() {
+        return preset;
+    }
+
+    public int getCrf() {
+        return crf;
+    }
+
+    public double getFps() {
+        return fps;
+    }
+
+    /**
+     * Seconds of output encoded per second of wall time.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "preset=" + preset + " crf=" + crf + " fps=" + fps + " speed=" + speed + "x size=" + outputBytes;
+    }
+}
@@ -0,0 +1,240 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Picks the x264 preset and CRF a host can afford. Each candidate encodes a short sample of a source and its
+ * fps, speed factor and output size are recorded in a results file keyed by host, codec and source resolution,
+ * so later sources of the same resolution reuse the measurements. The chosen preset is the slowest (and so the
+ * most efficient) one whose speed still reaches the target.
+ */
+public final class PresetTuner {
+
+    private static final String STRATEGY = "preset_tuning";
+
+    private final FfmpegExecutor executor;
+    private final MediaProbe probe;
+    private final Path resultsFile;
+    private final String host;
+    private final String ffmpegCommand;
+    private final Object lock = new Object();
+
+    public PresetTuner(FfmpegExecutor executor, MediaProbe probe, Path resultsFile) {
+        this(executor, probe, resultsFile, localHostName(), "ffmpeg");
+    }
+
+    public PresetTuner(FfmpegExecutor executor, MediaProbe probe, Path resultsFile, String host, String ffmpegCommand) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.probe = Objects.requireNonNull(probe, "probe");
+        this.resultsFile = Objects.requireNonNull(resultsFile, "resultsFile").toAbsolutePath();
+        this.host = Objects.requireNonNull(host, "host");
+        this.ffmpegCommand = Objects.requireNonNull(ffmpegCommand, "ffmpegCommand");
+    }
+
+    /**
+     * Tunes {@code base} for {@code source} and returns a config whose default preset is {@code base} with the
+     * chosen preset and CRF.
+     */
+    public CompressionPresetConfig tune(Path source, CompressionPreset base, PresetTuningOptions options) {
+        PresetTrial chosen = select(measure(source, base, options), options);
+        return new CompressionPresetConfig(base.withOverrides(CompressionOverrides.builder()
+                .preset(chosen.getPreset())
+                .crf(chosen.getCrf())
+                .build()));
+    }
+
+    /**
+     * Returns a trial for every candidate preset and CRF. Stored results for this host and the source's
+     * resolution are reused; missing ones are measured and stored. Samples are encoded one at a time so they
+     * do not skew each other's speed.
+     */
+    public List<PresetTrial> measure(Path source, CompressionPreset base, PresetTuningOptions options) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(base, "base");
+        Objects.requireNonNull(options, "options");
+        MediaStreamInfo info = probe.streamInfo(source);
+        String prefix = host + "." + base.getVideoCodec() + "." + info.getWidth() + "x" + info.getHeight() + ".";
+        synchronized (lock) {
+            Properties results = load();
+            List<PresetTrial> trials = new ArrayList<>(options.getPresets().size() * options.getCrfs().size());
+            for (String preset : options.getPresets()) {
+                for (int crf : options.getCrfs()) {
+                    String key = prefix + preset + "." + crf;
+                    PresetTrial trial = parse(preset, crf, results.getProperty(key));
+                    if (trial == null) {
+                        trial = encodeSample(source, base, preset, crf, options);
+                        results.setProperty(key, trial.getSpeed() + "," + trial.getFps() + "," + trial.getOutputBytes());
+                        // Stored after every sample so an interrupted run keeps what it measured.
+                        store(results);
+                    }
+                    trials.add(trial);
+                }
+            }
+            return trials;
+        }
+    }
+
+    /**
+     * Returns the trial of the slowest candidate preset that reaches the target speed, preferring the lowest
+     * CRF among its trials, or the fastest trial when none does.
+     */
+    static PresetTrial select(List<PresetTrial> trials, PresetTuningOptions options) {
+        List<String> presets = options.getPresets();
+        PresetTrial best = null;
+        PresetTrial fastest = null;
+        for (PresetTrial trial : trials) {
+            if (fastest == null || trial.getSpeed() > fastest.getSpeed()) {
+                fastest = trial;
+            }
+            if (trial.getSpeed() < options.getTargetSpeed()) {
+                continue;
+            }
+            if (best == null) {
+                best = trial;
+                continue;
+            }
+            int rank = presets.indexOf(trial.getPreset());
+            int bestRank = presets.indexOf(best.getPreset());
+            if (rank > bestRank || (rank == bestRank && trial.getCrf() < best.getCrf())) {
+                best = trial;
+            }
+        }
+        if (fastest == null) {
+            throw new IllegalArgumentException("No trials to select from");
+        }
+        return best != null ? best : fastest;
+    }
+
+    private PresetTrial encodeSample(Path source, CompressionPreset base, String preset, int crf, PresetTuningOptions options) {
+        CompressionPreset candidate = base.withOverrides(CompressionOverrides.builder().preset(preset).crf(crf).build());
+        Path sample = resultsFile.resolveSibling("tune-" + UUID.randomUUID() + ".mp4");
+        List<String> args = new ArrayList<>();
+        args.add(ffmpegCommand);
+        args.add("-y");
+        args.add("-hide_banner");
+        args.add("-ss");
+        args.add(FfmpegCommandBuilder.appendDuration(new StringBuilder(16), options.getSampleStart()).toString());
+        args.add("-t");
+        args.add(FfmpegCommandBuilder.appendDuration(new StringBuilder(16), options.getSampleDuration()).toString());
+        args.add("-i");
+        args.add(source.toString());
+        args.addAll(candidate.toArgs());
+        args.add(sample.toString());
+        FfmpegCommandPlan plan = new FilterGraphPlan(args, options.getSampleDuration(), Map.of(
+                FfmpegCommandBuilder.STRATEGY_TAG, STRATEGY,
+                FfmpegCommandBuilder.PRESET_TAG, preset));
+
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "Tune " + preset + " crf " + crf);
+        AtomicReference<ProgressSnapshot> last = new AtomicReference<>();
+        task.addProgressListener(last::set);
+        try {
+            Files.createDirectories(sample.getParent());
+            long started = System.nanoTime();
+            int exitCode = executor.execute(plan, task, null, null);
+            double wallSeconds = Math.max(1e-9, (System.nanoTime() - started) / 1e9);
+            if (exitCode != 0) {
+                throw new FfmpegExecutionException("Tuning sample for preset " + preset + " crf " + crf
+                        + " failed with exit code " + exitCode);
+            }
+            ProgressSnapshot progress = last.get();
+            Duration encoded = progress != null && !progress.getOutTime().isZero()
+                    ? progress.getOutTime()
+                    : options.getSampleDuration();
+            double speed = progress != null && progress.getSpeed() > 0
+                    ? progress.getSpeed()
+                    : encoded.toNanos() / 1e9 / wallSeconds;
+            double fps = progress != null && progress.getFps() > 0
+                    ? progress.getFps()
+                    : progress != null ? progress.getFrame() / wallSeconds : 0d;
+            return new PresetTrial(preset, crf, fps, speed, Files.size(sample));
+        } catch (IOException e) {
+            throw new FfmpegExecutionException("Failed to encode tuning sample for preset " + preset, e);
+        } finally {
+            deleteQuietly(sample);
+        }
+    }
+
+    private static PresetTrial parse(String preset, int crf, String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] fields = value.split(",");
+        if (fields.length != 3) {
+            return null;
+        }
+        try {
+            return new PresetTrial(preset, crf, Double.parseDouble(fields[1]), Double.parseDouble(fields[0]),
+                    Long.parseLong(fields[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Properties load() {
+        Properties results = new Properties();
+        if (!Files.isRegularFile(resultsFile)) {
+            return results;
+        }
+        try (Reader reader = Files.newBufferedReader(resultsFile, StandardCharsets.UTF_8)) {
+            results.load(reader);
+        } catch (IOException | IllegalArgumentException e) {
+            // Damaged results are measured again.
+            results.clear();
+        }
+        return results;
+    }
+
+    private void store(Properties results) {
+        Path temporary = resultsFile.resolveSibling(resultsFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(resultsFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                results.store(writer, "Preset tuning results: <host>.<codec>.<resolution>.<preset>.<crf>=speed,fps,bytes");
+            }
+            try {
+                Files.move(temporary, resultsFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, resultsFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store preset tuning results " + resultsFile, e);
+        }
+    }
+
+    private static String localHostName() {
+        String fromEnvironment = System.getenv("HOSTNAME");
+        if (fromEnvironment != null && !fromEnvironment.isBlank()) {
+            return fromEnvironment;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "localhost";
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Best effort cleanup.
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.aitrimmer.ffmpeg;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Controls a {@link PresetTuner} run: the speed factor renders must reach, the slice of the source that is
+ * encoded, and the candidate presets (ordered fastest to slowest) and CRF values that are tried.
+ */
+public final class PresetTuningOptions {
+
+    /**
+     * The libx264/libx265 presets, fastest first.
+     */
+    public static final List<String> X264_PRESETS = List.of(
+            "ultrafast", "superfast", "veryfast", "faster", "fast", "medium", "slow", "slower", "veryslow");
+
+    private final double targetSpeed;
+    private final Duration sampleStart;
+    private final Duration sampleDuration;
+    private final List<String> presets;
+    private final List<Integer> crfs;
+
+    private PresetTuningOptions(Builder builder) {
+        this.targetSpeed = builder.targetSpeed;
+        this.sampleStart = Objects.requireNonNull(builder.sampleStart, "sampleStart");
+        this.sampleDuration = Objects.requireNonNull(builder.sampleDuration, "sampleDuration");
+        this.presets = List.copyOf(builder.presets);
+        this.crfs = List.copyOf(builder.crfs);
+        if (!(targetSpeed > 0)) {
+            throw new IllegalArgumentException("targetSpeed must be positive");
+        }
+        if (sampleStart.isNegative()) {
+            throw new IllegalArgumentException("sampleStart must not be negative");
+        }
+        if (sampleDuration.isNegative() || sampleDuration.isZero()) {
+            throw new IllegalArgumentException("sampleDuration must be positive");
+        }
+        if (presets.isEmpty() || crfs.isEmpty()) {
+            throw new IllegalArgumentException("At least one preset and one CRF value are required");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static PresetTuningOptions defaults() {
+        return builder().build();
+    }
+
+    public double getTargetSpeed() {
+        return targetSpeed;
+    }
+
+    public Duration getSampleStart() {
+        return sampleStart;
+    }
+
+    public Duration getSampleDuration() {
+        return sampleDuration;
+    }
+
+    public List<String> getPresets() {
+        return presets;
+    }
+
+    public List<Integer> getCrfs() {
+        return crfs;
+    }
+
+    public static final class Builder {
+        private double targetSpeed = 3.0;
+        private Duration sampleStart = Duration.ZERO;
+        private Duration sampleDuration = Duration.ofSeconds(10);
+        private List<String> presets = X264_PRESETS;
+        private List<Integer> crfs = List.of(23);
+
+        private Builder() {
+        }
+
+        /**
+         * Speed factor a render must reach, in seconds of output per second of wall time; 3 means three
+         * times realtime.
+         */
+        public Builder targetSpeed(double targetSpeed) {
+            this.targetSpeed = targetSpeed;
+            return this;
+        }
+
+        public Builder sampleStart(Duration sampleStart) {
+            this.sampleStart = sampleStart;
+            return this;
+        }
+
+        public Builder sampleDuration(Duration sampleDuration) {
+            this.sampleDuration = sampleDuration;
+            return this;
+        }
+
+        public Builder presets(List<String> presets) {
+            this.presets = Objects.requireNonNull(presets, "presets");
+            return this;
+        }
+
+        public Builder crfs(List<Integer> crfs) {
+            this.crfs = Objects.requireNonNull(crfs, "crfs");
+            return this;
+        }
+
+        public PresetTuningOptions build() {
+            return new PresetTuningOptions(this);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of clip previews. Each clip's thumbnails and sprite sheet live in a directory named
+ * after a key over the source fingerprint, the clip's timestamps and the preview options, so repeated requests
+ * are served from disk without decoding. Clips that miss are rendered together in one
+ * {@link FfmpegCommandBuilder#buildPreviews(List, List, PreviewOptions) preview plan}, and requests for a clip
+ * whose previews are already being rendered share that render.
+ */
+public final class PreviewCache {
+
+    private static final Pattern ENTRY_NAME = Pattern.compile("[0-9a-f]{64}");
+    private static final String KEY_VERSION = "previews-v1";
+
+    private final Path directory;
+    private final FfmpegCommandBuilder builder;
+    private final RenderCache.Renderer renderer;
+    private final Set<String> entries = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, CompletableFuture<ClipPreviews>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder joins = new LongAdder();
+
+    public PreviewCache(Path directory, FfmpegCommandBuilder builder, RenderCache.Renderer renderer) {
+        this.directory = Objects.requireNonNull(directory, "directory");
+        this.builder = Objects.requireNonNull(builder, "builder");
+        this.renderer = Objects.requireNonNull(renderer, "renderer");
+        loadExisting();
+    }
+
+    /**
+     * Returns the previews of every clip, in order. Cached clips complete immediately; the rest are rendered
+     * with one FFmpeg invocation run as {@code task}. Throws {@link UncheckedIOException} when a clip's source
+     * cannot be read.
+     */
+    public CompletableFuture<List<ClipPreviews>> previews(List<VideoSegment> clips, PreviewOptions options, ProcessingTask task) {
+        Objects.requireNonNull(clips, "clips");
+        Objects.requireNonNull(options, "options");
+        Objects.requireNonNull(task, "task");
+        // Fingerprinting fails for a missing source; do it before claiming any render so no claim is left behind.
+        List<String> keys = new ArrayList<>(clips.size());
+        for (VideoSegment clip : clips) {
+            keys.add(key(clip, options));
+        }
+        List<CompletableFuture<ClipPreviews>> results = new ArrayList<>(clips.size());
+        List<VideoSegment> missing = new ArrayList<>();
+        List<String> missingKeys = new ArrayList<>();
+        List<CompletableFuture<ClipPreviews>> created = new ArrayList<>();
+        for (int i = 0; i < clips.size(); i++) {
+            String key = keys.get(i);
+            ClipPreviews cached = ClipPreviews.in(directory.resolve(key), options);
+            if (isComplete(cached)) {
+                hits.increment();
+                results.add(CompletableFuture.completedFuture(cached));
+                continue;
+            }
+            CompletableFuture<ClipPreviews> claimed = new CompletableFuture<>();
+            CompletableFuture<ClipPreviews> running = inFlight.putIfAbsent(key, claimed);
+            if (running != null) {
+                joins.increment();
+                results.add(running);
+                continue;
+            }
+            if (isComplete(cached)) {
+                // Another render finished between the first check and claiming the key.
+                inFlight.remove(key, claimed);
+                hits.increment();
+                claimed.complete(cached);
+                results.add(claimed);
+                continue;
+            }
+            misses.increment();
+            missing.add(clips.get(i));
+            missingKeys.add(key);
+            created.add(claimed);
+            results.add(claimed);
+        }
+        if (!missing.isEmpty()) {
+            render(missing, missingKeys, created, options, task);
+        }
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> results.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Computes the cache key of the previews of {@code clip}.
+     */
+    public String key(VideoSegment clip, PreviewOptions options) {
+        MessageDigest digest = sha256();
+        update(digest, KEY_VERSION);
+        SourceFingerprint fingerprint = SourceFingerprint.of(clip.getSource());
+        update(digest, fingerprint.getPath().toString());
+        update(digest, Long.toString(fingerprint.getSize()));
+        update(digest, Long.toString(fingerprint.getLastModifiedMillis()));
+        update(digest, Long.toString(clip.getStart().map(Duration::toNanos).orElse(0L)));
+        update(digest, Long.toString(clip.getEnd().map(Duration::toNanos).orElse(-1L)));
+        update(digest, options.getThumbnails() + "," + options.getThumbnailWidth() + "," + options.getSpriteColumns()
+                + "x" + options.getSpriteRows() + "," + options.getTileWidth() + "," + options.getQuality());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Entries are never evicted, so the count equals the number of preview sets on disk.
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), 0, entries.size());
+    }
+
+    /**
+     * Number of clips that joined a render already in flight instead of starting their own.
+     */
+    public long getInFlightJoins() {
+        return joins.sum();
+    }
+
+    private void render(
+            List<VideoSegment> clips,
+            List<String> keys,
+            List<CompletableFuture<ClipPreviews>> created,
+            PreviewOptions options,
+            ProcessingTask task
+    ) {
+        List<Path> partials = new ArrayList<>(clips.size());
+        try {
+            for (String key : keys) {
+                Path partial = directory.resolve(key + ".partial-" + UUID.randomUUID());
+                partials.add(partial);
+                Files.createDirectories(partial);
+            }
+            FfmpegCommandPlan plan = builder.buildPreviews(clips, partials, options);
+            renderer.submit(plan, task).whenComplete((exitCode, error) -> {
+                for (int i = 0; i < keys.size(); i++) {
+                    String key = keys.get(i);
+                    Path partial = partials.get(i);
+                    try {
+                        if (error != null) {
+                            throw new FfmpegExecutionException("Preview render failed", error);
+                        }
+                        if (exitCode != 0) {
+                            throw new FfmpegExecutionException("Preview render failed with exit code " + exitCode);
+                        }
+                        if (!isComplete(ClipPreviews.in(partial, options))) {
+                            throw new FfmpegExecutionException("Preview render did not produce every frame of "
+                                    + clips.get(i).getSource());
+                        }
+                        Path target = directory.resolve(key);
+                        deleteRecursively(target);
+                        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+                        entries.add(key);
+                        created.get(i).complete(ClipPreviews.in(target, options));
+                    } catch (RuntimeException | IOException e) {
+                        deleteRecursively(partial);
+                        created.get(i).completeExceptionally(e);
+                    } finally {
+                        inFlight.remove(key, created.get(i));
+                    }
+                }
+            });
+        } catch (RuntimeException | IOException e) {
+            for (int i = 0; i < keys.size(); i++) {
+                if (i < partials.size()) {
+                    deleteRecursively(partials.get(i));
+                }
+                inFlight.remove(keys.get(i), created.get(i));
+                created.get(i).completeExceptionally(e);
+            }
+        }
+    }
+
+    private static boolean isComplete(ClipPreviews previews) {
+        for (Path file : previews.files()) {
+            if (!Files.isRegularFile(file)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void loadExisting() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (name.contains(".partial-")) {
+                    deleteRecursively(entry);
+                } else if (ENTRY_NAME.matcher(name).matches() && Files.isDirectory(entry)) {
+                    entries.add(name);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan preview cache " + directory, e);
+        }
+    }
+
+    private static void deleteRecursively(Path root) {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // Best effort cleanup.
+                }
+            });
+        } catch (IOException ignored) {
+            // Best effort cleanup.
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
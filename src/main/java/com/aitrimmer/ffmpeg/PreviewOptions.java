@@ -0,0 +1,112 @@
+package com.aitrimmer.ffmpeg;
+
+import java.util.List;
+
+/**
+ * Shape of the previews {@link FfmpegCommandBuilder#buildPreviews(List, List, PreviewOptions)} produces for
+ * each clip: a number of evenly spaced thumbnails and a scrubbing sprite sheet of smaller tiles.
+ */
+public final class PreviewOptions {
+    private final int thumbnails;
+    private final int thumbnailWidth;
+    private final int spriteColumns;
+    private final int spriteRows;
+    private final int tileWidth;
+    private final int quality;
+
+    private PreviewOptions(Builder builder) {
+        this.thumbnails = requirePositive(builder.thumbnails, "thumbnails");
+        this.thumbnailWidth = requirePositive(builder.thumbnailWidth, "thumbnailWidth");
+        this.spriteColumns = requirePositive(builder.spriteColumns, "spriteColumns");
+        this.spriteRows = requirePositive(builder.spriteRows, "spriteRows");
+        this.tileWidth = requirePositive(builder.tileWidth, "tileWidth");
+        this.quality = builder.quality;
+        if (quality < 2 || quality > 31) {
+            throw new IllegalArgumentException("quality must be between 2 and 31");
+        }
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1");
+        }
+        return value;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static PreviewOptions defaults() {
+        return builder().build();
+    }
+
+    public int getThumbnails() {
+        return thumbnails;
+    }
+
+    public int getThumbnailWidth() {
+        return thumbnailWidth;
+    }
+
+    public int getSpriteColumns() {
+        return spriteColumns;
+    }
+
+    public int getSpriteRows() {
+        return spriteRows;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    /**
+     * JPEG quality scale passed as {@code -q:v}; 2 is best, 31 worst.
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    public static final class Builder {
+        private int thumbnails = 6;
+        private int thumbnailWidth = 320;
+        private int spriteColumns = 10;
+        private int spriteRows = 10;
+        private int tileWidth = 160;
+        private int quality = 4;
+
+        private Builder() {
+        }
+
+        public Builder thumbnails(int thumbnails) {
+            this.thumbnails = thumbnails;
+            return this;
+        }
+
+        public Builder thumbnailWidth(int thumbnailWidth) {
+            this.thumbnailWidth = thumbnailWidth;
+            return this;
+        }
+
+        public Builder spriteGrid(int columns, int rows) {
+            this.spriteColumns = columns;
+            this.spriteRows = rows;
+            return this;
+        }
+
+        public Builder tileWidth(int tileWidth) {
+            this.tileWidth = tileWidth;
+            return this;
+        }
+
+        public Builder quality(int quality) {
+            this.quality = quality;
+            return this;
+        }
+
+        public PreviewOptions build() {
+            return new PreviewOptions(this);
+        }
+    }
+}
@@ -1,25 +1,49 @@
 package com.aitrimmer.ffmpeg;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Minimal representation of an FFmpeg processing task.
  */
 public final class ProcessingTask {
+    public static final int DEFAULT_LOG_CAPACITY = 10_000;
+
     private final UUID id;
     private final String description;
-    private final List<String> logs = new ArrayList<>();
+    private final TaskLog log;
     private TaskStatus status = TaskStatus.PENDING;
     private Instant startedAt;
     private Instant completedAt;
+    private volatile Duration expectedDuration;
+    private volatile ProgressSnapshot progress;
+    private volatile boolean cancelRequested;
+    private final List<Consumer<TaskStatus>> statusListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<ProgressSnapshot>> progressListeners = new CopyOnWriteArrayList<>();
+    private final Map<Path, TaskStatus> outputStatuses = new LinkedHashMap<>();
 
     public ProcessingTask(UUID id, String description) {
+        this(id, description, DEFAULT_LOG_CAPACITY, null);
+    }
+
+    /**
+     * Creates a task that keeps the last {@code logCapacity} log lines in memory and appends older lines to
+     * {@code logSpillFile} when it is not {@code null}.
+     */
+    public ProcessingTask(UUID id, String description, int logCapacity, Path logSpillFile) {
         this.id = Objects.requireNonNull(id, "id");
         this.description = Objects.requireNonNull(description, "description");
+        this.log = new TaskLog(logCapacity, logSpillFile);
     }
 
     public UUID getId() {
@@ -34,22 +58,155 @@ public final class ProcessingTask {
         return status;
     }
 
-    public synchronized void setStatus(TaskStatus status) {
-        this.status = Objects.requireNonNull(status, "status");
-        if (status == TaskStatus.RUNNING) {
-            this.startedAt = Instant.now();
+    public void setStatus(TaskStatus status) {
+        Objects.requireNonNull(status, "status");
+        synchronized (this) {
+            this.status = status;
+            if (status == TaskStatus.RUNNING) {
+                this.startedAt = Instant.now();
+            }
+            if (status.isTerminal()) {
+                this.completedAt = Instant.now();
+                log.flush();
+            }
         }
-        if (status == TaskStatus.SUCCEEDED || status == TaskStatus.FAILED) {
-            this.completedAt = Instant.now();
+        for (Consumer<TaskStatus> listener : statusListeners) {
+            listener.accept(status);
         }
     }
 
-    public synchronized void appendLog(String line) {
-        logs.add(line);
+    /**
+     * Registers a callback invoked, on the thread that changes it, after every status change.
+     */
+    public void addStatusListener(Consumer<TaskStatus> listener) {
+        statusListeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    /**
+     * Records the status of one output file of a plan that writes several.
+     */
+    public synchronized void setOutputStatus(Path output, TaskStatus status) {
+        outputStatuses.put(Objects.requireNonNull(output, "output"), Objects.requireNonNull(status, "status"));
+    }
+
+    /**
+     * Returns the status of every output reported so far, in the order they were first reported.
+     */
+    public synchronized Map<Path, TaskStatus> getOutputStatuses() {
+        return new LinkedHashMap<>(outputStatuses);
+    }
+
+    /**
+     * Whether the task was asked to stop before its next execution; see
+     * {@link FfmpegExecutor#cancel(ProcessingTask)}.
+     */
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    /**
+     * Clears the cancel request and returns whether there was one, so it stops only the execution that takes it.
+     */
+    boolean takeCancelRequest() {
+        boolean requested = cancelRequested;
+        cancelRequested = false;
+        return requested;
+    }
+
+    public void appendLog(String line) {
+        log.append(line);
     }
 
-    public synchronized List<String> getLogs() {
-        return List.copyOf(logs);
+    /**
+     * Returns the log lines still held in memory.
+     */
+    public List<String> getLogs() {
+        return log.retainedLines();
+    }
+
+    /**
+     * Returns up to {@code max} log lines starting at sequence {@code fromSequence}; pass the returned
+     * {@link LogPage#getNextSequence()} on the next call to receive only new lines.
+     */
+    public LogPage readLogs(long fromSequence, int max) {
+        return log.read(fromSequence, max);
+    }
+
+    public Optional<Path> getLogSpillFile() {
+        return log.getSpillFile();
+    }
+
+    public void setExpectedDuration(Duration expectedDuration) {
+        this.expectedDuration = expectedDuration;
+    }
+
+    /**
+     * Length of the output timeline being rendered, when known.
+     */
+    public Optional<Duration> getExpectedDuration() {
+        return Optional.ofNullable(expectedDuration);
+    }
+
+    public void updateProgress(ProgressSnapshot progress) {
+        this.progress = Objects.requireNonNull(progress, "progress");
+        for (Consumer<ProgressSnapshot> listener : progressListeners) {
+            listener.accept(progress);
+        }
+    }
+
+    /**
+     * Registers a callback invoked, on the thread reading FFmpeg's output, after every progress update. It runs
+     * inline with log streaming and must be cheap.
+     */
+    public void addProgressListener(Consumer<ProgressSnapshot> listener) {
+        progressListeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    public Optional<ProgressSnapshot> getProgress() {
+        return Optional.ofNullable(progress);
+    }
+
+    /**
+     * Fraction of the expected output already written, between 0 and 1.
+     */
+    public OptionalDouble getProgressFraction() {
+        ProgressSnapshot current = progress;
+        Duration expected = expectedDuration;
+        if (current == null || expected == null || expected.isZero()) {
+            return OptionalDouble.empty();
+        }
+        double fraction = (double) current.getOutTime().toNanos() / expected.toNanos();
+        return OptionalDouble.of(Math.min(1d, Math.max(0d, fraction)));
+    }
+
+    /**
+     * Estimates the wall-clock time left from the remaining output duration and the reported speed, falling
+     * back to the average rate since the task started when FFmpeg has not reported a speed yet.
+     */
+    public Optional<Duration> getEstimatedTimeRemaining() {
+        ProgressSnapshot current = progress;
+        Duration expected = expectedDuration;
+        if (current == null || expected == null) {
+            return Optional.empty();
+        }
+        if (current.isFinished()) {
+            return Optional.of(Duration.ZERO);
+        }
+        long remainingNanos = Math.max(0L, expected.toNanos() - current.getOutTime().toNanos());
+        if (current.getSpeed() > 0d) {
+            return Optional.of(Duration.ofNanos((long) (remainingNanos / current.getSpeed())));
+        }
+        Instant started = getStartedAt();
+        long doneNanos = current.getOutTime().toNanos();
+        if (started == null || doneNanos == 0L) {
+            return Optional.empty();
+        }
+        long elapsedNanos = Duration.between(started, Instant.now()).toNanos();
+        return Optional.of(Duration.ofNanos((long) ((double) elapsedNanos * remainingNanos / doneNanos)));
     }
 
     public synchronized Instant getStartedAt() {
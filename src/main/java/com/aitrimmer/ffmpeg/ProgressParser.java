@@ -0,0 +1,128 @@
+package com.aitrimmer.ffmpeg;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Incrementally parses the {@code key=value} blocks FFmpeg writes with {@code -progress}. Values are read in
+ * place from each line, so only one {@link ProgressSnapshot} is allocated per block.
+ */
+final class ProgressParser {
+    private final Consumer<ProgressSnapshot> listener;
+    private long outTimeMicros;
+    private long frame;
+    private double fps;
+    private double speed;
+    private long totalSize;
+
+    ProgressParser(Consumer<ProgressSnapshot> listener) {
+        this.listener = Objects.requireNonNull(listener, "listener");
+    }
+
+    /**
+     * Consumes {@code line} if it belongs to a progress block and returns whether it did.
+     */
+    boolean accept(String line) {
+        int separator = line.indexOf('=');
+        if (separator <= 0 || line.lastIndexOf(' ', separator) >= 0) {
+            return false;
+        }
+        int valueStart = skipSpaces(line, separator + 1);
+        if (isKey(line, separator, "frame")) {
+            frame = parseLong(line, valueStart, frame);
+        } else if (isKey(line, separator, "fps")) {
+            fps = parseDouble(line, valueStart, fps);
+        } else if (isKey(line, separator, "out_time_us") || isKey(line, separator, "out_time_ms")) {
+            // Despite its name, out_time_ms is also reported in microseconds.
+            outTimeMicros = Math.max(0L, parseLong(line, valueStart, outTimeMicros));
+        } else if (isKey(line, separator, "total_size")) {
+            totalSize = parseLong(line, valueStart, totalSize);
+        } else if (isKey(line, separator, "speed")) {
+            // FFmpeg reports N/A until it can measure a speed, or after it loses track; neither is the old value.
+            speed = parseDouble(line, valueStart, 0d);
+        } else if (isKey(line, separator, "progress")) {
+            boolean finished = line.startsWith("end", valueStart);
+            listener.accept(new ProgressSnapshot(
+                    Duration.ofNanos(outTimeMicros * 1_000L), frame, fps, speed, totalSize, finished));
+        } else if (!isKey(line, separator, "bitrate")
+                && !isKey(line, separator, "out_time")
+                && !isKey(line, separator, "dup_frames")
+                && !isKey(line, separator, "drop_frames")
+                && !line.startsWith("stream_")) {
+            return false;
+        }
+        return true;
+    }
+
+    long getOutTimeMicros() {
+        return outTimeMicros;
+    }
+
+    double getSpeed() {
+        return speed;
+    }
+
+    private static int skipSpaces(String line, int from) {
+        int index = from;
+        while (index < line.length() && line.charAt(index) == ' ') {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isKey(String line, int separator, String key) {
+        return separator == key.length() && line.startsWith(key);
+    }
+
+    static long parseLong(String text, int from, long fallback) {
+        long value = 0L;
+        boolean negative = false;
+        boolean digits = false;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '-' && i == from) {
+                negative = true;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10L + (c - '0');
+                digits = true;
+            } else {
+                break;
+            }
+        }
+        if (!digits) {
+            return fallback;
+        }
+        return negative ? -value : value;
+    }
+
+    static double parseDouble(String text, int from, double fallback) {
+        long integer = 0L;
+        long fraction = 0L;
+        long scale = 1L;
+        boolean digits = false;
+        boolean inFraction = false;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (inFraction) {
+                    if (scale < 1_000_000_000L) {
+                        fraction = fraction * 10L + (c - '0');
+                        scale *= 10L;
+                    }
+                } else {
+                    integer = integer * 10L + (c - '0');
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!digits) {
+            return fallback;
+        }
+        return integer + (double) fraction / scale;
+    }
+}
@@ -0,0 +1,101 @@
+package com.aitrimmer.ffmpeg;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * One block of FFmpeg {@code -progress} output: position in the output timeline, frame count, throughput and
+ * bytes written so far.
+ */
+public final class ProgressSnapshot {
+    private final Duration outTime;
+    private final long frame;
+    private final double fps;
+    private final double speed;
+    private final long totalSize;
+    private final boolean finished;
+
+    public ProgressSnapshot(Duration outTime, long frame, double fps, double speed, long totalSize, boolean finished) {
+        this.outTime = Objects.requireNonNull(outTime, "outTime");
+        this.frame = frame;
+        this.fps = fps;
+        this.speed = speed;
+        this.totalSize = totalSize;
+        this.finished = finished;
+    }
+
+    /**
+     * Combines snapshots of plans running side by side on disjoint parts of one output timeline.
+     */
+    static ProgressSnapshot sum(ProgressSnapshot[] parts) {
+        long outTimeNanos = 0L;
+        long frame = 0L;
+        double fps = 0d;
+        double speed = 0d;
+        long totalSize = 0L;
+        boolean finished = true;
+        for (ProgressSnapshot part : parts) {
+            if (part == null) {
+                finished = false;
+                continue;
+            }
+            outTimeNanos += part.outTime.toNanos();
+            frame += part.frame;
+            totalSize += part.totalSize;
+            finished &= part.finished;
+            if (!part.finished) {
+                fps += part.fps;
+                speed += part.speed;
+            }
+        }
+        return new ProgressSnapshot(Duration.ofNanos(outTimeNanos), frame, fps, speed, totalSize, finished);
+    }
+
+    /**
+     * Places this progress of stage {@code stage} out of {@code stages}, each rendering the whole
+     * {@code timeline}, on one timeline that covers the stages in turn, so progress keeps rising when a later
+     * stage starts over from zero. Speed is scaled to match, which assumes later stages run as fast.
+     */
+    ProgressSnapshot inStage(int stage, int stages, Duration timeline) {
+        if (stages <= 1 || timeline == null) {
+            return this;
+        }
+        long timelineNanos = timeline.toNanos();
+        long nanos = (stage * timelineNanos + Math.min(outTime.toNanos(), timelineNanos)) / stages;
+        return new ProgressSnapshot(Duration.ofNanos(nanos), frame, fps, speed / stages, totalSize,
+                finished && stage == stages - 1);
+    }
+
+    public Duration getOutTime() {
+        return outTime;
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    public double getFps() {
+        return fps;
+    }
+
+    /**
+     * Encoding speed as a multiple of realtime, or {@code 0} when FFmpeg has not reported one yet.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return "out_time=" + outTime + " frame=" + frame + " fps=" + fps + " speed=" + speed + "x"
+                + " total_size=" + totalSize + (finished ? " (end)" : "");
+    }
+}
@@ -0,0 +1,295 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed cache of rendered outputs. The key covers the normalized segment list, the fingerprint
+ * of every source file, the strategy and the resolved compression arguments, so identical requests reuse one
+ * output. Concurrent identical requests share a single render, and the directory is kept under a byte budget
+ * by evicting the least recently used outputs.
+ */
+public final class RenderCache {
+
+    /**
+     * Starts a render of {@code plan}, typically by submitting it to a {@link FfmpegJobScheduler}.
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        CompletableFuture<Integer> submit(FfmpegCommandPlan plan, ProcessingTask task);
+    }
+
+    private static final Pattern ENTRY_NAME = Pattern.compile("[0-9a-f]{64}(\\.[A-Za-z0-9]+)?");
+
+    private final Path directory;
+    private final long maxBytes;
+    private final FfmpegCommandBuilder builder;
+    private final Renderer renderer;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder joins = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long sizeBytes;
+
+    public RenderCache(Path directory, long maxBytes, FfmpegCommandBuilder builder, Renderer renderer) {
+        this.directory = Objects.requireNonNull(directory, "directory");
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.builder = Objects.requireNonNull(builder, "builder");
+        this.renderer = Objects.requireNonNull(renderer, "renderer");
+        loadExisting();
+    }
+
+    /**
+     * Returns the cached output for the request, joins an identical render already in flight, or renders it.
+     * {@code extension} (for example {@code ".mp4"}) selects the output container. Callers that join an
+     * in-flight render receive its result; their own {@code task} is not run.
+     */
+    public CompletableFuture<Path> render(
+            List<VideoSegment> segments,
+            CompressionOverrides overrides,
+            FfmpegCommandBuilder.Strategy strategy,
+            String extension,
+            ProcessingTask task
+    ) {
+        Objects.requireNonNull(segments, "segments");
+        Objects.requireNonNull(strategy, "strategy");
+        Objects.requireNonNull(extension, "extension");
+        Objects.requireNonNull(task, "task");
+        String key = key(segments, overrides, strategy);
+        String name = key + extension;
+        Path target = directory.resolve(name);
+        if (lookup(name, target)) {
+            hits.increment();
+            return CompletableFuture.completedFuture(target);
+        }
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(name, created);
+        if (running != null) {
+            joins.increment();
+            return running.thenApply(path -> path);
+        }
+        if (lookup(name, target)) {
+            // Another render finished between the first lookup and claiming the key.
+            inFlight.remove(name, created);
+            hits.increment();
+            created.complete(target);
+            return created;
+        }
+        misses.increment();
+        try {
+            Files.createDirectories(directory);
+            Path partial = directory.resolve(key + ".partial-" + UUID.randomUUID() + extension);
+            FfmpegCommandPlan plan = builder.build(segments, partial, overrides, strategy);
+            renderer.submit(plan, task).whenComplete((exitCode, error) -> {
+                try {
+                    if (error != null) {
+                        throw new FfmpegExecutionException("Render failed", error);
+                    }
+                    if (exitCode != 0) {
+                        throw new FfmpegExecutionException("Render failed with exit code " + exitCode);
+                    }
+                    move(partial, target);
+                    store(name, target);
+                    created.complete(target);
+                } catch (RuntimeException | IOException e) {
+                    deleteQuietly(partial);
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(name, created);
+                }
+            });
+        } catch (RuntimeException | IOException e) {
+            inFlight.remove(name, created);
+            created.completeExceptionally(e);
+        }
+        return created.thenApply(path -> path);
+    }
+
+    /**
+     * Computes the cache key of a render request. Filter renders are keyed by the
+     * {@link SegmentOptimizer#optimize(List) optimized} segments the builder renders, so requests that differ
+     * only in split or overlapping neighbours share one output; the other strategies render segments as given.
+     */
+    public String key(List<VideoSegment> segments, CompressionOverrides overrides, FfmpegCommandBuilder.Strategy strategy) {
+        MessageDigest digest = sha256();
+        update(digest, strategy.name());
+        List<VideoSegment> rendered = strategy == FfmpegCommandBuilder.Strategy.FILTER_COMPLEX
+                ? SegmentOptimizer.optimize(segments)
+                : segments;
+        for (VideoSegment segment : rendered) {
+            SourceFingerprint fingerprint = SourceFingerprint.of(segment.getSource());
+            update(digest, fingerprint.getPath().toString());
+            update(digest, Long.toString(fingerprint.getSize()));
+            update(digest, Long.toString(fingerprint.getLastModifiedMillis()));
+            update(digest, Long.toString(segment.getStart().filter(start -> !start.isZero()).map(Duration::toNanos).orElse(-1L)));
+            update(digest, Long.toString(segment.getEnd().map(Duration::toNanos).orElse(-1L)));
+        }
+        if (strategy != FfmpegCommandBuilder.Strategy.STREAM_COPY) {
+            for (String arg : builder.getPresetConfig().resolve(overrides).toArgs()) {
+                update(digest, arg);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public CacheStats getStats() {
+        synchronized (entries) {
+            return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+        }
+    }
+
+    /**
+     * Number of requests that joined a render already in flight instead of starting their own.
+     */
+    public long getInFlightJoins() {
+        return joins.sum();
+    }
+
+    public long getSizeBytes() {
+        synchronized (entries) {
+            return sizeBytes;
+        }
+    }
+
+    private boolean lookup(String name, Path target) {
+        synchronized (entries) {
+            Entry entry = entries.get(name);
+            if (entry == null) {
+                return false;
+            }
+            if (!Files.isRegularFile(target)) {
+                entries.remove(name);
+                sizeBytes -= entry.size;
+                return false;
+            }
+        }
+        try {
+            // Persist recency so the LRU order survives restarts.
+            Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Recency is advisory.
+        }
+        return true;
+    }
+
+    private void store(String name, Path target) throws IOException {
+        long size = Files.size(target);
+        List<Path> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Entry previous = entries.put(name, new Entry(target, size));
+            if (previous != null) {
+                sizeBytes -= previous.size;
+            }
+            sizeBytes += size;
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (sizeBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Entry> candidate = eldest.next();
+                if (candidate.getKey().equals(name)) {
+                    continue;
+                }
+                eldest.remove();
+                sizeBytes -= candidate.getValue().size;
+                evicted.add(candidate.getValue().path);
+                evictions.increment();
+            }
+        }
+        evicted.forEach(RenderCache::deleteQuietly);
+    }
+
+    private void loadExisting() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.contains(".partial-")) {
+                    deleteQuietly(file);
+                } else if (ENTRY_NAME.matcher(name).matches() && Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+            files.sort((a, b) -> Long.compare(lastModified(a), lastModified(b)));
+            for (Path file : files) {
+                store(file.getFileName().toString(), file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan render cache " + directory, e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Best effort cleanup.
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static final class Entry {
+        private final Path path;
+        private final long size;
+
+        private Entry(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
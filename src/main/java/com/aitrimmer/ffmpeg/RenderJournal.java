@@ -0,0 +1,541 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of render job lifecycle events (submitted, started, progress, finished), so
+ * queued and running jobs survive a restart. Appends are group-committed: a single writer thread drains every
+ * entry queued while the previous fsync was in flight and makes them durable with one write and one fsync, so
+ * the cost per entry falls as load rises. Each entry carries a CRC32; replay stops at the first torn or
+ * damaged entry and truncates it away. Once the file holds many more entries than there are unfinished jobs it
+ * is compacted to one snapshot per unfinished job and atomically swapped in, keeping replay fast. A failed
+ * write is rolled back so later entries never follow a partial one; if even that fails the journal stops and
+ * fails every later append rather than acknowledging entries replay would drop.
+ */
+public final class RenderJournal implements AutoCloseable {
+
+    public static final int DEFAULT_COMPACT_AFTER_RECORDS = 10_000;
+
+    private static final int MAX_BATCH_RECORDS = 1_024;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final byte SUBMITTED = 1;
+    private static final byte STARTED = 2;
+    private static final byte PROGRESS = 3;
+    private static final byte FINISHED = 4;
+
+    private final Path file;
+    private final int compactAfterRecords;
+    private final ChannelOpener opener;
+    private final List<PendingRenderJob> recovered;
+    private final Map<String, JobState> live = new LinkedHashMap<>();
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private FileChannel channel;
+    private long recordsInFile;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    public RenderJournal(Path file) {
+        this(file, DEFAULT_COMPACT_AFTER_RECORDS);
+    }
+
+    /**
+     * Opens (or creates) the journal at {@code file} and replays it. The file is compacted once it holds more
+     * than {@code compactAfterRecords} records and at least four times as many records as unfinished jobs.
+     */
+    public RenderJournal(Path file, int compactAfterRecords) {
+        this(file, compactAfterRecords,
+                path -> FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    RenderJournal(Path file, int compactAfterRecords, ChannelOpener opener) {
+        this.file = Objects.requireNonNull(file, "file");
+        this.opener = Objects.requireNonNull(opener, "opener");
+        if (compactAfterRecords < 1) {
+            throw new IllegalArgumentException("compactAfterRecords must be at least 1");
+        }
+        this.compactAfterRecords = compactAfterRecords;
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = opener.open(file);
+            replay();
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException("Failed to open render journal " + file, e);
+        }
+        List<PendingRenderJob> pending = new ArrayList<>(live.size());
+        for (JobState state : live.values()) {
+            pending.add(state.toPendingJob());
+        }
+        this.recovered = List.copyOf(pending);
+        this.writer = new Thread(this::writeLoop, "render-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Jobs that were submitted but had not finished when the journal was opened, in submission order. They
+     * stay pending in the journal until {@link #finished} is recorded for them.
+     */
+    public List<PendingRenderJob> recoveredJobs() {
+        return recovered;
+    }
+
+    /**
+     * Records a new job with the data needed to requeue it. The returned future completes once the entry is
+     * durable.
+     */
+    public CompletableFuture<Void> submitted(String key, String payload) {
+        Objects.requireNonNull(payload, "payload");
+        return append(new Entry(SUBMITTED, key, System.currentTimeMillis(), payload, 0L));
+    }
+
+    public CompletableFuture<Void> started(String key) {
+        return append(new Entry(STARTED, key, System.currentTimeMillis(), null, 0L));
+    }
+
+    public CompletableFuture<Void> progress(String key, Duration outTime) {
+        Objects.requireNonNull(outTime, "outTime");
+        return append(new Entry(PROGRESS, key, System.currentTimeMillis(), null, outTime.toNanos() / 1_000L));
+    }
+
+    public CompletableFuture<Void> finished(String key, TaskStatus status) {
+        Objects.requireNonNull(status, "status");
+        return append(new Entry(FINISHED, key, System.currentTimeMillis(), status.name(), 0L));
+    }
+
+    /**
+     * Number of fsyncs performed; compare with {@link #getAppendedRecords()} to see how well appends batch.
+     */
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public long getAppendedRecords() {
+        return appended.get();
+    }
+
+    public long getCompactions() {
+        return compactions.get();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Commits every entry appended so far and closes the file. Later appends fail.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(Entry.POISON);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly();
+    }
+
+    private CompletableFuture<Void> append(Entry entry) {
+        Objects.requireNonNull(entry.key, "key");
+        if (closed) {
+            return CompletableFuture.failedFuture(closedException());
+        }
+        queue.add(entry);
+        if (closed && queue.remove(entry)) {
+            // Raced with close() or a fatal write error: the writer may already be gone.
+            entry.future.completeExceptionally(closedException());
+        }
+        return entry.future;
+    }
+
+    private IllegalStateException closedException() {
+        Throwable cause = failure;
+        return cause == null
+                ? new IllegalStateException("Render journal is closed")
+                : new IllegalStateException("Render journal stopped after a write failure", cause);
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH_RECORDS);
+        boolean running = true;
+        while (running && failure == null) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH_RECORDS - 1);
+            int poison = batch.indexOf(Entry.POISON);
+            if (poison >= 0) {
+                running = false;
+                batch.subList(poison, batch.size()).clear();
+                queue.drainTo(batch);
+                batch.remove(Entry.POISON);
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    commit(batch);
+                } catch (RuntimeException e) {
+                    stop(batch, e);
+                }
+            }
+        }
+    }
+
+    private void commit(List<Entry> batch) {
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(batch.size() * 64);
+            for (Entry entry : batch) {
+                writeEntry(buffer, entry);
+            }
+            bytes = buffer.toByteArray();
+        } catch (IOException e) {
+            fail(batch, e);
+            return;
+        }
+        long start;
+        try {
+            start = channel.position();
+        } catch (IOException e) {
+            stop(batch, e);
+            return;
+        }
+        try {
+            writeFully(channel, ByteBuffer.wrap(bytes));
+            channel.force(false);
+        } catch (IOException e) {
+            fail(batch, e);
+            // Drop the partial batch so later entries do not land behind bytes replay stops at.
+            try {
+                channel.truncate(start);
+                channel.position(start);
+                channel.force(false);
+            } catch (IOException rollback) {
+                rollback.addSuppressed(e);
+                stop(List.of(), rollback);
+            }
+            return;
+        }
+        commits.incrementAndGet();
+        appended.addAndGet(batch.size());
+        recordsInFile += batch.size();
+        for (Entry entry : batch) {
+            apply(entry);
+            entry.future.complete(null);
+        }
+        if (recordsInFile > compactAfterRecords && recordsInFile >= 4L * live.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the journal as one snapshot per unfinished job. A failed compaction leaves the old file in use.
+     */
+    private void compact() {
+        Path temporary = file.resolveSibling(file.getFileName() + ".compact");
+        long written = 0L;
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(live.size() * 128);
+            for (JobState state : live.values()) {
+                writeEntry(bytes, new Entry(SUBMITTED, state.key, state.submittedAt.toEpochMilli(), state.payload, 0L));
+                written++;
+                if (state.started) {
+                    writeEntry(bytes, new Entry(STARTED, state.key, state.submittedAt.toEpochMilli(), null, 0L));
+                    written++;
+                }
+                if (state.progressMicros >= 0L) {
+                    writeEntry(bytes, new Entry(PROGRESS, state.key, state.submittedAt.toEpochMilli(), null,
+                            state.progressMicros));
+                    written++;
+                }
+            }
+            writeFully(out, ByteBuffer.wrap(bytes.toByteArray()));
+            out.force(true);
+        } catch (IOException e) {
+            deleteQuietly(temporary);
+            return;
+        }
+        try {
+            channel.close();
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(file.toAbsolutePath().getParent());
+            recordsInFile = written;
+            compactions.incrementAndGet();
+        } catch (IOException e) {
+            deleteQuietly(temporary);
+        } finally {
+            try {
+                channel = opener.open(file);
+                channel.position(channel.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to reopen render journal " + file, e);
+            }
+        }
+    }
+
+    private static void fail(List<Entry> batch, Throwable cause) {
+        for (Entry entry : batch) {
+            entry.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Stops the journal for good after an unrecoverable error: fails {@code batch}, everything still queued and
+     * every later append.
+     */
+    private void stop(List<Entry> batch, Throwable cause) {
+        failure = cause;
+        closed = true;
+        fail(batch, cause);
+        List<Entry> queued = new ArrayList<>();
+        queue.drainTo(queued);
+        queued.remove(Entry.POISON);
+        fail(queued, closedException());
+        closeQuietly();
+    }
+
+    private void replay() throws IOException {
+        long valid = 0L;
+        InputStream input = Channels.newInputStream(channel);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        CRC32 crc = new CRC32();
+        while (true) {
+            int length;
+            int checksum;
+            byte[] body;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                body = in.readNBytes(length);
+                if (body.length != length) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            Entry entry;
+            try {
+                entry = readEntry(body);
+            } catch (IOException | IllegalArgumentException e) {
+                break;
+            }
+            apply(entry);
+            recordsInFile++;
+            valid += HEADER_BYTES + length;
+        }
+        // Drop a torn tail left by a crash mid-write so new records follow the last good one.
+        if (channel.size() > valid) {
+            channel.truncate(valid);
+            channel.force(false);
+        }
+        channel.position(valid);
+    }
+
+    private void apply(Entry entry) {
+        switch (entry.type) {
+            case SUBMITTED -> live.put(entry.key, new JobState(entry.key, entry.text, Instant.ofEpochMilli(entry.timestamp)));
+            case STARTED -> {
+                JobState state = live.get(entry.key);
+                if (state != null) {
+                    state.started = true;
+                }
+            }
+            case PROGRESS -> {
+                JobState state = live.get(entry.key);
+                if (state != null) {
+                    state.progressMicros = entry.number;
+                }
+            }
+            case FINISHED -> live.remove(entry.key);
+            default -> throw new IllegalArgumentException("Unknown journal entry type " + entry.type);
+        }
+    }
+
+    private static void writeEntry(ByteArrayOutputStream target, Entry entry) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(entry.type);
+        writeString(out, entry.key);
+        out.writeLong(entry.timestamp);
+        switch (entry.type) {
+            case SUBMITTED, FINISHED -> writeString(out, entry.text);
+            case PROGRESS -> out.writeLong(entry.number);
+            default -> {
+            }
+        }
+        out.flush();
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        DataOutputStream header = new DataOutputStream(target);
+        header.writeInt(bytes.length);
+        header.writeInt((int) crc.getValue());
+        header.write(bytes);
+        header.flush();
+    }
+
+    private static Entry readEntry(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        String key = readString(in);
+        long timestamp = in.readLong();
+        String text = null;
+        long number = 0L;
+        switch (type) {
+            case SUBMITTED, FINISHED -> text = readString(in);
+            case PROGRESS -> number = in.readLong();
+            case STARTED -> {
+            }
+            default -> throw new IllegalArgumentException("Unknown journal entry type " + type);
+        }
+        return new Entry(type, key, timestamp, text, number);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_BYTES) {
+            throw new IOException("Invalid string length " + length);
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // Not every platform can fsync a directory; the rename is still atomic.
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Best effort cleanup.
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException ignored) {
+            // Nothing left to flush.
+        }
+    }
+
+    @FunctionalInterface
+    interface ChannelOpener {
+        FileChannel open(Path file) throws IOException;
+    }
+
+    private static final class Entry {
+        static final Entry POISON = new Entry((byte) 0, "", 0L, null, 0L);
+
+        private final byte type;
+        private final String key;
+        private final long timestamp;
+        private final String text;
+        private final long number;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Entry(byte type, String key, long timestamp, String text, long number) {
+            this.type = type;
+            this.key = key;
+            this.timestamp = timestamp;
+            this.text = text;
+            this.number = number;
+        }
+    }
+
+    private static final class JobState {
+        private final String key;
+        private final String payload;
+        private final Instant submittedAt;
+        private boolean started;
+        private long progressMicros = -1L;
+
+        private JobState(String key, String payload, Instant submittedAt) {
+            this.key = key;
+            this.payload = payload;
+            this.submittedAt = submittedAt;
+        }
+
+        PendingRenderJob toPendingJob() {
+            Duration progress = progressMicros >= 0L ? Duration.ofNanos(progressMicros * 1_000L) : null;
+            return new PendingRenderJob(key, payload, submittedAt, started, progress);
+        }
+    }
+}
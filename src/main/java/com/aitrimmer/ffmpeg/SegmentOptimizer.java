@@ -0,0 +1,100 @@
+package com.aitrimmer.ffmpeg;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Normalizes segment lists before they are turned into FFmpeg commands.
+ */
+public final class SegmentOptimizer {
+
+    /**
+     * Segments shorter than this are dropped; they cannot hold a single frame at any common frame rate.
+     */
+    public static final Duration DEFAULT_MIN_DURATION = Duration.ofMillis(1);
+
+    private SegmentOptimizer() {
+    }
+
+    /**
+     * Drops degenerate segments and merges each segment into the previous one when both come from the same
+     * source and it starts inside, or exactly at the end of, the previous range. The output order is kept, so
+     * the rendered timeline only loses the repeated footage of overlapping neighbours.
+     */
+    public static List<VideoSegment> optimize(List<VideoSegment> segments) {
+        return optimize(segments, DEFAULT_MIN_DURATION);
+    }
+
+    public static List<VideoSegment> optimize(List<VideoSegment> segments, Duration minDuration) {
+        Objects.requireNonNull(segments, "segments");
+        Objects.requireNonNull(minDuration, "minDuration");
+        List<VideoSegment> result = new ArrayList<>(segments.size());
+        for (VideoSegment segment : segments) {
+            if (segment.getDuration().filter(duration -> duration.compareTo(minDuration) < 0).isPresent()) {
+                continue;
+            }
+            int last = result.size() - 1;
+            if (last >= 0 && continues(result.get(last), segment)) {
+                result.set(last, merge(result.get(last), segment));
+            } else {
+                result.add(segment);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Groups segments by source (in order of first appearance) and sorts each group by start time before
+     * {@link #optimize(List) optimizing}, so every overlapping range of a source collapses into one. This
+     * reorders the output timeline and suits callers that treat segments as a set of ranges to keep.
+     */
+    public static List<VideoSegment> sortAndOptimize(List<VideoSegment> segments) {
+        Objects.requireNonNull(segments, "segments");
+        Map<Path, Integer> sourceOrder = new HashMap<>();
+        for (VideoSegment segment : segments) {
+            sourceOrder.putIfAbsent(segment.getSource(), sourceOrder.size());
+        }
+        List<VideoSegment> sorted = new ArrayList<>(segments);
+        sorted.sort(Comparator.<VideoSegment>comparingInt(segment -> sourceOrder.get(segment.getSource()))
+                .thenComparing(SegmentOptimizer::startOf));
+        return optimize(sorted);
+    }
+
+    private static boolean continues(VideoSegment previous, VideoSegment next) {
+        if (!previous.getSource().equals(next.getSource())) {
+            return false;
+        }
+        Duration nextStart = startOf(next);
+        if (nextStart.compareTo(startOf(previous)) < 0) {
+            return false;
+        }
+        return previous.getEnd().map(end -> nextStart.compareTo(end) <= 0).orElse(true);
+    }
+
+    private static VideoSegment merge(VideoSegment previous, VideoSegment next) {
+        Duration end = null;
+        if (previous.getEnd().isPresent() && next.getEnd().isPresent()) {
+            Duration previousEnd = previous.getEnd().get();
+            Duration nextEnd = next.getEnd().get();
+            end = nextEnd.compareTo(previousEnd) > 0 ? nextEnd : previousEnd;
+        }
+        if (end != null && end.equals(previous.getEnd().orElse(null))) {
+            return previous;
+        }
+        return VideoSegment.builder()
+                .source(previous.getSource())
+                .start(previous.getStart().orElse(null))
+                .end(end)
+                .build();
+    }
+
+    private static Duration startOf(VideoSegment segment) {
+        return segment.getStart().orElse(Duration.ZERO);
+    }
+}
@@ -0,0 +1,44 @@
+package com.aitrimmer.ffmpeg;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Renders each segment as re-encoded GOP edges around a stream-copied middle, then joins all pieces with
+ * the concat demuxer. A plan without pieces runs only its final step, which then renders the whole output.
+ */
+final class SmartCutPlan implements MultiStagePlan {
+    private final List<FfmpegCommandPlan> pieces;
+    private final FfmpegCommandPlan join;
+    private final List<Path> pieceFiles;
+    private final Duration outputDuration;
+
+    SmartCutPlan(List<FfmpegCommandPlan> pieces, FfmpegCommandPlan join, List<Path> pieceFiles, Duration outputDuration) {
+        this.pieces = List.copyOf(pieces);
+        this.join = Objects.requireNonNull(join, "join");
+        this.pieceFiles = List.copyOf(pieceFiles);
+        this.outputDuration = outputDuration;
+    }
+
+    @Override
+    public List<List<FfmpegCommandPlan>> stages() {
+        return pieces.isEmpty() ? List.of(List.of(join)) : List.of(pieces, List.of(join));
+    }
+
+    @Override
+    public List<Path> intermediateFiles() {
+        return pieceFiles;
+    }
+
+    @Override
+    public Optional<Duration> outputDuration() {
+        return Optional.ofNullable(outputDuration);
+    }
+
+    List<FfmpegCommandPlan> pieces() {
+        return pieces;
+    }
+}
@@ -0,0 +1,70 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Identifies a specific version of a source file by its normalized path, size and modification time.
+ */
+public final class SourceFingerprint {
+    private final Path path;
+    private final long size;
+    private final long lastModifiedMillis;
+
+    public SourceFingerprint(Path path, long size, long lastModifiedMillis) {
+        this.path = Objects.requireNonNull(path, "path");
+        this.size = size;
+        this.lastModifiedMillis = lastModifiedMillis;
+    }
+
+    public static SourceFingerprint of(Path source) {
+        Objects.requireNonNull(source, "source");
+        Path normalized = source.toAbsolutePath().normalize();
+        try {
+            return new SourceFingerprint(
+                    normalized,
+                    Files.size(normalized),
+                    Files.getLastModifiedTime(normalized).toMillis()
+            );
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read attributes of " + source, e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SourceFingerprint)) {
+            return false;
+        }
+        SourceFingerprint other = (SourceFingerprint) o;
+        return size == other.size && lastModifiedMillis == other.lastModifiedMillis && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, size, lastModifiedMillis);
+    }
+
+    @Override
+    public String toString() {
+        return path + "@" + size + ":" + lastModifiedMillis;
+    }
+}
@@ -0,0 +1,189 @@
+package com.aitrimmer.ffmpeg;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring buffer of task log lines. Lines evicted from memory are appended to an optional spill file in
+ * batches, written outside the write lock so appenders never wait on the disk; every evicted line is on disk
+ * once {@link #flush()} returns. Readers never block writers: they copy only the requested window and detect
+ * slots overwritten meanwhile.
+ */
+public final class TaskLog {
+    private static final int SPILL_BATCH = 256;
+
+    private final int capacity;
+    private final Path spillFile;
+    private final AtomicReferenceArray<Entry> slots;
+    private final Object writeLock = new Object();
+    // Serializes spill file writes so batches reach the file in eviction order.
+    private final Object spillLock = new Object();
+    private volatile long nextSequence;
+    private List<String> pendingSpill = new ArrayList<>();
+    private final ArrayDeque<List<String>> readySpills = new ArrayDeque<>();
+    private BufferedWriter spillWriter;
+    private boolean spillFailed;
+
+    public TaskLog(int capacity, Path spillFile) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.spillFile = spillFile;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public void append(String line) {
+        boolean spillReady = false;
+        synchronized (writeLock) {
+            long sequence = nextSequence;
+            int slot = (int) (sequence % capacity);
+            Entry evicted = slots.get(slot);
+            if (evicted != null && spillFile != null) {
+                pendingSpill.add(evicted.line);
+                if (pendingSpill.size() >= SPILL_BATCH) {
+                    readySpills.add(pendingSpill);
+                    pendingSpill = new ArrayList<>();
+                    spillReady = true;
+                }
+            }
+            slots.set(slot, new Entry(sequence, line));
+            nextSequence = sequence + 1;
+        }
+        if (spillReady) {
+            drainSpills();
+        }
+    }
+
+    /**
+     * Returns up to {@code max} lines starting at {@code fromSequence}. Lines that were evicted before they
+     * could be read are skipped and counted in {@link LogPage#getMissedLines()}.
+     */
+    public LogPage read(long fromSequence, int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max must be non-negative");
+        }
+        long end = nextSequence;
+        long from = Math.max(fromSequence, 0L);
+        long start = Math.max(from, end - capacity);
+        long missed = Math.max(0L, Math.min(start, end) - from);
+        List<String> lines = new ArrayList<>((int) Math.min(max, Math.max(0L, end - start)));
+        long first = -1L;
+        long sequence = start;
+        while (sequence < end && lines.size() < max) {
+            Entry entry = slots.get((int) (sequence % capacity));
+            if (entry != null && entry.sequence == sequence) {
+                if (first < 0) {
+                    first = sequence;
+                }
+                lines.add(entry.line);
+            } else {
+                missed++;
+            }
+            sequence++;
+        }
+        return new LogPage(lines, first < 0 ? sequence : first, sequence, missed);
+    }
+
+    /**
+     * Returns the lines still held in memory.
+     */
+    public List<String> retainedLines() {
+        return read(0L, capacity).getLines();
+    }
+
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Optional<Path> getSpillFile() {
+        return Optional.ofNullable(spillFile);
+    }
+
+    /**
+     * Flushes and closes the spill file so finished tasks do not hold a file handle. Later evictions reopen it
+     * in append mode.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            if (!pendingSpill.isEmpty()) {
+                readySpills.add(pendingSpill);
+                pendingSpill = new ArrayList<>();
+            }
+        }
+        drainSpills();
+        synchronized (spillLock) {
+            if (spillWriter == null) {
+                return;
+            }
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                spillFailed = true;
+            } finally {
+                spillWriter = null;
+            }
+        }
+    }
+
+    private void drainSpills() {
+        synchronized (spillLock) {
+            while (true) {
+                List<String> batch;
+                synchronized (writeLock) {
+                    batch = readySpills.poll();
+                }
+                if (batch == null) {
+                    return;
+                }
+                spill(batch);
+            }
+        }
+    }
+
+    private void spill(List<String> lines) {
+        if (spillFailed) {
+            return;
+        }
+        try {
+            if (spillWriter == null) {
+                spillWriter = Files.newBufferedWriter(
+                        spillFile,
+                        StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND
+                );
+            }
+            for (String line : lines) {
+                spillWriter.write(line);
+                spillWriter.newLine();
+            }
+        } catch (IOException e) {
+            // Spilling is best effort; keep the in-memory tail working.
+            spillFailed = true;
+        }
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private final String line;
+
+        private Entry(long sequence, String line) {
+            this.sequence = sequence;
+            this.line = line;
+        }
+    }
+}
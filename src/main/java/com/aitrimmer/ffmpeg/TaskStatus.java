@@ -7,5 +7,17 @@ public enum TaskStatus {
     PENDING,
     RUNNING,
     SUCCEEDED,
-    FAILED
+    FAILED,
+    /**
+     * Stopped on request before it finished.
+     */
+    CANCELLED,
+    /**
+     * Stopped because it exceeded its wall-clock limit or made no progress for too long.
+     */
+    TIMED_OUT;
+
+    public boolean isTerminal() {
+        return this != PENDING && this != RUNNING;
+    }
 }
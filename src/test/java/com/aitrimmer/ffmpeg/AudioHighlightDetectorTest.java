@@ -0,0 +1,142 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioHighlightDetectorTest {
+
+    private static final Path SOURCE = Path.of("vod.mkv");
+    private static final int RATE = 8_000;
+
+    @Test
+    void ranksPaddedSpikesAndMergesNearbyOnes() throws Exception {
+        AudioHighlightDetector detector = AudioHighlightDetector.builder()
+                .padBefore(Duration.ofSeconds(8))
+                .padAfter(Duration.ofSeconds(4))
+                .mergeGap(Duration.ofSeconds(2))
+                .build();
+        SyntheticPcm pcm = new SyntheticPcm(Duration.ofMinutes(10), RATE)
+                .burst(Duration.ofSeconds(120), Duration.ofSeconds(3), 20_000)
+                .burst(Duration.ofSeconds(127), Duration.ofSeconds(2), 20_000)
+                .burst(Duration.ofSeconds(400), Duration.ofSeconds(2), 4_000)
+                .burst(Duration.ofMillis(599_500), Duration.ofMillis(500), 8_000);
+
+        List<VideoSegment> highlights = detector.detect(SOURCE, pcm);
+
+        assertEquals(3, highlights.size());
+        assertSegment(highlights.get(0), 112, 133);
+        assertSegment(highlights.get(1), 591.5, 600);
+        assertSegment(highlights.get(2), 392, 406);
+        assertTrue(highlights.stream().allMatch(segment -> segment.getSource().equals(SOURCE)));
+    }
+
+    @Test
+    void keepsOnlyTheBestSegments() throws Exception {
+        AudioHighlightDetector detector = AudioHighlightDetector.builder().maxSegments(2).build();
+        SyntheticPcm pcm = new SyntheticPcm(Duration.ofMinutes(10), RATE)
+                .burst(Duration.ofSeconds(100), Duration.ofSeconds(1), 3_000)
+                .burst(Duration.ofSeconds(200), Duration.ofSeconds(1), 24_000)
+                .burst(Duration.ofSeconds(300), Duration.ofSeconds(1), 12_000);
+
+        List<VideoSegment> highlights = detector.detect(SOURCE, pcm);
+
+        assertEquals(2, highlights.size());
+        assertSegment(highlights.get(0), 192, 205);
+        assertSegment(highlights.get(1), 292, 305);
+    }
+
+    @Test
+    void streamsTenHourTrackFasterThanRealtime() throws Exception {
+        AudioHighlightDetector detector = AudioHighlightDetector.builder().build();
+        SyntheticPcm pcm = new SyntheticPcm(Duration.ofHours(10), RATE)
+                .burst(Duration.ofHours(9), Duration.ofSeconds(5), 20_000);
+
+        long started = System.nanoTime();
+        List<VideoSegment> highlights = detector.detect(SOURCE, pcm);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+        assertEquals(1, highlights.size());
+        assertSegment(highlights.get(0), 9 * 3600 - 8, 9 * 3600 + 9);
+        assertTrue(elapsed.compareTo(Duration.ofMinutes(5)) < 0, "took " + elapsed);
+    }
+
+    private static void assertSegment(VideoSegment segment, double startSeconds, double endSeconds) {
+        assertEquals(startSeconds, seconds(segment.getStart()), 0.5);
+        assertEquals(endSeconds, seconds(segment.getEnd()), 0.5);
+    }
+
+    private static double seconds(Optional<Duration> duration) {
+        return duration.orElseThrow().toNanos() / 1e9;
+    }
+
+    /**
+     * Generates low-level noise with loud bursts as s16le PCM on the fly, so long tracks need no memory.
+     */
+    private static final class SyntheticPcm extends InputStream {
+        private final long totalSamples;
+        private final int rate;
+        private final long[][] bursts = new long[8][];
+        private int burstCount;
+        private long position;
+        private int seed = 12345;
+        private int pendingHighByte = -1;
+
+        private SyntheticPcm(Duration length, int rate) {
+            this.totalSamples = length.toNanos() / 1_000L * rate / 1_000_000L;
+            this.rate = rate;
+        }
+
+        private SyntheticPcm burst(Duration start, Duration length, int amplitude) {
+            long from = start.toMillis() * rate / 1_000L;
+            bursts[burstCount++] = new long[] {from, from + length.toMillis() * rate / 1_000L, amplitude};
+            return this;
+        }
+
+        private short next() {
+            seed = seed * 1_103_515_245 + 12_345;
+            int amplitude = 300;
+            for (int i = 0; i < burstCount; i++) {
+                if (position >= bursts[i][0] && position < bursts[i][1]) {
+                    amplitude = (int) bursts[i][2];
+                }
+            }
+            position++;
+            return (short) (((seed >>> 16) % (2 * amplitude + 1)) - amplitude);
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int written = 0;
+            if (pendingHighByte >= 0) {
+                target[offset + written++] = (byte) pendingHighByte;
+                pendingHighByte = -1;
+            }
+            while (written < length && position < totalSamples) {
+                short sample = next();
+                target[offset + written++] = (byte) sample;
+                if (written < length) {
+                    target[offset + written++] = (byte) (sample >> 8);
+                } else {
+                    pendingHighByte = (sample >> 8) & 0xff;
+                }
+            }
+            return written == 0 ? -1 : written;
+        }
+    }
+}
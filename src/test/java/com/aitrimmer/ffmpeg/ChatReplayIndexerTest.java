@@ -0,0 +1,116 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatReplayIndexerTest {
+
+    private static final Path VOD = Path.of("vod.mkv");
+
+    @Test
+    void regionsParseTheSameCountsAsOneSequentialPass(@TempDir Path tempDir) throws Exception {
+        Path chat = writeChat(tempDir.resolve("chat.jsonl"));
+        ChatReplayIndexer indexer = ChatReplayIndexer.builder().build();
+
+        ChatActivity sequential = indexer.index(chat, 1);
+        ChatActivity parallel = indexer.index(chat, 7);
+
+        assertEquals(3600, sequential.getSeconds());
+        assertEquals(1, sequential.getMalformedLines());
+        assertEquals(20, sequential.getMessages(1800));
+        assertEquals(40, sequential.getEmotes(1800));
+        assertEquals(sequential.getMessageCount(), parallel.getMessageCount());
+        assertEquals(sequential.getMalformedLines(), parallel.getMalformedLines());
+        for (int second = 0; second < sequential.getSeconds(); second++) {
+            assertEquals(sequential.getMessages(second), parallel.getMessages(second), "messages at " + second);
+            assertEquals(sequential.getEmotes(second), parallel.getEmotes(second), "emotes at " + second);
+        }
+    }
+
+    @Test
+    void ranksChatSpikesAsPaddedSegments(@TempDir Path tempDir) throws Exception {
+        Path chat = writeChat(tempDir.resolve("chat.jsonl"));
+        ChatReplayIndexer indexer = ChatReplayIndexer.builder()
+                .padBefore(Duration.ofSeconds(25))
+                .padAfter(Duration.ofSeconds(5))
+                .build();
+
+        List<VideoSegment> highlights = indexer.highlights(chat, VOD);
+
+        assertEquals(2, highlights.size());
+        assertCovers(highlights.get(0), 1800, 1808);
+        assertCovers(highlights.get(1), 2700, 2706);
+        assertEquals(VOD, highlights.get(0).getSource());
+
+        List<VideoSegment> best = ChatReplayIndexer.builder().maxSegments(1).build().highlights(chat, VOD);
+        assertEquals(1, best.size());
+        assertCovers(best.get(0), 1800, 1808);
+    }
+
+    @Test
+    void countsOffsetsBeyondTheMaximumVodLengthAsMalformed(@TempDir Path tempDir) throws Exception {
+        Path chat = Files.writeString(tempDir.resolve("chat.jsonl"),
+                "{\"offset\": 12.5, \"message\": \"hi\"}\n"
+                        + "{\"offset\": 7200000, \"message\": \"milliseconds\"}\n"
+                        + "{\"offset\": 3600, \"message\": \"last second\"}\n");
+        ChatReplayIndexer indexer = ChatReplayIndexer.builder().maxVodLength(Duration.ofHours(1)).build();
+
+        ChatActivity activity = indexer.index(chat, 1);
+
+        assertEquals(3601, activity.getSeconds());
+        assertEquals(2, activity.getMessageCount());
+        assertEquals(1, activity.getMalformedLines());
+    }
+
+    private static void assertCovers(VideoSegment segment, long spikeStart, long spikeEnd) {
+        long start = segment.getStart().orElseThrow().toSeconds();
+        long end = segment.getEnd().orElseThrow().toSeconds();
+        assertTrue(start <= spikeStart - 25 && start >= spikeStart - 25 - 10, "start " + start);
+        assertTrue(end >= spikeEnd + 5 && end <= spikeEnd + 5 + 10, "end " + end);
+    }
+
+    /**
+     * One hour of sparse chat with an emote-heavy spike at 30 minutes and a plain one at 45 minutes, mixing the
+     * Twitch downloader layout with a flat one.
+     */
+    private static Path writeChat(Path file) throws Exception {
+        Random random = new Random(7);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int second = 0; second < 3600; second++) {
+                int messages = second >= 1800 && second < 1808 ? 20
+                        : second >= 2700 && second < 2706 ? 8
+                        : random.nextInt(3) == 0 ? 1 : 0;
+                if (second == 3599) {
+                    messages = Math.max(messages, 1);
+                }
+                for (int i = 0; i < messages; i++) {
+                    double offset = second + i / (double) (messages + 1);
+                    if (i % 2 == 0) {
+                        String body = second >= 1800 && second < 1808 ? "KEKW no way KEKW" : "say \\\"offset\\\": 99 gg";
+                        writer.write("{\"_id\":\"m" + second + "-" + i + "\",\"content_offset_seconds\":" + offset
+                                + ",\"commenter\":{\"display_name\":\"viewer" + i + "\"},\"message\":{\"body\":\""
+                                + body + "\",\"fragments\":[{\"text\":\"" + body + "\",\"emoticon\":null}]}}\n");
+                    } else {
+                        String message = second >= 1800 && second < 1808 ? "OMEGALUL LUL" : "hello chat";
+                        writer.write("{\"offset\": " + offset + ", \"user\": \"viewer" + i + "\", \"message\": \""
+                                + message + "\"}\r\n");
+                    }
+                }
+                if (second == 1200) {
+                    writer.write("{\"message\": \"no offset here\"}\n");
+                }
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,177 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointedChunkPlanTest {
+
+    @Test
+    void resumesOnlyMissingOrDamagedChunks(@TempDir Path tempDir) throws Exception {
+        Path output = tempDir.resolve("final.mp4");
+        Path runs = tempDir.resolve("runs.log");
+        Path failFlag = tempDir.resolve("fail");
+        List<FfmpegCommandPlan> chunks = new ArrayList<>();
+        List<Path> chunkFiles = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path chunkFile = FfmpegCommandBuilder.partFile(output, "chunk", i);
+            chunkFiles.add(chunkFile);
+            String script = "echo " + i + " >> '" + runs + "'; "
+                    + (i == 2 ? "[ -e '" + failFlag + "' ] && exit 1; " : "")
+                    + "printf 'chunk" + i + "' > '" + chunkFile + "'";
+            chunks.add(scriptPath -> List.of("bash", "-c", script));
+        }
+        FfmpegCommandPlan join = scriptPath -> List.of("bash", "-c",
+                "cat '" + chunkFiles.get(0) + "' '" + chunkFiles.get(1) + "' '" + chunkFiles.get(2) + "' > '" + output + "'");
+        Path manifest = FfmpegCommandBuilder.checkpointFile(output);
+        CheckpointedChunkPlan plan = new CheckpointedChunkPlan(chunks, join, chunkFiles, 1, null, manifest);
+        FfmpegExecutor executor = new FfmpegExecutor();
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "resumable");
+        Files.createFile(failFlag);
+
+        assertEquals(1, executor.execute(plan, task, null, null));
+        assertEquals(TaskStatus.FAILED, task.getStatus());
+        assertTrue(Files.exists(manifest));
+        assertTrue(Files.exists(chunkFiles.get(0)));
+
+        Files.delete(failFlag);
+        Files.writeString(chunkFiles.get(1), "torn", StandardOpenOption.APPEND);
+
+        assertEquals(0, executor.execute(plan, task, null, null));
+        assertEquals(TaskStatus.SUCCEEDED, task.getStatus());
+        assertEquals(List.of("0", "1", "2", "1", "2"), Files.readAllLines(runs, StandardCharsets.UTF_8));
+        assertEquals("chunk0chunk1chunk2", Files.readString(output));
+        assertFalse(Files.exists(manifest));
+        for (Path chunkFile : chunkFiles) {
+            assertFalse(Files.exists(chunkFile));
+        }
+    }
+
+    @Test
+    void keepsFinishedChunksWhenTimedOutMidStageAndResumes(@TempDir Path tempDir) throws Exception {
+        Path output = tempDir.resolve("final.mp4");
+        Path runs = tempDir.resolve("runs.log");
+        Path hangFlag = tempDir.resolve("hang");
+        List<FfmpegCommandPlan> chunks = new ArrayList<>();
+        List<Path> chunkFiles = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path chunkFile = FfmpegCommandBuilder.partFile(output, "chunk", i);
+            chunkFiles.add(chunkFile);
+            String script = "echo " + i + " >> '" + runs + "'; printf 'chunk" + i + "' > '" + chunkFile + "'"
+                    + (i == 2 ? "; if [ -e '" + hangFlag + "' ]; then sleep 30; fi" : "");
+            chunks.add(piece(script, chunkFile));
+        }
+        FfmpegCommandPlan join = piece("cat '" + chunkFiles.get(0) + "' '" + chunkFiles.get(1) + "' '"
+                + chunkFiles.get(2) + "' > '" + output + "'", output);
+        Path manifest = FfmpegCommandBuilder.checkpointFile(output);
+        CheckpointedChunkPlan plan = new CheckpointedChunkPlan(chunks, join, chunkFiles, 1, null, manifest);
+        FfmpegExecutor bounded = new FfmpegExecutor(FfmpegMetrics.NOOP, ExecutionLimits.builder()
+                .timeout(Duration.ofSeconds(2))
+                .build());
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "resumable");
+        Files.createFile(hangFlag);
+
+        assertEquals(FfmpegExecutor.STOPPED_EXIT_CODE, bounded.execute(plan, task, null, null));
+        assertEquals(TaskStatus.TIMED_OUT, task.getStatus());
+        assertTrue(Files.exists(chunkFiles.get(0)));
+        assertTrue(Files.exists(chunkFiles.get(1)));
+        assertFalse(Files.exists(chunkFiles.get(2)));
+
+        Files.delete(hangFlag);
+
+        assertEquals(0, new FfmpegExecutor().execute(plan, task, null, null));
+        assertEquals(TaskStatus.SUCCEEDED, task.getStatus());
+        assertEquals(List.of("0", "1", "2", "2"), Files.readAllLines(runs, StandardCharsets.UTF_8));
+        assertEquals("chunk0chunk1chunk2", Files.readString(output));
+    }
+
+    @Test
+    void resumesCancelledRenderWithTheSameTask(@TempDir Path tempDir) throws Exception {
+        Path output = tempDir.resolve("final.mp4");
+        Path runs = tempDir.resolve("runs.log");
+        Path hangFlag = tempDir.resolve("hang");
+        List<FfmpegCommandPlan> chunks = new ArrayList<>();
+        List<Path> chunkFiles = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path chunkFile = FfmpegCommandBuilder.partFile(output, "chunk", i);
+            chunkFiles.add(chunkFile);
+            String script = "echo " + i + " >> '" + runs + "'; printf 'chunk" + i + "' > '" + chunkFile + "'"
+                    + (i == 2 ? "; if [ -e '" + hangFlag + "' ]; then echo hanging; exec sleep 30; fi" : "");
+            chunks.add(piece(script, chunkFile));
+        }
+        FfmpegCommandPlan join = piece("cat '" + chunkFiles.get(0) + "' '" + chunkFiles.get(1) + "' '"
+                + chunkFiles.get(2) + "' > '" + output + "'", output);
+        CheckpointedChunkPlan plan = new CheckpointedChunkPlan(chunks, join, chunkFiles, 1, null,
+                FfmpegCommandBuilder.checkpointFile(output));
+        FfmpegExecutor executor = new FfmpegExecutor();
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "resumable");
+        Files.createFile(hangFlag);
+        CountDownLatch hanging = new CountDownLatch(1);
+
+        CompletableFuture<Integer> cancelled = CompletableFuture.supplyAsync(() -> executor.execute(plan, task, null,
+                line -> {
+                    if (line.equals("hanging")) {
+                        hanging.countDown();
+                    }
+                }));
+        assertTrue(hanging.await(10, TimeUnit.SECONDS));
+        assertTrue(executor.cancel(task));
+
+        assertEquals(FfmpegExecutor.STOPPED_EXIT_CODE, cancelled.get(10, TimeUnit.SECONDS));
+        assertEquals(TaskStatus.CANCELLED, task.getStatus());
+        assertTrue(Files.exists(chunkFiles.get(1)));
+
+        Files.delete(hangFlag);
+
+        assertEquals(0, executor.execute(plan, task, null, null));
+        assertEquals(TaskStatus.SUCCEEDED, task.getStatus());
+        assertEquals(List.of("0", "1", "2", "2"), Files.readAllLines(runs, StandardCharsets.UTF_8));
+        assertEquals("chunk0chunk1chunk2", Files.readString(output));
+    }
+
+    @Test
+    void builderPlacesManifestNextToOutput() {
+        FfmpegCommandBuilder builder = new FfmpegCommandBuilder(new CompressionPresetConfig());
+        List<VideoSegment> segments = List.of(VideoSegment.builder()
+                .source(Path.of("vod.mp4"))
+                .start(Duration.ofSeconds(30))
+                .end(Duration.ofSeconds(150))
+                .build());
+
+        CheckpointedChunkPlan plan = (CheckpointedChunkPlan) builder.buildCheckpointed(segments, Path.of("/out/best.mp4"),
+                null, ChunkingOptions.builder().chunkDuration(Duration.ofSeconds(60)).parallelism(2).build());
+
+        assertEquals(Path.of("/out/best.mp4.checkpoint"), plan.manifestFile());
+        assertEquals(2, plan.chunks().size());
+        assertEquals(2, plan.parallelism());
+        assertEquals(List.of(), plan.intermediateFiles());
+        assertEquals(2, plan.stages().size());
+    }
+
+    private static FfmpegCommandPlan piece(String script, Path output) {
+        return new FfmpegCommandPlan() {
+            @Override
+            public List<String> command(Path scriptPath) {
+                return List.of("bash", "-c", script);
+            }
+
+            @Override
+            public List<Path> outputs() {
+                return List.of(output);
+            }
+        };
+    }
+}
@@ -3,6 +3,7 @@ package com.aitrimmer.ffmpeg;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,4 +43,46 @@ class CompressionPresetConfigTest {
         assertEquals(List.of("-movflags", "+faststart"), resolved.getExtraArgs());
         assertTrue(resolved.toArgs().containsAll(List.of("-movflags", "+faststart")));
     }
+
+    @Test
+    void overridesHaveValueSemantics() {
+        CompressionOverrides first = CompressionOverrides.builder().crf(20).extraArgs(List.of("-an")).build();
+        CompressionOverrides second = CompressionOverrides.fromMap(Map.of("crf", "20", "extraArgs", "-an"));
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotEquals(first, CompressionOverrides.builder().crf(21).extraArgs(List.of("-an")).build());
+    }
+
+    @Test
+    void cachesResolvedPresetsPerOverrideSet() {
+        CompressionPresetConfig config = new CompressionPresetConfig(CompressionPreset.createDefault(), 2);
+
+        CompressionPreset fast = config.resolve(CompressionOverrides.builder().preset("veryfast").build());
+        assertSame(fast, config.resolve(CompressionOverrides.builder().preset("veryfast").build()));
+        assertSame(fast.toArgs(), config.resolve(CompressionOverrides.builder().preset("veryfast").build()).toArgs());
+        assertEquals(2, config.getStats().getHits());
+        assertEquals(1, config.getStats().getMisses());
+
+        config.resolve(CompressionOverrides.builder().crf(18).build());
+        config.resolve(CompressionOverrides.builder().crf(28).build());
+        assertEquals(2, config.getStats().getEntries());
+        assertEquals(1, config.getStats().getEvictions());
+    }
+
+    @Test
+    void changingDefaultPresetInvalidatesCache() {
+        CompressionPresetConfig config = new CompressionPresetConfig();
+        CompressionOverrides overrides = CompressionOverrides.builder().crf(18).build();
+        assertEquals("libx264", config.resolve(overrides).getVideoCodec());
+
+        config.setDefaultPreset(new CompressionPreset("libx265", "aac", null, "128k", 28, "slow", List.of()));
+
+        CompressionPreset resolved = config.resolve(overrides);
+        assertEquals("libx265", resolved.getVideoCodec());
+        assertEquals(18, resolved.getCrf());
+        assertEquals(1, config.getStats().getEntries());
+        assertEquals(1, config.getStats().getEvictions());
+        assertEquals(2, config.getStats().getMisses());
+    }
 }
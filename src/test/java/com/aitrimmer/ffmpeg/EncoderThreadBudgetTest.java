@@ -0,0 +1,95 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncoderThreadBudgetTest {
+
+    @Test
+    void readsCgroupV2Quota(@TempDir Path root) throws IOException {
+        Files.writeString(root.resolve("cpu.max"), "250000 100000\n");
+        assertEquals(OptionalInt.of(3), EncoderThreadBudget.cgroupCpuLimit(root));
+
+        Files.writeString(root.resolve("cpu.max"), "max 100000\n");
+        assertEquals(OptionalInt.empty(), EncoderThreadBudget.cgroupCpuLimit(root));
+    }
+
+    @Test
+    void readsCgroupV1Quota(@TempDir Path root) throws IOException {
+        Path cpu = Files.createDirectories(root.resolve("cpu"));
+        Files.writeString(cpu.resolve("cpu.cfs_quota_us"), "400000\n");
+        Files.writeString(cpu.resolve("cpu.cfs_period_us"), "100000\n");
+        assertEquals(OptionalInt.of(4), EncoderThreadBudget.cgroupCpuLimit(root));
+
+        Files.writeString(cpu.resolve("cpu.cfs_quota_us"), "-1\n");
+        assertEquals(OptionalInt.empty(), EncoderThreadBudget.cgroupCpuLimit(root));
+    }
+
+    @Test
+    void splitsCpusBetweenConcurrentJobs() {
+        EncoderThreadBudget budget = new EncoderThreadBudget(16);
+
+        EncoderThreadBudget.Lease alone = budget.acquire(1);
+        assertEquals(16, alone.getThreads());
+        alone.close();
+        alone.close();
+        assertEquals(0, budget.getActiveJobs());
+
+        EncoderThreadBudget.Lease first = budget.acquire(4);
+        EncoderThreadBudget.Lease second = budget.acquire(1);
+        EncoderThreadBudget.Lease third = budget.acquire(1);
+        assertEquals(4, first.getThreads());
+        assertEquals(8, second.getThreads());
+        assertEquals(5, third.getThreads());
+        assertEquals(3, budget.getActiveJobs());
+    }
+
+    @Test
+    void injectsThreadLimitsIntoFfmpegCommands() {
+        FfmpegCommandPlan plan = new FilterGraphPlan(List.of(
+                "ffmpeg", "-y", "-i", "in.mp4", "-filter_complex", "[0:v]null[vout]", "-c:v", "libx264", "out.mp4"), null);
+
+        assertEquals(List.of("ffmpeg", "-filter_threads", "4", "-filter_complex_threads", "4", "-y", "-i", "in.mp4",
+                "-filter_complex", "[0:v]null[vout]", "-c:v", "libx264", "-threads", "4", "out.mp4"),
+                EncoderThreadBudget.limit(plan, 4).command(null));
+
+        List<String> other = List.of("bash", "-c", "true");
+        assertEquals(other, EncoderThreadBudget.withThreadLimit(other, List.of(), 2));
+    }
+
+    @Test
+    void capsEveryOutputOfMultiOutputCommands() {
+        FfmpegCommandBuilder builder = new FfmpegCommandBuilder(new CompressionPresetConfig());
+        Path source = Path.of("vod.mkv");
+        List<VideoSegment> clips = List.of(
+                VideoSegment.builder().source(source).start(Duration.ofSeconds(10)).end(Duration.ofSeconds(20)).build(),
+                VideoSegment.builder().source(source).start(Duration.ofSeconds(40)).end(Duration.ofSeconds(50)).build());
+        FfmpegCommandPlan plan = builder.buildPreviews(
+                clips, List.of(Path.of("a"), Path.of("b")), PreviewOptions.builder().build());
+
+        List<String> command = EncoderThreadBudget.limit(plan, 2).command(null);
+
+        List<String> capped = new ArrayList<>();
+        for (int i = 0; i < command.size(); i++) {
+            if (command.get(i).equals("-threads")) {
+                assertEquals("2", command.get(i + 1));
+                capped.add(command.get(i + 2));
+            }
+        }
+        assertEquals(List.of(
+                Path.of("a", ClipPreviews.THUMBNAIL_PATTERN).toString(),
+                Path.of("a", ClipPreviews.SPRITE_FILE).toString(),
+                Path.of("b", ClipPreviews.THUMBNAIL_PATTERN).toString(),
+                Path.of("b", ClipPreviews.SPRITE_FILE).toString()), capped);
+    }
+}
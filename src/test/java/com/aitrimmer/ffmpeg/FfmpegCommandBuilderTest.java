@@ -4,7 +4,11 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -45,6 +49,8 @@ class FfmpegCommandBuilderTest {
                 "ffmpeg", "-y", "-hide_banner", "-safe", "0", "-f", "concat", "-i", "concat.txt",
                 "-c:v", "libx264", "-preset", "medium", "-crf", "23", "-c:a", "aac", "-b:a", "128k", "/output/final.mp4"
         ), command);
+        assertEquals(Map.of("strategy", "concat_script", "preset", "medium"), plan.tags());
+        assertEquals(List.of(Path.of("/output/final.mp4")), plan.outputs());
     }
 
     @Test
@@ -79,4 +85,408 @@ class FfmpegCommandBuilderTest {
         assertTrue(command.containsAll(List.of("-map", "[aout]")));
         assertEquals("final.mp4", command.get(command.size() - 1));
     }
+
+    @Test
+    void filterComplexPlanOpensEachSourceOnce() {
+        Path vod = Path.of("vod.mp4");
+        List<VideoSegment> segments = List.of(
+                segment(vod, 10, 20),
+                segment(Path.of("intro.mp4"), 0, 5),
+                segment(vod, 40, 50),
+                segment(vod, 50, 55),
+                segment(vod, 70, 80)
+        );
+
+        List<String> command = builder.build(segments, Path.of("final.mp4"), null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX)
+                .command(null);
+
+        assertEquals(List.of("vod.mp4", "intro.mp4"), inputsOf(command));
+        String filterGraph = command.get(command.indexOf("-filter_complex") + 1);
+        assertTrue(filterGraph.startsWith("[0:v]split=3[s0v0][s0v1][s0v2];[0:a]asplit=3[s0a0][s0a1][s0a2];"));
+        assertTrue(filterGraph.contains("[s0v1]trim=start=40.0:end=55.0,setpts=PTS-STARTPTS[v2];"));
+        assertTrue(filterGraph.contains("[1:v]trim=end=5.0,setpts=PTS-STARTPTS[v1];"));
+        assertTrue(filterGraph.contains("[1:a]atrim=end=5.0,asetpts=PTS-STARTPTS[a1];"));
+        assertTrue(filterGraph.endsWith("[v0][a0][v1][a1][v2][a2][v3][a3]concat=n=4:v=1:a=1[vout][aout]"));
+    }
+
+    @Test
+    void multiOutputPlanDecodesEachSourceOnceForAllOutputs() {
+        Path vod = Path.of("vod.mp4");
+        FfmpegCommandPlan plan = builder.buildMultiOutput(List.of(
+                OutputSpec.builder()
+                        .segments(List.of(segment(vod, 10, 20), segment(vod, 40, 50)))
+                        .output(Path.of("clip-1080p.mp4"))
+                        .build(),
+                OutputSpec.builder()
+                        .segments(List.of(segment(vod, 10, 20)))
+                        .output(Path.of("clip-vertical.mp4"))
+                        .overrides(CompressionOverrides.builder().preset("veryfast").crf(28).build())
+                        .videoFilter("crop=ih*9/16:ih")
+                        .build()
+        ));
+
+        List<String> command = plan.command(null);
+        assertEquals(List.of("vod.mp4"), inputsOf(command));
+        String filterGraph = command.get(command.indexOf("-filter_complex") + 1);
+        assertTrue(filterGraph.startsWith("[0:v]split=3[s0v0][s0v1][s0v2];[0:a]asplit=3[s0a0][s0a1][s0a2];"));
+        assertTrue(filterGraph.contains("[s0v2]trim=start=10.0:end=20.0,setpts=PTS-STARTPTS[v2];"));
+        assertTrue(filterGraph.contains("[v0][a0][v1][a1]concat=n=2:v=1:a=1[o0v][o0a];"));
+        assertTrue(filterGraph.endsWith("[v2][a2]concat=n=1:v=1:a=1[c1v][o1a];[c1v]crop=ih*9/16:ih[o1v]"));
+
+        int firstOutput = command.indexOf("clip-1080p.mp4");
+        assertEquals(List.of("-map", "[o0v]", "-map", "[o0a]", "-c:v", "libx264", "-preset", "medium", "-crf", "23",
+                "-c:a", "aac", "-b:a", "128k", "clip-1080p.mp4"), command.subList(firstOutput - 14, firstOutput + 1));
+        assertTrue(command.subList(firstOutput + 1, command.size()).containsAll(List.of("[o1v]", "veryfast", "28")));
+        assertEquals("clip-vertical.mp4", command.get(command.size() - 1));
+        assertEquals(List.of(Path.of("clip-1080p.mp4"), Path.of("clip-vertical.mp4")), plan.outputs());
+        assertEquals(Duration.ofSeconds(20), plan.outputDuration().orElseThrow());
+        assertEquals(Map.of("strategy", "multi_output", "preset", "mixed"), plan.tags());
+    }
+
+    @Test
+    void previewPlanSeeksEachClipAndFeedsThumbnailsAndSpriteFromOneDecode() {
+        Path vod = Path.of("vod.mp4");
+        PreviewOptions options = PreviewOptions.builder().thumbnails(4).spriteGrid(5, 4).build();
+        FfmpegCommandPlan plan = builder.buildPreviews(
+                List.of(segment(vod, 60, 90), segment(Path.of("other.mp4"), 0, 20)),
+                List.of(Path.of("p0"), Path.of("p1")),
+                options);
+
+        List<String> command = plan.command(null);
+        assertEquals(List.of("ffmpeg", "-y", "-hide_banner", "-ss", "60.0", "-t", "30.0", "-i", "vod.mp4",
+                "-t", "20.0", "-i", "other.mp4", "-filter_complex"), command.subList(0, 14));
+        assertEquals("[0:v]split=2[t0][s0];"
+                + "[t0]select='isnan(prev_selected_t)+gte(t-prev_selected_t,7.5)',scale=320:-2[pt0];"
+                + "[s0]fps=20/30.0,scale=160:-2,tile=5x4[ps0];"
+                + "[1:v]split=2[t1][s1];"
+                + "[t1]select='isnan(prev_selected_t)+gte(t-prev_selected_t,5.0)',scale=320:-2[pt1];"
+                + "[s1]fps=20/20.0,scale=160:-2,tile=5x4[ps1]", command.get(14));
+        int thumbnails = command.indexOf(Path.of("p0", "thumb-%03d.jpg").toString());
+        assertEquals(List.of("-map", "[pt0]", "-vsync", "vfr", "-frames:v", "4", "-q:v", "4"),
+                command.subList(thumbnails - 8, thumbnails));
+        assertEquals(Path.of("p1", "sprite.jpg").toString(), command.get(command.size() - 1));
+        assertEquals(10, plan.outputs().size());
+        assertEquals(ClipPreviews.in(Path.of("p0"), options).getThumbnails(), plan.outputs().subList(0, 4));
+        assertEquals(Path.of("p0", "sprite.jpg"), plan.outputs().get(4));
+        assertEquals(Duration.ofSeconds(30), plan.outputDuration().orElseThrow());
+        assertEquals(Map.of("strategy", "previews", "preset", "mjpeg"), plan.tags());
+        assertThrows(IllegalArgumentException.class, () -> builder.buildPreviews(
+                List.of(VideoSegment.builder().source(vod).build()), List.of(Path.of("p0")), options));
+    }
+
+    @Test
+    void inputSeekingMovesCutsInFrontOfInputs() {
+        Path vod = Path.of("vod.mp4");
+        List<VideoSegment> segments = List.of(
+                segment(vod, 22_320, 22_350),
+                VideoSegment.builder().source(Path.of("outro.mp4")).build(),
+                segment(vod, 22_320, 22_350)
+        );
+
+        List<String> command = builder.withInputSeeking(true)
+                .build(segments, Path.of("final.mp4"), null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX)
+                .command(null);
+
+        assertEquals(List.of("ffmpeg", "-y", "-hide_banner", "-ss", "22320.0", "-t", "30.0", "-i", "vod.mp4",
+                "-i", "outro.mp4", "-filter_complex"), command.subList(0, 12));
+        String filterGraph = command.get(command.indexOf("-filter_complex") + 1);
+        assertTrue(filterGraph.startsWith("[0:v]split=2[s0v0][s0v1];[0:a]asplit=2[s0a0][s0a1];"));
+        assertTrue(filterGraph.contains("[s0v0]trim=end=30.0,setpts=PTS-STARTPTS[v0];"));
+        assertTrue(filterGraph.contains("[1:v]setpts=PTS-STARTPTS[v1];"));
+        assertFalse(filterGraph.contains("start="));
+        assertFalse(builder.isInputSeeking());
+    }
+
+    @Test
+    void formatsDurationsAsFixedPointSeconds() {
+        assertEquals("0.0", duration(Duration.ZERO));
+        assertEquals("5.0", duration(Duration.ofSeconds(5)));
+        assertEquals("0.04", duration(Duration.ofMillis(40)));
+        assertEquals("12.5", duration(Duration.ofMillis(12_500)));
+        assertEquals("0.000001", duration(Duration.ofNanos(1_000)));
+        assertEquals("0.000002", duration(Duration.ofNanos(1_500)));
+        assertEquals("0.0", duration(Duration.ofNanos(499)));
+        assertEquals("2.0", duration(Duration.ofNanos(1_999_999_700L)));
+        assertEquals("22320.123457", duration(Duration.ofSeconds(22_320, 123_456_789)));
+        assertEquals("-1.5", duration(Duration.ofMillis(-1_500)));
+    }
+
+    private static String duration(Duration duration) {
+        return FfmpegCommandBuilder.appendDuration(new StringBuilder(), duration).toString();
+    }
+
+    private static VideoSegment segment(Path source, long startSeconds, long endSeconds) {
+        return VideoSegment.builder()
+                .source(source)
+                .start(Duration.ofSeconds(startSeconds))
+                .end(Duration.ofSeconds(endSeconds))
+                .build();
+    }
+
+    private static List<String> inputsOf(List<String> command) {
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < command.size() - 1; i++) {
+            if (command.get(i).equals("-i")) {
+                inputs.add(command.get(i + 1));
+            }
+        }
+        return inputs;
+    }
+
+    @Test
+    void buildsStreamCopyPlanForKeyframeAlignedCuts() {
+        StubProbe probe = new StubProbe();
+        probe.keyframes.put(Path.of("vod.mp4"), List.of(Duration.ZERO, Duration.ofSeconds(10), Duration.ofSeconds(20)));
+        FfmpegCommandBuilder copyBuilder = new FfmpegCommandBuilder(presetConfig, probe);
+        List<VideoSegment> segments = List.of(
+                VideoSegment.builder()
+                        .source(Path.of("vod.mp4"))
+                        .start(Duration.ofSeconds(10))
+                        .end(Duration.ofSeconds(15))
+                        .build(),
+                VideoSegment.builder()
+                        .source(Path.of("vod.mp4"))
+                        .start(Duration.ofMillis(20_050))
+                        .end(Duration.ofSeconds(25))
+                        .build()
+        );
+
+        FfmpegCommandPlan plan = copyBuilder.build(
+                segments,
+                Path.of("copy.mp4"),
+                null,
+                FfmpegCommandBuilder.Strategy.STREAM_COPY
+        );
+
+        assertTrue(plan.concatScript().orElseThrow().contains("inpoint 10.0"));
+        List<String> command = plan.command(Path.of("concat.txt"));
+        assertTrue(command.containsAll(List.of("-c", "copy")));
+        assertFalse(command.contains("libx264"));
+        assertEquals("copy.mp4", command.get(command.size() - 1));
+    }
+
+    @Test
+    void refusesStreamCopyForMisalignedCutsAndMismatchedSources() {
+        StubProbe probe = new StubProbe();
+        probe.keyframes.put(Path.of("a.mp4"), List.of(Duration.ZERO, Duration.ofSeconds(10)));
+        probe.keyframes.put(Path.of("b.mp4"), List.of(Duration.ZERO));
+        probe.infos.put(Path.of("b.mp4"), MediaStreamInfo.builder()
+                .videoCodec("hevc").width(1920).height(1080).pixelFormat("yuv420p").frameRate("60/1")
+                .audioCodec("aac").sampleRate(48000).channels(2)
+                .build());
+        FfmpegCommandBuilder copyBuilder = new FfmpegCommandBuilder(presetConfig, probe);
+        List<VideoSegment> segments = List.of(
+                VideoSegment.builder().source(Path.of("a.mp4")).start(Duration.ofSeconds(12)).build(),
+                VideoSegment.builder().source(Path.of("b.mp4")).build()
+        );
+
+        List<String> issues = copyBuilder.streamCopyIssues(segments);
+        assertEquals(2, issues.size());
+        assertTrue(issues.stream().anyMatch(issue -> issue.contains("b.mp4 has codec parameters")));
+        assertTrue(issues.stream().anyMatch(issue -> issue.contains("cut at 12.0s")));
+        assertThrows(IllegalArgumentException.class, () -> copyBuilder.build(
+                segments,
+                Path.of("copy.mp4"),
+                null,
+                FfmpegCommandBuilder.Strategy.STREAM_COPY
+        ));
+    }
+
+    @Test
+    void buildsSmartCutPlanThatEncodesOnlyGopEdges() {
+        KeyframeIndex index = KeyframeIndex.of(new long[]{0L, 2_000_000L, 4_000_000L, 6_000_000L, 8_000_000L});
+        List<VideoSegment> segments = List.of(
+                VideoSegment.builder()
+                        .source(Path.of("vod.mp4"))
+                        .start(Duration.ofSeconds(3))
+                        .end(Duration.ofMillis(7_500))
+                        .build(),
+                VideoSegment.builder()
+                        .source(Path.of("vod.mp4"))
+                        .start(Duration.ofSeconds(4))
+                        .end(Duration.ofSeconds(8))
+                        .build()
+        );
+
+        SmartCutPlan plan = (SmartCutPlan) new FfmpegCommandBuilder(presetConfig, new StubProbe()).buildSmartCut(
+                segments, Path.of("/out/clip.mp4"), null, source -> index);
+
+        List<FfmpegCommandPlan> pieces = plan.pieces();
+        assertEquals(4, pieces.size());
+        assertEquals(List.of("ffmpeg", "-y", "-hide_banner", "-ss", "3.0", "-t", "1.0", "-i", "vod.mp4",
+                "-c:v", "libx264", "-preset", "medium", "-crf", "23", "-c:a", "aac", "-b:a", "128k",
+                "/out/clip.part0000.mp4"), pieces.get(0).command(null));
+        assertEquals(List.of("ffmpeg", "-y", "-hide_banner", "-ss", "4.0", "-t", "2.0", "-i", "vod.mp4",
+                "-c", "copy", "-avoid_negative_ts", "make_zero", "/out/clip.part0001.mp4"), pieces.get(1).command(null));
+        assertTrue(pieces.get(2).command(null).containsAll(List.of("-ss", "6.0", "-t", "1.5", "libx264")));
+        assertTrue(pieces.get(3).command(null).containsAll(List.of("-ss", "4.0", "-t", "4.0", "copy")));
+
+        assertEquals(4, plan.intermediateFiles().size());
+        FfmpegCommandPlan join = plan.stages().get(1).get(0);
+        String script = join.concatScript().orElseThrow();
+        assertTrue(script.contains("file '/out/clip.part0000.mp4'"));
+        assertTrue(script.contains("file '/out/clip.part0003.mp4'"));
+        List<String> joinCommand = join.command(Path.of("concat.txt"));
+        assertTrue(joinCommand.containsAll(List.of("-c", "copy", "/out/clip.mp4")));
+        assertFalse(joinCommand.contains("libx264"));
+        assertEquals(Map.of("strategy", "smart_cut", "preset", "medium"), pieces.get(0).tags());
+        assertEquals(Map.of("strategy", "smart_cut", "preset", "copy"), join.tags());
+    }
+
+    @Test
+    void smartCutReencodesSegmentsInsideSingleGop() {
+        KeyframeIndex index = KeyframeIndex.of(new long[]{0L, 10_000_000L});
+        List<VideoSegment> segments = List.of(VideoSegment.builder()
+                .source(Path.of("vod.mp4"))
+                .start(Duration.ofSeconds(2))
+                .end(Duration.ofSeconds(5))
+                .build());
+
+        SmartCutPlan plan = (SmartCutPlan) new FfmpegCommandBuilder(presetConfig, new StubProbe())
+                .buildSmartCut(segments, Path.of("clip.mp4"), null, source -> index);
+
+        assertEquals(1, plan.pieces().size());
+        assertTrue(plan.pieces().get(0).command(null).containsAll(List.of("-ss", "2.0", "-t", "3.0", "libx264")));
+    }
+
+    @Test
+    void smartCutPinsSourceTimeScaleAndFallsBackToFullEncodeOnMismatch() {
+        KeyframeIndex index = KeyframeIndex.of(new long[]{0L, 2_000_000L, 4_000_000L, 6_000_000L});
+        List<VideoSegment> segments = List.of(VideoSegment.builder()
+                .source(Path.of("vod.ts"))
+                .start(Duration.ofSeconds(1))
+                .end(Duration.ofSeconds(5))
+                .build());
+        StubProbe probe = new StubProbe();
+        MediaStreamInfo.Builder source = MediaStreamInfo.builder()
+                .videoCodec("h264").profile("High").timeBase("1/90000").width(1920).height(1080)
+                .pixelFormat("yuv420p").frameRate("60/1").audioCodec("aac").sampleRate(48000).channels(2);
+        probe.infos.put(Path.of("vod.ts"), source.build());
+        FfmpegCommandBuilder smartBuilder = new FfmpegCommandBuilder(presetConfig, probe);
+
+        SmartCutPlan plan = (SmartCutPlan) smartBuilder.buildSmartCut(segments, Path.of("clip.mp4"), null, s -> index);
+        assertEquals(List.of(), smartBuilder.smartCutIssues(segments, null));
+        assertEquals(3, plan.pieces().size());
+        for (FfmpegCommandPlan piece : plan.pieces()) {
+            assertTrue(piece.command(null).containsAll(List.of("-video_track_timescale", "90000")));
+        }
+
+        probe.infos.put(Path.of("vod.ts"), source.profile("Main").build());
+        List<String> issues = smartBuilder.smartCutIssues(segments, null);
+        assertEquals(1, issues.size());
+        assertTrue(issues.get(0).contains("profile High"));
+        MultiStagePlan fallback = smartBuilder.buildSmartCut(segments, Path.of("clip.mp4"), null, s -> index);
+        assertEquals(1, fallback.stages().size());
+        FfmpegCommandPlan full = fallback.stages().get(0).get(0);
+        assertEquals("filter_complex", full.tags().get(FfmpegCommandBuilder.STRATEGY_TAG));
+        assertEquals(List.of(), fallback.intermediateFiles());
+
+        probe.infos.put(Path.of("vod.ts"), source.profile("High").videoCodec("hevc").build());
+        assertTrue(smartBuilder.smartCutIssues(segments, null).get(0).contains("encoded as h264"));
+    }
+
+    @Test
+    void splitsTimelineIntoFixedLengthChunks() {
+        List<VideoSegment> segments = List.of(
+                VideoSegment.builder().source(Path.of("a.mp4")).start(Duration.ofSeconds(100)).end(Duration.ofSeconds(190)).build(),
+                VideoSegment.builder().source(Path.of("b.mp4")).end(Duration.ofSeconds(50)).build()
+        );
+
+        List<List<VideoSegment>> chunks = FfmpegCommandBuilder.splitTimeline(segments, Duration.ofSeconds(60));
+
+        assertEquals(3, chunks.size());
+        assertEquals(1, chunks.get(0).size());
+        assertEquals(Duration.ofSeconds(160), chunks.get(0).get(0).getEnd().orElseThrow());
+        assertEquals(2, chunks.get(1).size());
+        assertEquals(Duration.ofSeconds(160), chunks.get(1).get(0).getStart().orElseThrow());
+        assertEquals(Duration.ofSeconds(30), chunks.get(1).get(1).getEnd().orElseThrow());
+        assertEquals(Duration.ofSeconds(20), chunks.get(2).get(0).getDuration().orElseThrow());
+    }
+
+    @Test
+    void splitTimelineRejectsEmptySegments() {
+        List<VideoSegment> segments = List.of(
+                VideoSegment.builder().source(Path.of("a.mp4")).end(Duration.ofSeconds(30)).build(),
+                VideoSegment.builder().source(Path.of("b.mp4")).end(Duration.ZERO).build()
+        );
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> FfmpegCommandBuilder.splitTimeline(segments, Duration.ofSeconds(60)));
+        assertTrue(error.getMessage().contains("b.mp4 from 0.0s to 0.0s"));
+    }
+
+    @Test
+    void buildsChunkedPlanWithLosslessJoin() {
+        List<VideoSegment> segments = List.of(
+                VideoSegment.builder().source(Path.of("vod.mp4")).start(Duration.ofSeconds(30)).end(Duration.ofSeconds(150)).build()
+        );
+        ChunkingOptions options = ChunkingOptions.builder()
+                .chunkDuration(Duration.ofSeconds(45))
+                .parallelism(4)
+                .build();
+
+        ChunkedEncodePlan plan = (ChunkedEncodePlan) builder.buildChunked(segments, Path.of("/out/best.mp4"), null, options);
+
+        assertEquals(4, plan.parallelism());
+        assertEquals(3, plan.chunks().size());
+        assertEquals(List.of("ffmpeg", "-y", "-hide_banner", "-ss", "75.0", "-t", "45.0", "-i", "vod.mp4",
+                "-map", "0:v:0", "-map", "0:a:0", "-c:v", "libx264", "-preset", "medium", "-crf", "23", "-c:a", "aac", "-b:a", "128k",
+                "/out/best.chunk0001.mp4"), plan.chunks().get(1).command(null));
+        assertEquals(List.of(Path.of("/out/best.chunk0000.mp4"), Path.of("/out/best.chunk0001.mp4"),
+                Path.of("/out/best.chunk0002.mp4")), plan.intermediateFiles());
+        FfmpegCommandPlan join = plan.stages().get(1).get(0);
+        assertTrue(join.concatScript().orElseThrow().contains("file '/out/best.chunk0002.mp4'"));
+        assertTrue(join.command(Path.of("concat.txt")).containsAll(List.of("-c", "copy", "/out/best.mp4")));
+    }
+
+    @Test
+    void seeksEverySliceOfChunksThatCrossSegments() {
+        List<VideoSegment> segments = List.of(
+                VideoSegment.builder().source(Path.of("vod.mp4")).start(Duration.ofSeconds(3600)).end(Duration.ofSeconds(3620)).build(),
+                VideoSegment.builder().source(Path.of("vod.mp4")).start(Duration.ofSeconds(7200)).end(Duration.ofSeconds(7230)).build()
+        );
+        ChunkingOptions options = ChunkingOptions.builder().chunkDuration(Duration.ofSeconds(30)).build();
+
+        ChunkedEncodePlan plan = (ChunkedEncodePlan) builder.buildChunked(segments, Path.of("/out/best.mp4"), null, options);
+
+        List<String> crossing = plan.chunks().get(0).command(null);
+        assertEquals(List.of("ffmpeg", "-y", "-hide_banner",
+                "-ss", "3600.0", "-t", "20.0", "-i", "vod.mp4",
+                "-ss", "7200.0", "-t", "10.0", "-i", "vod.mp4",
+                "-filter_complex", "[0:v]trim=end=20.0,setpts=PTS-STARTPTS[v0];[0:a]atrim=end=20.0,asetpts=PTS-STARTPTS[a0];"
+                        + "[1:v]trim=end=10.0,setpts=PTS-STARTPTS[v1];[1:a]atrim=end=10.0,asetpts=PTS-STARTPTS[a1];"
+                        + "[v0][a0][v1][a1]concat=n=2:v=1:a=1[vout][aout]",
+                "-map", "[vout]", "-map", "[aout]"), crossing.subList(0, 21));
+        List<String> single = plan.chunks().get(1).command(null);
+        assertEquals(List.of("-ss", "7210.0", "-t", "20.0", "-i", "vod.mp4", "-map", "0:v:0", "-map", "0:a:0"),
+                single.subList(3, 13));
+    }
+
+    @Test
+    void chunkedPlanRequiresBoundedSegments() {
+        List<VideoSegment> segments = List.of(VideoSegment.builder().source(Path.of("vod.mp4")).build());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.buildChunked(segments, Path.of("out.mp4"), null, ChunkingOptions.defaults()));
+    }
+
+    private static final class StubProbe implements MediaProbe {
+        private final Map<Path, List<Duration>> keyframes = new HashMap<>();
+        private final Map<Path, MediaStreamInfo> infos = new HashMap<>();
+
+        @Override
+        public MediaStreamInfo streamInfo(Path source) {
+            return infos.getOrDefault(source, MediaStreamInfo.builder()
+                    .videoCodec("h264").width(1920).height(1080).pixelFormat("yuv420p").frameRate("60/1")
+                    .audioCodec("aac").sampleRate(48000).channels(2)
+                    .build());
+        }
+
+        @Override
+        public Optional<Duration> keyframeAtOrBefore(Path source, Duration timestamp) {
+            return keyframes.getOrDefault(source, List.of()).stream()
+                    .filter(keyframe -> keyframe.compareTo(timestamp) <= 0)
+                    .max(Duration::compareTo);
+        }
+    }
 }
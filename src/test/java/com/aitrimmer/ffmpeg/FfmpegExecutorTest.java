@@ -1,12 +1,21 @@
 package com.aitrimmer.ffmpeg;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -75,4 +84,303 @@ class FfmpegExecutorTest {
         assertEquals(TaskStatus.SUCCEEDED, task.getStatus());
         assertTrue(collected.stream().anyMatch(line -> line.contains("file 'a.mp4'")));
     }
+
+    @Test
+    void runsMultiStagePlanAndRemovesIntermediates(@TempDir Path tempDir) throws Exception {
+        Path part1 = tempDir.resolve("part1.txt");
+        Path part2 = tempDir.resolve("part2.txt");
+        Path output = tempDir.resolve("out.txt");
+        MultiStagePlan plan = stagedPlan(
+                List.of(
+                        List.of(shell("echo one > '" + part1 + "'"), shell("echo two > '" + part2 + "'")),
+                        List.of(shell("cat '" + part1 + "' '" + part2 + "' > '" + output + "'"))
+                ),
+                List.of(part1, part2),
+                2
+        );
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "staged");
+
+        int exitCode = executor.execute(plan, task, null, null);
+
+        assertEquals(0, exitCode);
+        assertEquals(TaskStatus.SUCCEEDED, task.getStatus());
+        assertEquals(List.of("one", "two"), Files.readAllLines(output));
+        assertFalse(Files.exists(part1));
+        assertFalse(Files.exists(part2));
+    }
+
+    @Test
+    void stopsMultiStagePlanOnFirstFailure(@TempDir Path tempDir) {
+        Path part = tempDir.resolve("part.txt");
+        Path output = tempDir.resolve("out.txt");
+        MultiStagePlan plan = stagedPlan(
+                List.of(
+                        List.of(shell("echo partial > '" + part + "'; exit 7")),
+                        List.of(shell("touch '" + output + "'"))
+                ),
+                List.of(part),
+                1
+        );
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "staged-failure");
+
+        int exitCode = executor.execute(plan, task, null, null);
+
+        assertEquals(7, exitCode);
+        assertEquals(TaskStatus.FAILED, task.getStatus());
+        assertFalse(Files.exists(part));
+        assertFalse(Files.exists(output));
+    }
+
+    @Test
+    void parsesProgressBlocksAndEstimatesRemainingTime() {
+        FfmpegCommandPlan plan = new FfmpegCommandPlan() {
+            @Override
+            public List<String> command(Path scriptPath) {
+                return List.of("bash", "-c", "printf 'encoding\\nframe=300\\nfps=60.0\\nout_time_us=5000000\\n"
+                        + "total_size=1048576\\nspeed=2.5x\\nprogress=continue\\n'");
+            }
+
+            @Override
+            public Optional<Duration> outputDuration() {
+                return Optional.of(Duration.ofSeconds(20));
+            }
+        };
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "progress");
+        List<String> collected = new ArrayList<>();
+
+        executor.execute(plan, task, null, collected::add);
+
+        assertEquals(List.of("encoding"), collected);
+        ProgressSnapshot progress = task.getProgress().orElseThrow();
+        assertEquals(Duration.ofSeconds(5), progress.getOutTime());
+        assertEquals(300, progress.getFrame());
+        assertEquals(2.5, progress.getSpeed(), 1e-9);
+        assertEquals(1_048_576L, progress.getTotalSize());
+        assertEquals(0.25, task.getProgressFraction().orElseThrow(), 1e-9);
+        assertEquals(Duration.ofSeconds(6), task.getEstimatedTimeRemaining().orElseThrow());
+    }
+
+    @Test
+    void progressKeepsRisingAcrossStages() {
+        String half = "printf 'out_time_us=5000000\\nspeed=4x\\nprogress=continue\\n'; ";
+        String done = "printf 'out_time_us=10000000\\nspeed=4x\\nprogress=end\\n'";
+        MultiStagePlan stages = stagedPlan(List.of(List.of(shell(half + done)), List.of(shell(half + done))), List.of(), 1);
+        MultiStagePlan plan = new MultiStagePlan() {
+            @Override
+            public List<List<FfmpegCommandPlan>> stages() {
+                return stages.stages();
+            }
+
+            @Override
+            public List<Path> intermediateFiles() {
+                return List.of();
+            }
+
+            @Override
+            public Optional<Duration> outputDuration() {
+                return Optional.of(Duration.ofSeconds(10));
+            }
+        };
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "staged");
+        List<Double> fractions = new ArrayList<>();
+        List<Boolean> finished = new ArrayList<>();
+        List<Double> speeds = new ArrayList<>();
+        task.addProgressListener(progress -> {
+            fractions.add(task.getProgressFraction().orElseThrow());
+            finished.add(progress.isFinished());
+            speeds.add(progress.getSpeed());
+        });
+
+        assertEquals(0, executor.execute(plan, task, null, null));
+
+        assertEquals(List.of(0.25, 0.5, 0.75, 1.0), fractions);
+        assertEquals(List.of(false, false, false, true), finished);
+        assertEquals(2d, speeds.get(2), 1e-9);
+    }
+
+    @Test
+    void reportsTimingsAndOutcomeToMetrics(@TempDir Path tempDir) {
+        Path output = tempDir.resolve("out.mp4");
+        Map<String, String> tags = Map.of("strategy", "concat_script", "preset", "medium");
+        FfmpegCommandPlan plan = new FfmpegCommandPlan() {
+            @Override
+            public List<String> command(Path scriptPath) {
+                return List.of("bash", "-c", "printf 'abcd' > '" + output + "'; echo written; "
+                        + "printf 'out_time_us=4000000\\nspeed=3.5x\\nprogress=end\\n'; exit 3");
+            }
+
+            @Override
+            public Optional<String> concatScript() {
+                return Optional.of("file 'a.mp4'\n");
+            }
+
+            @Override
+            public Map<String, String> tags() {
+                return tags;
+            }
+
+            @Override
+            public List<Path> outputs() {
+                return List.of(output);
+            }
+        };
+        List<String> events = new ArrayList<>();
+        FfmpegMetrics metrics = new FfmpegMetrics() {
+            @Override
+            public void concatScriptWritten(Map<String, String> eventTags, Duration elapsed) {
+                events.add("script " + eventTags.get("strategy"));
+            }
+
+            @Override
+            public void processSpawned(Map<String, String> eventTags, Duration latency) {
+                events.add("spawned");
+            }
+
+            @Override
+            public void firstOutput(Map<String, String> eventTags, Duration sinceStart) {
+                events.add("first-output");
+            }
+
+            @Override
+            public void processExited(
+                    Map<String, String> eventTags,
+                    int exitCode,
+                    Duration wallTime,
+                    OptionalDouble speedFactor,
+                    OptionalLong outputBytes
+            ) {
+                assertEquals(tags, eventTags);
+                assertFalse(wallTime.isNegative());
+                assertEquals(3.5, speedFactor.orElseThrow(), 1e-9);
+                events.add("exited " + exitCode + " " + outputBytes.orElseThrow());
+            }
+        };
+
+        int exitCode = new FfmpegExecutor(metrics)
+                .execute(plan, new ProcessingTask(UUID.randomUUID(), "metrics"), null, line -> {});
+
+        assertEquals(3, exitCode);
+        assertEquals(List.of("script concat_script", "spawned", "first-output", "exited 3 4"), events);
+    }
+
+    @Test
+    void reportsStatusOfEveryOutput(@TempDir Path tempDir) {
+        Path written = tempDir.resolve("a.mp4");
+        Path missing = tempDir.resolve("b.mp4");
+        FfmpegCommandPlan plan = new FfmpegCommandPlan() {
+            @Override
+            public List<String> command(Path scriptPath) {
+                return List.of("bash", "-c", "printf 'data' > '" + written + "'");
+            }
+
+            @Override
+            public List<Path> outputs() {
+                return List.of(written, missing);
+            }
+        };
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "outputs");
+
+        executor.execute(plan, task, null, null);
+
+        assertEquals(Map.of(written, TaskStatus.SUCCEEDED, missing, TaskStatus.FAILED), task.getOutputStatuses());
+    }
+
+    @Test
+    void cancelKillsRunningProcessAndRemovesPartialOutput(@TempDir Path tempDir) throws Exception {
+        Path output = tempDir.resolve("partial.mp4");
+        FfmpegCommandPlan plan = new FfmpegCommandPlan() {
+            @Override
+            public List<String> command(Path scriptPath) {
+                return List.of("bash", "-c", "printf 'data' > '" + output + "'; echo started; sleep 30");
+            }
+
+            @Override
+            public List<Path> outputs() {
+                return List.of(output);
+            }
+        };
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "cancel");
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Integer> exitCode = CompletableFuture.supplyAsync(
+                () -> executor.execute(plan, task, null, line -> started.countDown()));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        assertTrue(executor.cancel(task));
+
+        assertEquals(FfmpegExecutor.STOPPED_EXIT_CODE, exitCode.get(10, TimeUnit.SECONDS));
+        assertEquals(TaskStatus.CANCELLED, task.getStatus());
+        assertEquals(TaskStatus.CANCELLED, task.getOutputStatuses().get(output));
+        assertFalse(Files.exists(output));
+        assertFalse(executor.cancel(task));
+    }
+
+    @Test
+    void cancelledTaskDoesNotStart() {
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "cancel-early");
+        assertFalse(executor.cancel(task));
+        List<String> collected = new ArrayList<>();
+
+        int exitCode = executor.execute(shell("echo ran"), task, null, collected::add);
+
+        assertEquals(FfmpegExecutor.STOPPED_EXIT_CODE, exitCode);
+        assertEquals(TaskStatus.CANCELLED, task.getStatus());
+        assertTrue(collected.isEmpty());
+    }
+
+    @Test
+    void timesOutTasksThatRunTooLongOrStall() {
+        FfmpegExecutor limited = new FfmpegExecutor(FfmpegMetrics.NOOP, ExecutionLimits.builder()
+                .timeout(Duration.ofSeconds(20))
+                .stallTimeout(Duration.ofMillis(300))
+                .build());
+        ProcessingTask stalled = new ProcessingTask(UUID.randomUUID(), "stalled");
+
+        long started = System.nanoTime();
+        int exitCode = limited.execute(shell("echo working; sleep 30"), stalled, null, null);
+
+        assertEquals(FfmpegExecutor.STOPPED_EXIT_CODE, exitCode);
+        assertEquals(TaskStatus.TIMED_OUT, stalled.getStatus());
+        assertTrue(stalled.getLogs().contains("Stopped after 300 ms without output or progress"));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10));
+
+        FfmpegExecutor bounded = new FfmpegExecutor(FfmpegMetrics.NOOP, ExecutionLimits.builder()
+                .timeout(Duration.ofMillis(300))
+                .build());
+        ProcessingTask slow = new ProcessingTask(UUID.randomUUID(), "slow");
+        MultiStagePlan stages = stagedPlan(List.of(List.of(shell("while true; do echo tick; sleep 0.05; done"))),
+                List.of(), 1);
+
+        assertEquals(FfmpegExecutor.STOPPED_EXIT_CODE, bounded.execute(stages, slow, null, null));
+        assertEquals(TaskStatus.TIMED_OUT, slow.getStatus());
+    }
+
+    @Test
+    void requestsProgressOutputFromFfmpegOnly() {
+        assertEquals(List.of("ffmpeg", "-progress", "pipe:1", "-nostats", "-i", "in.mp4", "out.mp4"),
+                FfmpegExecutor.withProgressOutput(List.of("ffmpeg", "-i", "in.mp4", "out.mp4")));
+        assertEquals(List.of("bash", "-c", "true"), FfmpegExecutor.withProgressOutput(List.of("bash", "-c", "true")));
+    }
+
+    private static FfmpegCommandPlan shell(String script) {
+        return scriptPath -> List.of("bash", "-c", script);
+    }
+
+    private static MultiStagePlan stagedPlan(List<List<FfmpegCommandPlan>> stages, List<Path> intermediates, int parallelism) {
+        return new MultiStagePlan() {
+            @Override
+            public List<List<FfmpegCommandPlan>> stages() {
+                return stages;
+            }
+
+            @Override
+            public List<Path> intermediateFiles() {
+                return intermediates;
+            }
+
+            @Override
+            public int parallelism() {
+                return parallelism;
+            }
+        };
+    }
 }
@@ -0,0 +1,161 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FfmpegJobSchedulerTest {
+
+    @Test
+    void runsInteractiveJobsBeforeBatchJobsInFifoOrder() throws Exception {
+        List<String> startOrder = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        try (FfmpegJobScheduler scheduler = new FfmpegJobScheduler(new FfmpegExecutor(), 1)) {
+            CompletableFuture<Integer> blocker = scheduler.submit(
+                    recordingPlan("blocker", startOrder, release),
+                    task("blocker"),
+                    FfmpegJobScheduler.Priority.BATCH
+            );
+            awaitRunning(scheduler);
+
+            CompletableFuture<Integer> batch1 = scheduler.submit(
+                    recordingPlan("batch-1", startOrder, null), task("batch-1"), FfmpegJobScheduler.Priority.BATCH);
+            CompletableFuture<Integer> batch2 = scheduler.submit(
+                    recordingPlan("batch-2", startOrder, null), task("batch-2"), FfmpegJobScheduler.Priority.BATCH);
+            CompletableFuture<Integer> preview = scheduler.submit(
+                    recordingPlan("preview", startOrder, null), task("preview"), FfmpegJobScheduler.Priority.INTERACTIVE);
+
+            assertEquals(3, scheduler.getQueueDepth());
+            assertEquals(2, scheduler.getQueueDepth(FfmpegJobScheduler.Priority.BATCH));
+            assertEquals(1, scheduler.getQueueDepth(FfmpegJobScheduler.Priority.INTERACTIVE));
+
+            release.countDown();
+            CompletableFuture.allOf(blocker, batch1, batch2, preview).get(30, TimeUnit.SECONDS);
+
+            assertEquals(List.of("blocker", "preview", "batch-1", "batch-2"), startOrder);
+            assertEquals(0, scheduler.getQueueDepth());
+            assertEquals(3, scheduler.getStartedCount(FfmpegJobScheduler.Priority.BATCH));
+            assertEquals(1, scheduler.getStartedCount(FfmpegJobScheduler.Priority.INTERACTIVE));
+            assertTrue(scheduler.getMaxWait(FfmpegJobScheduler.Priority.INTERACTIVE).toNanos() > 0);
+        }
+    }
+
+    @Test
+    void completesFutureWithExitCodeAndStatus() throws Exception {
+        try (FfmpegJobScheduler scheduler = new FfmpegJobScheduler(new FfmpegExecutor(), 2)) {
+            ProcessingTask task = task("exit-code");
+            List<TaskStatus> transitions = new CopyOnWriteArrayList<>();
+            task.addStatusListener(transitions::add);
+            FfmpegCommandPlan plan = scriptPath -> List.of("bash", "-c", "exit 3");
+
+            int exitCode = scheduler.submit(plan, task, FfmpegJobScheduler.Priority.INTERACTIVE)
+                    .get(30, TimeUnit.SECONDS);
+
+            assertEquals(3, exitCode);
+            assertEquals(TaskStatus.FAILED, task.getStatus());
+            assertEquals(List.of(TaskStatus.RUNNING, TaskStatus.FAILED), transitions);
+        }
+    }
+
+    @Test
+    void rejectsSubmissionsBeyondQueueCapacity() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> startOrder = new CopyOnWriteArrayList<>();
+        try (FfmpegJobScheduler scheduler = new FfmpegJobScheduler(new FfmpegExecutor(), 1, 1, null)) {
+            CompletableFuture<Integer> blocker = scheduler.submit(
+                    recordingPlan("blocker", startOrder, release), task("blocker"), FfmpegJobScheduler.Priority.BATCH);
+            awaitRunning(scheduler);
+            CompletableFuture<Integer> waiting = scheduler.submit(
+                    recordingPlan("waiting", startOrder, null), task("waiting"), FfmpegJobScheduler.Priority.BATCH);
+
+            assertThrows(RejectedExecutionException.class, () -> scheduler.submit(
+                    recordingPlan("rejected", startOrder, null), task("rejected"), FfmpegJobScheduler.Priority.INTERACTIVE));
+            assertEquals(1, scheduler.getQueueDepth());
+
+            release.countDown();
+            CompletableFuture.allOf(blocker, waiting).get(30, TimeUnit.SECONDS);
+            assertEquals(List.of("blocker", "waiting"), startOrder);
+        }
+    }
+
+    @Test
+    void cancelsQueuedAndRunningJobs() throws Exception {
+        try (FfmpegJobScheduler scheduler = new FfmpegJobScheduler(new FfmpegExecutor(), 1)) {
+            ProcessingTask runningTask = task("running");
+            CompletableFuture<Integer> running = scheduler.submit(
+                    scriptPath -> List.of("bash", "-c", "sleep 30"), runningTask, FfmpegJobScheduler.Priority.BATCH);
+            awaitRunning(scheduler);
+            ProcessingTask queuedTask = task("queued");
+            CompletableFuture<Integer> queued = scheduler.submit(
+                    scriptPath -> List.of("bash", "-c", "true"), queuedTask, FfmpegJobScheduler.Priority.BATCH);
+
+            assertTrue(scheduler.cancel(queuedTask));
+            assertTrue(queued.isCancelled());
+            assertEquals(TaskStatus.CANCELLED, queuedTask.getStatus());
+            assertEquals(0, scheduler.getQueueDepth());
+
+            assertTrue(scheduler.cancel(runningTask));
+            assertEquals(FfmpegExecutor.STOPPED_EXIT_CODE, running.get(10, TimeUnit.SECONDS));
+            assertEquals(TaskStatus.CANCELLED, runningTask.getStatus());
+        }
+    }
+
+    @Test
+    void closeDropsQueuedJobsWithoutStartingThem() throws Exception {
+        List<String> startOrder = new CopyOnWriteArrayList<>();
+        FfmpegJobScheduler scheduler = new FfmpegJobScheduler(new FfmpegExecutor(), 1);
+        ProcessingTask runningTask = task("running");
+        CompletableFuture<Integer> running = scheduler.submit(
+                scriptPath -> List.of("bash", "-c", "sleep 30"), runningTask, FfmpegJobScheduler.Priority.BATCH);
+        awaitRunning(scheduler);
+        ProcessingTask queuedTask = task("queued");
+        CompletableFuture<Integer> queued = scheduler.submit(
+                recordingPlan("queued", startOrder, null), queuedTask, FfmpegJobScheduler.Priority.BATCH);
+
+        long started = System.nanoTime();
+        scheduler.close();
+
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started) < 10);
+        assertTrue(scheduler.isClosed());
+        assertTrue(running.isDone());
+        assertTrue(queued.isCancelled());
+        assertEquals(TaskStatus.PENDING, queuedTask.getStatus());
+        assertEquals(List.of(), startOrder);
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    private static FfmpegCommandPlan recordingPlan(String name, List<String> startOrder, CountDownLatch gate) {
+        return (Path scriptPath) -> {
+            startOrder.add(name);
+            if (gate != null) {
+                try {
+                    gate.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return List.of("bash", "-c", "true");
+        };
+    }
+
+    private static void awaitRunning(FfmpegJobScheduler scheduler) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (scheduler.getRunningCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, scheduler.getRunningCount());
+    }
+
+    private static ProcessingTask task(String description) {
+        return new ProcessingTask(UUID.randomUUID(), description);
+    }
+}
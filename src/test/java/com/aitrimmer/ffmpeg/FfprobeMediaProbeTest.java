@@ -0,0 +1,59 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FfprobeMediaProbeTest {
+
+    @Test
+    void parsesCompactStreamOutput() {
+        MediaStreamInfo info = FfprobeMediaProbe.parseStreamInfo(List.of(
+                "codec_name=h264|codec_type=video|profile=High|time_base=1/90000|width=1920|height=1080|pix_fmt=yuv420p"
+                        + "|r_frame_rate=60/1",
+                "codec_name=aac|codec_type=audio|sample_rate=48000|channels=2|r_frame_rate=0/0"
+        ));
+
+        assertEquals("h264", info.getVideoCodec());
+        assertEquals("High", info.getProfile());
+        assertEquals("1/90000", info.getTimeBase());
+        assertEquals(1920, info.getWidth());
+        assertEquals(1080, info.getHeight());
+        assertEquals("60/1", info.getFrameRate());
+        assertEquals("aac", info.getAudioCodec());
+        assertEquals(48000, info.getSampleRate());
+        assertEquals(2, info.getChannels());
+    }
+
+    @Test
+    void findsLastKeyframePacketAtOrBeforeTimestamp() {
+        List<String> packets = List.of(
+                "8.000000,K__",
+                "8.016667,___",
+                "10.000000,K__",
+                "10.016667,___",
+                "12.000000,K_"
+        );
+
+        assertEquals(Optional.of(Duration.ofSeconds(10)),
+                FfprobeMediaProbe.lastKeyframeAtOrBefore(packets, Duration.ofMillis(11_500)));
+        assertEquals(Optional.empty(),
+                FfprobeMediaProbe.lastKeyframeAtOrBefore(packets, Duration.ofSeconds(7)));
+    }
+
+    @Test
+    void parsesKeyframePacketsFromRawBytes() throws Exception {
+        String csv = "0.000000,K__\n0.016667,___\nN/A,K__\n2.002000,K_\r\n-0.033000,K__\n4.5,K__";
+
+        long[] keyframes = FfprobeMediaProbe.parseKeyframePackets(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.US_ASCII)));
+
+        assertArrayEquals(new long[]{0L, 2_002_000L, 4_500_000L}, keyframes);
+    }
+}
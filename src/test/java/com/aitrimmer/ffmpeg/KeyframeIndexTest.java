@@ -0,0 +1,89 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyframeIndexTest {
+
+    private final KeyframeIndex index = KeyframeIndex.of(new long[]{4_000_000L, 0L, 2_000_000L, 6_000_000L});
+
+    @Test
+    void looksUpNeighbouringKeyframes() {
+        assertEquals(Optional.of(Duration.ofSeconds(2)), index.atOrBefore(Duration.ofMillis(3_900)));
+        assertEquals(Optional.of(Duration.ofSeconds(4)), index.atOrAfter(Duration.ofMillis(2_100)));
+        assertEquals(Optional.of(Duration.ofSeconds(4)), index.nearest(Duration.ofMillis(3_100)));
+        assertEquals(Optional.empty(), index.atOrAfter(Duration.ofSeconds(7)));
+        assertTrue(index.isKeyframe(Duration.ofMillis(4_010), Duration.ofMillis(20)));
+        assertFalse(index.isKeyframe(Duration.ofMillis(4_100), Duration.ofMillis(20)));
+    }
+
+    @Test
+    void reportsGopAroundCut() {
+        KeyframeIndex.Gop gop = index.gopAround(Duration.ofMillis(4_500)).orElseThrow();
+        assertEquals(Duration.ofSeconds(4), gop.getStart());
+        assertEquals(Optional.of(Duration.ofSeconds(6)), gop.getEnd());
+
+        KeyframeIndex.Gop last = index.gopAround(Duration.ofSeconds(9)).orElseThrow();
+        assertEquals(Duration.ofSeconds(6), last.getStart());
+        assertTrue(last.getEnd().isEmpty());
+    }
+
+    @Test
+    void snapsSegmentsToKeyframes() {
+        VideoSegment segment = VideoSegment.builder()
+                .source(Path.of("vod.mp4"))
+                .start(Duration.ofMillis(2_500))
+                .end(Duration.ofMillis(4_900))
+                .build();
+
+        VideoSegment outward = index.snap(segment, KeyframeIndex.Snap.OUTWARD);
+        assertEquals(Optional.of(Duration.ofSeconds(2)), outward.getStart());
+        assertEquals(Optional.of(Duration.ofSeconds(6)), outward.getEnd());
+
+        VideoSegment nearest = index.snap(segment, KeyframeIndex.Snap.NEAREST);
+        assertEquals(Optional.of(Duration.ofSeconds(2)), nearest.getStart());
+        assertEquals(Optional.of(Duration.ofSeconds(4)), nearest.getEnd());
+
+        assertThrows(IllegalArgumentException.class, () -> index.snap(segment, KeyframeIndex.Snap.INWARD));
+
+        VideoSegment wider = VideoSegment.builder()
+                .source(Path.of("vod.mp4"))
+                .start(Duration.ofMillis(2_500))
+                .end(Duration.ofMillis(6_900))
+                .build();
+        VideoSegment inward = index.snap(wider, KeyframeIndex.Snap.INWARD);
+        assertEquals(Optional.of(Duration.ofSeconds(4)), inward.getStart());
+        assertEquals(Optional.of(Duration.ofSeconds(6)), inward.getEnd());
+    }
+
+    @Test
+    void persistsIndexPerSourceVersion(@TempDir Path tempDir) throws Exception {
+        Path source = Files.writeString(tempDir.resolve("vod.mp4"), "video");
+        Path indexDir = tempDir.resolve("index");
+        AtomicInteger scans = new AtomicInteger();
+        KeyframeIndexStore.Scanner scanner = path -> {
+            scans.incrementAndGet();
+            return new long[]{0L, 2_000_000L};
+        };
+
+        KeyframeIndex first = new KeyframeIndexStore(indexDir, scanner).load(source);
+        KeyframeIndex reloaded = new KeyframeIndexStore(indexDir, scanner).load(source);
+
+        assertEquals(1, scans.get());
+        assertEquals(2, reloaded.size());
+        assertEquals(first.atOrBefore(Duration.ofSeconds(3)), reloaded.atOrBefore(Duration.ofSeconds(3)));
+
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5_000));
+        new KeyframeIndexStore(indexDir, scanner).load(source);
+        assertEquals(2, scans.get());
+    }
+}
@@ -0,0 +1,103 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresetTunerTest {
+
+    private static final PresetTuningOptions OPTIONS = PresetTuningOptions.builder()
+            .targetSpeed(3.0)
+            .sampleDuration(Duration.ofSeconds(10))
+            .presets(List.of("ultrafast", "veryfast", "fast", "medium", "slow"))
+            .crfs(List.of(20, 23))
+            .build();
+
+    @Test
+    void picksSlowestPresetMeetingTargetAndReusesStoredResults(@TempDir Path tempDir) throws Exception {
+        Path runs = tempDir.resolve("runs.log");
+        Path ffmpeg = stubFfmpeg(tempDir, runs);
+        Path results = tempDir.resolve("tuning/results.properties");
+        Path source = tempDir.resolve("vod.mp4");
+
+        PresetTuner tuner = new PresetTuner(new FfmpegExecutor(), probe(1920, 1080), results, "encoder-1", ffmpeg.toString());
+        CompressionPresetConfig config = tuner.tune(source, CompressionPreset.createDefault(), OPTIONS);
+
+        assertEquals("fast", config.getDefaultPreset().getPreset());
+        assertEquals(20, config.getDefaultPreset().getCrf());
+        assertEquals("128k", config.getDefaultPreset().getAudioBitrate());
+        assertEquals(10, Files.readAllLines(runs).size());
+        List<PresetTrial> trials = tuner.measure(source, CompressionPreset.createDefault(), OPTIONS);
+        assertEquals(10, trials.size());
+        assertEquals(8.0, trials.get(0).getSpeed(), 1e-9);
+        assertEquals(240.0, trials.get(0).getFps(), 1e-9);
+        assertEquals(23, trials.get(1).getOutputBytes());
+        assertEquals(10, Files.readAllLines(runs).size());
+
+        PresetTuner restarted = new PresetTuner(new FfmpegExecutor(), probe(1920, 1080), results, "encoder-1", ffmpeg.toString());
+        assertEquals("fast", restarted.tune(source, CompressionPreset.createDefault(), OPTIONS).getDefaultPreset().getPreset());
+        assertEquals(10, Files.readAllLines(runs).size());
+
+        new PresetTuner(new FfmpegExecutor(), probe(1280, 720), results, "encoder-1", ffmpeg.toString())
+                .measure(source, CompressionPreset.createDefault(), OPTIONS);
+        new PresetTuner(new FfmpegExecutor(), probe(1920, 1080), results, "encoder-2", ffmpeg.toString())
+                .measure(source, CompressionPreset.createDefault(), OPTIONS);
+        assertEquals(30, Files.readAllLines(runs).size());
+        try (var samples = Files.list(results.getParent())) {
+            assertEquals(List.of(results), samples.toList());
+        }
+    }
+
+    @Test
+    void fallsBackToFastestTrialWhenNoneMeetsTarget() {
+        PresetTuningOptions options = PresetTuningOptions.builder().targetSpeed(10).presets(List.of("fast", "medium")).build();
+
+        PresetTrial chosen = PresetTuner.select(List.of(
+                new PresetTrial("fast", 23, 90, 3.5, 1_000),
+                new PresetTrial("medium", 23, 50, 2.0, 800)), options);
+
+        assertEquals("fast", chosen.getPreset());
+    }
+
+    private static Path stubFfmpeg(Path directory, Path runs) throws Exception {
+        Path stub = directory.resolve("ffmpeg");
+        Files.writeString(stub, String.join("\n",
+                "#!/bin/bash",
+                "preset=''; crf=''; prev=''",
+                "for arg in \"$@\"; do",
+                "  [ \"$prev\" = -preset ] && preset=$arg",
+                "  [ \"$prev\" = -crf ] && crf=$arg",
+                "  prev=$arg; out=$arg",
+                "done",
+                "case $preset in ultrafast) speed=8 fps=240;; veryfast) speed=5 fps=150;; fast) speed=3.5 fps=105;; medium) speed=2 fps=60;; *) speed=1 fps=30;; esac",
+                "echo \"$preset $crf\" >> '" + runs + "'",
+                "echo fps=$fps; echo out_time_us=10000000; echo speed=${speed}x; echo progress=end",
+                "head -c $crf /dev/zero > \"$out\"",
+                ""), StandardCharsets.UTF_8);
+        Files.setPosixFilePermissions(stub, PosixFilePermissions.fromString("rwxr-xr-x"));
+        return stub;
+    }
+
+    private static MediaProbe probe(int width, int height) {
+        return new MediaProbe() {
+            @Override
+            public MediaStreamInfo streamInfo(Path source) {
+                return MediaStreamInfo.builder().videoCodec("h264").width(width).height(height).build();
+            }
+
+            @Override
+            public Optional<Duration> keyframeAtOrBefore(Path source, Duration timestamp) {
+                return Optional.empty();
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreviewCacheTest {
+
+    private final FfmpegCommandBuilder builder = new FfmpegCommandBuilder(new CompressionPresetConfig());
+    private final PreviewOptions options = PreviewOptions.builder().thumbnails(3).build();
+
+    @Test
+    void rendersMissingClipsTogetherAndServesRepeatsWithoutDecoding(@TempDir Path tempDir) throws Exception {
+        Path source = Files.writeString(tempDir.resolve("vod.mp4"), "source");
+        List<FfmpegCommandPlan> submitted = new ArrayList<>();
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        PreviewCache cache = new PreviewCache(tempDir.resolve("previews"), builder, (plan, task) -> {
+            submitted.add(plan);
+            return pending;
+        });
+        VideoSegment first = clip(source, 10, 40);
+        VideoSegment second = clip(source, 100, 130);
+
+        CompletableFuture<List<ClipPreviews>> request = cache.previews(List.of(first, second), options, task());
+        CompletableFuture<List<ClipPreviews>> joined = cache.previews(List.of(second), options, task());
+        assertEquals(1, submitted.size());
+        assertEquals(1, cache.getInFlightJoins());
+        assertEquals(8, submitted.get(0).outputs().size());
+
+        writeOutputs(submitted.get(0));
+        pending.complete(0);
+
+        List<ClipPreviews> previews = request.get(5, TimeUnit.SECONDS);
+        assertEquals(2, previews.size());
+        assertEquals(previews.get(1).getSprite(), joined.get(5, TimeUnit.SECONDS).get(0).getSprite());
+        assertEquals(tempDir.resolve("previews").resolve(cache.key(first, options)), previews.get(0).getSprite().getParent());
+        assertEquals(3, previews.get(0).getThumbnails().size());
+        assertTrue(Files.isRegularFile(previews.get(0).getThumbnails().get(2)));
+
+        PreviewCache reopened = new PreviewCache(tempDir.resolve("previews"), builder, (plan, task) -> fail("re-decoded"));
+        List<ClipPreviews> repeated = reopened.previews(List.of(second, first), options, task()).get(5, TimeUnit.SECONDS);
+        assertEquals(previews.get(0).getSprite(), repeated.get(1).getSprite());
+        CacheStats stats = reopened.getStats();
+        assertEquals(2, stats.getHits());
+        assertEquals(0, stats.getMisses());
+        assertEquals(2, stats.getEntries());
+        try (var entries = Files.list(tempDir.resolve("previews"))) {
+            assertEquals(2, entries.count());
+        }
+    }
+
+    @Test
+    void keyCoversTimestampsOptionsAndSourceContent(@TempDir Path tempDir) throws Exception {
+        Path source = Files.writeString(tempDir.resolve("vod.mp4"), "source");
+        PreviewCache cache = new PreviewCache(tempDir.resolve("previews"), builder, (plan, task) -> new CompletableFuture<>());
+
+        String key = cache.key(clip(source, 10, 40), options);
+        assertEquals(key, cache.key(clip(source, 10, 40), PreviewOptions.builder().thumbnails(3).build()));
+        assertNotEquals(key, cache.key(clip(source, 10, 41), options));
+        assertNotEquals(key, cache.key(clip(source, 10, 40), PreviewOptions.defaults()));
+        Files.writeString(source, "re-encoded source");
+        assertNotEquals(key, cache.key(clip(source, 10, 40), options));
+    }
+
+    @Test
+    void incompleteRendersAreNotCached(@TempDir Path tempDir) throws Exception {
+        Path source = Files.writeString(tempDir.resolve("vod.mp4"), "source");
+        PreviewCache cache = new PreviewCache(tempDir.resolve("previews"), builder, (plan, task) -> {
+            writeOutputs(plan);
+            deleteUnchecked(plan.outputs().get(1));
+            return CompletableFuture.completedFuture(0);
+        });
+
+        CompletableFuture<List<ClipPreviews>> request = cache.previews(List.of(clip(source, 0, 5)), options, task());
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> request.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(FfmpegExecutionException.class, failure.getCause());
+        try (var entries = Files.list(tempDir.resolve("previews"))) {
+            assertEquals(0, entries.count());
+        }
+    }
+
+    @Test
+    void missingSourceFailsTheRequestWithoutLeavingClaimedRenders(@TempDir Path tempDir) throws Exception {
+        Path source = Files.writeString(tempDir.resolve("vod.mp4"), "source");
+        List<FfmpegCommandPlan> submitted = new ArrayList<>();
+        PreviewCache cache = new PreviewCache(tempDir.resolve("previews"), builder, (plan, task) -> {
+            submitted.add(plan);
+            writeOutputs(plan);
+            return CompletableFuture.completedFuture(0);
+        });
+        VideoSegment first = clip(source, 0, 5);
+        VideoSegment last = clip(source, 20, 25);
+
+        assertThrows(UncheckedIOException.class, () -> cache.previews(
+                List.of(first, clip(tempDir.resolve("deleted.mp4"), 10, 15), last), options, task()));
+        assertEquals(0, submitted.size());
+
+        List<ClipPreviews> previews = cache.previews(List.of(first, last), options, task()).get(5, TimeUnit.SECONDS);
+        assertEquals(2, previews.size());
+        assertEquals(1, submitted.size());
+        assertEquals(0, cache.getInFlightJoins());
+    }
+
+    private static void writeOutputs(FfmpegCommandPlan plan) {
+        for (Path output : plan.outputs()) {
+            try {
+                Files.writeString(output, "jpeg");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static void deleteUnchecked(Path file) {
+        try {
+            Files.delete(file);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static VideoSegment clip(Path source, long start, long end) {
+        return VideoSegment.builder()
+                .source(source)
+                .start(Duration.ofSeconds(start))
+                .end(Duration.ofSeconds(end))
+                .build();
+    }
+
+    private static ProcessingTask task() {
+        return new ProcessingTask(UUID.randomUUID(), "previews");
+    }
+}
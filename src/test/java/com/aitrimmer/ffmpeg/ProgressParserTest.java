@@ -0,0 +1,47 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgressParserTest {
+
+    @Test
+    void emitsSnapshotPerProgressBlock() {
+        List<ProgressSnapshot> snapshots = new ArrayList<>();
+        ProgressParser parser = new ProgressParser(snapshots::add);
+
+        for (String line : List.of(
+                "frame=120", "fps=59.94", "stream_0_0_q=28.0", "bitrate= 812.3kbits/s", "total_size=N/A",
+                "out_time_us=2002000", "out_time_ms=2002000", "out_time=00:00:02.002000", "dup_frames=0",
+                "drop_frames=0", "speed=   2x", "progress=continue",
+                "frame=240", "out_time_us=4004000", "speed=N/A", "progress=end")) {
+            assertTrue(parser.accept(line), line);
+        }
+
+        assertEquals(2, snapshots.size());
+        ProgressSnapshot first = snapshots.get(0);
+        assertEquals(Duration.ofMillis(2002), first.getOutTime());
+        assertEquals(59.94, first.getFps(), 1e-9);
+        assertEquals(2.0, first.getSpeed(), 1e-9);
+        assertEquals(0L, first.getTotalSize());
+        assertFalse(first.isFinished());
+        ProgressSnapshot last = snapshots.get(1);
+        assertEquals(240, last.getFrame());
+        assertEquals(0d, last.getSpeed(), "speed=N/A must not keep the previous speed");
+        assertTrue(last.isFinished());
+    }
+
+    @Test
+    void ignoresRegularLogLines() {
+        ProgressParser parser = new ProgressParser(snapshot -> fail("unexpected snapshot"));
+
+        assertFalse(parser.accept("[libx264 @ 0x55] frame I:12 Avg QP=20.1 size= 1234"));
+        assertFalse(parser.accept("Input #0, mov,mp4,m4a,3gp,3g2,mj2, from 'in.mp4':"));
+        assertFalse(parser.accept("encoder=Lavf60.3.100"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCacheTest {
+
+    private final FfmpegCommandBuilder builder = new FfmpegCommandBuilder(new CompressionPresetConfig());
+
+    @Test
+    void sharesInFlightRenderAndServesLaterHitsFromDisk(@TempDir Path tempDir) throws Exception {
+        Path source = Files.writeString(tempDir.resolve("vod.mp4"), "source");
+        List<FfmpegCommandPlan> submitted = new ArrayList<>();
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        RenderCache cache = new RenderCache(tempDir.resolve("cache"), 1_000, builder, (plan, task) -> {
+            submitted.add(plan);
+            return pending;
+        });
+        List<VideoSegment> segments = List.of(clip(source, 5, 10));
+
+        CompletableFuture<Path> first = cache.render(segments, null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX, ".mp4", task());
+        CompletableFuture<Path> second = cache.render(segments, null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX, ".mp4", task());
+        assertEquals(1, submitted.size());
+        assertEquals(1, cache.getInFlightJoins());
+
+        writeOutput(submitted.get(0), "output");
+        pending.complete(0);
+
+        Path output = first.get(5, TimeUnit.SECONDS);
+        assertEquals(output, second.get(5, TimeUnit.SECONDS));
+        assertEquals("output", Files.readString(output));
+
+        Path hit = cache.render(segments, null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX, ".mp4", task())
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(output, hit);
+        assertEquals(1, submitted.size());
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEntries());
+
+        RenderCache reopened = new RenderCache(tempDir.resolve("cache"), 1_000, builder, (plan, task) -> fail("re-rendered"));
+        assertEquals(output, reopened.render(segments, null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX, ".mp4", task())
+                .get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void keyChangesWithPresetAndSegments(@TempDir Path tempDir) throws Exception {
+        Path source = Files.writeString(tempDir.resolve("vod.mp4"), "source");
+        RenderCache cache = new RenderCache(tempDir.resolve("cache"), 1_000, builder, (plan, task) -> new CompletableFuture<>());
+        List<VideoSegment> segments = List.of(clip(source, 5, 10));
+
+        String key = cache.key(segments, null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX);
+        assertEquals(key, cache.key(List.of(clip(source, 5, 10)), null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX));
+        assertNotEquals(key, cache.key(List.of(clip(source, 5, 11)), null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX));
+        assertNotEquals(key, cache.key(segments, CompressionOverrides.builder().crf(18).build(),
+                FfmpegCommandBuilder.Strategy.FILTER_COMPLEX));
+    }
+
+    @Test
+    void filterRendersOfEquivalentSegmentListsShareAKey(@TempDir Path tempDir) throws Exception {
+        Path source = Files.writeString(tempDir.resolve("vod.mp4"), "source");
+        RenderCache cache = new RenderCache(tempDir.resolve("cache"), 1_000, builder, (plan, task) -> new CompletableFuture<>());
+
+        String key = cache.key(List.of(clip(source, 5, 20)), null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX);
+
+        assertEquals(key, cache.key(List.of(clip(source, 5, 12), clip(source, 12, 20)), null,
+                FfmpegCommandBuilder.Strategy.FILTER_COMPLEX));
+        assertEquals(key, cache.key(List.of(clip(source, 5, 15), clip(source, 10, 20)), null,
+                FfmpegCommandBuilder.Strategy.FILTER_COMPLEX));
+        assertNotEquals(cache.key(List.of(clip(source, 5, 20)), null, FfmpegCommandBuilder.Strategy.CONCAT_SCRIPT),
+                cache.key(List.of(clip(source, 5, 15), clip(source, 10, 20)), null,
+                        FfmpegCommandBuilder.Strategy.CONCAT_SCRIPT));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOutputsAndDropsFailedRenders(@TempDir Path tempDir) throws Exception {
+        Path source = Files.writeString(tempDir.resolve("vod.mp4"), "source");
+        List<Integer> exitCodes = new ArrayList<>(List.of(0, 0, 1));
+        RenderCache cache = new RenderCache(tempDir.resolve("cache"), 10, builder, (plan, task) -> {
+            writeOutput(plan, "123456");
+            return CompletableFuture.completedFuture(exitCodes.remove(0));
+        });
+
+        Path first = cache.render(List.of(clip(source, 0, 5)), null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX, ".mp4", task())
+                .get(5, TimeUnit.SECONDS);
+        Path second = cache.render(List.of(clip(source, 5, 10)), null, FfmpegCommandBuilder.Strategy.FILTER_COMPLEX, ".mp4", task())
+                .get(5, TimeUnit.SECONDS);
+
+        assertFalse(Files.exists(first));
+        assertTrue(Files.exists(second));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(6, cache.getSizeBytes());
+
+        CompletableFuture<Path> failed = cache.render(List.of(clip(source, 10, 15)), null,
+                FfmpegCommandBuilder.Strategy.FILTER_COMPLEX, ".mp4", task());
+        assertThrows(Exception.class, () -> failed.get(5, TimeUnit.SECONDS));
+        try (var files = Files.list(tempDir.resolve("cache"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private static void writeOutput(FfmpegCommandPlan plan, String content) {
+        List<String> command = plan.command(null);
+        try {
+            Files.writeString(Path.of(command.get(command.size() - 1)), content);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static VideoSegment clip(Path source, int start, int end) {
+        return VideoSegment.builder()
+                .source(source)
+                .start(Duration.ofSeconds(start))
+                .end(Duration.ofSeconds(end))
+                .build();
+    }
+
+    private static ProcessingTask task() {
+        return new ProcessingTask(UUID.randomUUID(), "render");
+    }
+}
@@ -0,0 +1,249 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderJournalTest {
+
+    @Test
+    void replaysUnfinishedJobsAndIgnoresTornTail(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("renders.journal");
+        try (RenderJournal journal = new RenderJournal(file)) {
+            journal.submitted("1", "{\"name\":\"done\"}");
+            journal.submitted("2", "{\"name\":\"running\"}");
+            journal.submitted("3", "{\"name\":\"queued\"}");
+            journal.started("1");
+            journal.started("2");
+            journal.progress("2", Duration.ofSeconds(90));
+            journal.finished("1", TaskStatus.SUCCEEDED).get(10, TimeUnit.SECONDS);
+        }
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (RenderJournal journal = new RenderJournal(file)) {
+            List<PendingRenderJob> pending = journal.recoveredJobs();
+            assertEquals(List.of("2", "3"), pending.stream().map(PendingRenderJob::getKey).toList());
+            assertTrue(pending.get(0).isStarted());
+            assertEquals(Duration.ofSeconds(90), pending.get(0).getLastProgress().orElseThrow());
+            assertEquals("{\"name\":\"queued\"}", pending.get(1).getPayload());
+            assertFalse(pending.get(1).isStarted());
+            journal.finished("3", TaskStatus.CANCELLED).get(10, TimeUnit.SECONDS);
+        }
+
+        try (RenderJournal journal = new RenderJournal(file)) {
+            assertEquals(List.of("2"), journal.recoveredJobs().stream().map(PendingRenderJob::getKey).toList());
+        }
+    }
+
+    @Test
+    void groupCommitsConcurrentAppendsAndCompacts(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("renders.journal");
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try (RenderJournal journal = new RenderJournal(file, 500)) {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                String key = Integer.toString(i);
+                writes.add(CompletableFuture.runAsync(() -> {
+                    journal.submitted(key, "payload-" + key);
+                    journal.started(key);
+                    if (!key.equals("7")) {
+                        journal.finished(key, TaskStatus.SUCCEEDED).join();
+                    }
+                }, clients));
+            }
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+
+            assertEquals(5_999, journal.getAppendedRecords());
+            assertTrue(journal.getCommits() < journal.getAppendedRecords(), "appends should share fsyncs");
+            assertTrue(journal.getCompactions() > 0);
+        } finally {
+            clients.shutdownNow();
+        }
+        assertTrue(Files.size(file) < 50_000);
+
+        try (RenderJournal journal = new RenderJournal(file)) {
+            List<PendingRenderJob> pending = journal.recoveredJobs();
+            assertEquals(1, pending.size());
+            assertEquals("payload-7", pending.get(0).getPayload());
+            assertTrue(pending.get(0).isStarted());
+        }
+    }
+
+    @Test
+    void rejectsAppendsAfterClose(@TempDir Path tempDir) {
+        RenderJournal journal = new RenderJournal(tempDir.resolve("renders.journal"));
+        journal.close();
+
+        assertTrue(journal.started("1").isCompletedExceptionally());
+    }
+
+    @Test
+    void rollsBackFailedWriteSoLaterEntriesSurviveReplay(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("renders.journal");
+        AtomicBoolean failNextWrite = new AtomicBoolean();
+        try (RenderJournal journal = new RenderJournal(file, 1_000,
+                path -> new FailingChannel(open(path), failNextWrite))) {
+            journal.submitted("1", "first").get(10, TimeUnit.SECONDS);
+            failNextWrite.set(true);
+            CompletableFuture<Void> failed = journal.submitted("2", "torn");
+            assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+            journal.submitted("3", "third").get(10, TimeUnit.SECONDS);
+        }
+
+        try (RenderJournal journal = new RenderJournal(file)) {
+            assertEquals(List.of("1", "3"), journal.recoveredJobs().stream().map(PendingRenderJob::getKey).toList());
+        }
+    }
+
+    @Test
+    void stopsAndFailsAppendsWhenCompactionCannotReopenTheFile(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("renders.journal");
+        AtomicInteger opens = new AtomicInteger();
+        try (RenderJournal journal = new RenderJournal(file, 1, path -> {
+            if (opens.incrementAndGet() > 1) {
+                throw new IOException("disk gone");
+            }
+            return open(path);
+        })) {
+            journal.submitted("1", "payload");
+            journal.finished("1", TaskStatus.SUCCEEDED).get(10, TimeUnit.SECONDS);
+            journal.submitted("2", "payload");
+
+            CompletableFuture<Void> later = journal.started("2");
+            ExecutionException error = assertThrows(ExecutionException.class, () -> later.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, error.getCause());
+            assertTrue(journal.submitted("3", "payload").isCompletedExceptionally());
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Delegates to a real channel but, when asked to, writes only half of the next buffer and then fails.
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private final AtomicBoolean failNextWrite;
+
+        private FailingChannel(FileChannel delegate, AtomicBoolean failNextWrite) {
+            this.delegate = delegate;
+            this.failNextWrite = failNextWrite;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            if (failNextWrite.compareAndSet(true, false)) {
+                ByteBuffer half = source.slice(source.position(), source.remaining() / 2);
+                delegate.write(half);
+                throw new IOException("device full");
+            }
+            return delegate.write(source);
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+            return delegate.read(target);
+        }
+
+        @Override
+        public long read(ByteBuffer[] targets, int offset, int length) throws IOException {
+            return delegate.read(targets, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+            return delegate.write(sources, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long position) throws IOException {
+            delegate.position(position);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel source, long position, long count) throws IOException {
+            return delegate.transferFrom(source, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer target, long position) throws IOException {
+            return delegate.read(target, position);
+        }
+
+        @Override
+        public int write(ByteBuffer source, long position) throws IOException {
+            return delegate.write(source, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
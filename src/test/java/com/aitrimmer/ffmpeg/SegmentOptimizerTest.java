@@ -0,0 +1,77 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentOptimizerTest {
+
+    private static final Path VOD = Path.of("vod.mp4");
+    private static final Path INTRO = Path.of("intro.mp4");
+
+    @Test
+    void mergesOverlappingAndAdjacentNeighboursInOrder() {
+        List<VideoSegment> optimized = SegmentOptimizer.optimize(List.of(
+                segment(VOD, 10_000, 20_000),
+                segment(VOD, 15_000, 25_000),
+                segment(VOD, 25_000, 30_000),
+                segment(INTRO, 0, 5_000),
+                segment(VOD, 5_000, 8_000),
+                segment(VOD, 1_000, 2_000)
+        ));
+
+        assertEquals(4, optimized.size());
+        assertRange(optimized.get(0), VOD, 10_000, 30_000);
+        assertRange(optimized.get(1), INTRO, 0, 5_000);
+        assertRange(optimized.get(2), VOD, 5_000, 8_000);
+        assertRange(optimized.get(3), VOD, 1_000, 2_000);
+    }
+
+    @Test
+    void dropsDegenerateSegmentsAndKeepsOpenEnds() {
+        VideoSegment open = VideoSegment.builder().source(VOD).start(Duration.ofSeconds(60)).build();
+        List<VideoSegment> optimized = SegmentOptimizer.optimize(List.of(
+                VideoSegment.builder().source(VOD).start(Duration.ofNanos(1_000)).end(Duration.ofNanos(2_000)).build(),
+                segment(VOD, 50_000, 70_000),
+                open
+        ));
+
+        assertEquals(1, optimized.size());
+        assertEquals(Duration.ofSeconds(50), optimized.get(0).getStart().orElseThrow());
+        assertTrue(optimized.get(0).getEnd().isEmpty());
+    }
+
+    @Test
+    void sortsRangesPerSourceBeforeMerging() {
+        List<VideoSegment> optimized = SegmentOptimizer.sortAndOptimize(List.of(
+                segment(VOD, 40_000, 50_000),
+                segment(INTRO, 0, 5_000),
+                segment(VOD, 10_000, 20_000),
+                segment(VOD, 45_000, 60_000),
+                segment(VOD, 20_000, 22_000)
+        ));
+
+        assertEquals(3, optimized.size());
+        assertRange(optimized.get(0), VOD, 10_000, 22_000);
+        assertRange(optimized.get(1), VOD, 40_000, 60_000);
+        assertRange(optimized.get(2), INTRO, 0, 5_000);
+    }
+
+    private static VideoSegment segment(Path source, long startMillis, long endMillis) {
+        return VideoSegment.builder()
+                .source(source)
+                .start(Duration.ofMillis(startMillis))
+                .end(Duration.ofMillis(endMillis))
+                .build();
+    }
+
+    private static void assertRange(VideoSegment segment, Path source, long startMillis, long endMillis) {
+        assertEquals(source, segment.getSource());
+        assertEquals(Duration.ofMillis(startMillis), segment.getStart().orElseThrow());
+        assertEquals(Duration.ofMillis(endMillis), segment.getEnd().orElseThrow());
+    }
+}
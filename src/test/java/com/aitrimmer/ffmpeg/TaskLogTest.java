@@ -0,0 +1,72 @@
+package com.aitrimmer.ffmpeg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskLogTest {
+
+    @Test
+    void readsOnlyNewLinesFromCursor() {
+        TaskLog log = new TaskLog(10, null);
+        log.append("a");
+        log.append("b");
+
+        LogPage first = log.read(0, 100);
+        assertEquals(List.of("a", "b"), first.getLines());
+        assertEquals(2, first.getNextSequence());
+
+        log.append("c");
+        LogPage second = log.read(first.getNextSequence(), 100);
+        assertEquals(List.of("c"), second.getLines());
+        assertEquals(2, second.getFirstSequence());
+        assertEquals(0, second.getMissedLines());
+
+        LogPage limited = log.read(0, 2);
+        assertEquals(List.of("a", "b"), limited.getLines());
+        assertEquals(2, limited.getNextSequence());
+    }
+
+    @Test
+    void evictsOldestLinesToSpillFile(@TempDir Path tempDir) throws Exception {
+        Path spill = tempDir.resolve("task.log");
+        ProcessingTask task = new ProcessingTask(UUID.randomUUID(), "spill", 3, spill);
+        for (int i = 0; i < 5; i++) {
+            task.appendLog("line-" + i);
+        }
+
+        LogPage page = task.readLogs(0, 100);
+        assertEquals(List.of("line-2", "line-3", "line-4"), page.getLines());
+        assertEquals(2, page.getFirstSequence());
+        assertEquals(2, page.getMissedLines());
+        assertEquals(List.of("line-2", "line-3", "line-4"), task.getLogs());
+
+        task.setStatus(TaskStatus.SUCCEEDED);
+        assertEquals(List.of("line-0", "line-1"), Files.readAllLines(spill));
+    }
+
+    @Test
+    void spillsEveryEvictedLineInOrderAcrossBatches(@TempDir Path tempDir) throws Exception {
+        Path spill = tempDir.resolve("task.log");
+        TaskLog log = new TaskLog(10, spill);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            log.append("line-" + i);
+            if (i < 990) {
+                expected.add("line-" + i);
+            }
+        }
+
+        log.flush();
+
+        assertEquals(expected, Files.readAllLines(spill));
+        assertEquals(10, log.retainedLines().size());
+    }
+}